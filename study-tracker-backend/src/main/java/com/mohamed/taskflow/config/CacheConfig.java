@@ -1,120 +1,401 @@
 package com.mohamed.taskflow.config;
 
-import com.mohamed.taskflow.dto.LeaderboardResponse;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.mohamed.taskflow.dto.LeaderboardRanking;
+import com.mohamed.taskflow.dto.LeaderboardWindow;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 
-import java.time.Instant;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 /**
- * Simple in-memory cache configuration for leaderboard data
- * Uses ConcurrentHashMap with TTL-based expiration
+ * In-memory cache configuration for leaderboard data
+ * Uses a Caffeine cache (W-TinyLFU admission/eviction) bounded by weight,
+ * where the weight of a ranking is the number of leaderboard rows it holds
  * 
- * Note: For production with multiple instances, consider Redis or Caffeine
+ * One ranking is cached per (date window, subject); pages, limits and anonymized views
+ * are sliced from it by LeaderboardService, so they all share a single entry
+ * Keys hold the window bounds rather than the period name, so any periods and time zones
+ * that resolve to the same window share it
+ * Study log writes evict only the rankings whose window and subject they fall in;
+ * the TTL is only a backstop
+ * 
+ * Loads are single-flight: the cache holds a future per key, the first caller on a miss
+ * computes it and concurrent callers for the same key wait on that future
+ * 
+ * Hot entries (frequently read since their last load) are recomputed in the background
+ * shortly before they expire, while the old value keeps being served (stale-while-revalidate)
+ * 
+ * Rankings restored from a snapshot after a restart are served the same way:
+ * stale but valid while a background refresh recomputes them
+ * 
+ * Note: For production with multiple instances, consider Redis
+ * (invalidation is local to the instance that handled the write)
  */
 @Configuration
 @EnableScheduling
+@Slf4j
 public class CacheConfig {
     
     /**
-     * Cache entry with TTL
+     * Cached ranking with its loader and read count,
+     * kept so hot entries can be refreshed in the background
      */
     public static class CacheEntry {
-        private final LeaderboardResponse data;
-        private final Instant expiresAt;
+        private final LeaderboardRanking data;
+        private final Function<String, LeaderboardRanking> loader;
+        private final long loadedAtMillis = System.currentTimeMillis();
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
         
-        public CacheEntry(LeaderboardResponse data, long ttlMillis) {
+        public CacheEntry(LeaderboardRanking data, Function<String, LeaderboardRanking> loader) {
             this.data = data;
-            this.expiresAt = Instant.now().plusMillis(ttlMillis);
+            this.loader = loader;
         }
         
-        public boolean isExpired() {
-            return Instant.now().isAfter(expiresAt);
+        public LeaderboardRanking getData() {
+            return data;
         }
         
-        public LeaderboardResponse getData() {
-            return data;
+        public long getHits() {
+            return hits.get();
+        }
+        
+        boolean isHot() {
+            return hits.get() >= HOT_ACCESS_THRESHOLD;
+        }
+        
+        boolean isNearExpiry(long nowMillis) {
+            return nowMillis - loadedAtMillis >= CACHE_TTL_MILLIS - REFRESH_AHEAD_MILLIS;
+        }
+        
+        /**
+         * One unit per leaderboard row plus one for the ranking itself
+         */
+        int weight() {
+            return 1 + data.size();
         }
     }
     
     /**
-     * In-memory cache storage
-     * Key format: "period|subject|limit|page|anonymize"
+     * Cache TTL: 30 minutes (1,800,000 milliseconds)
+     * Writes invalidate affected entries immediately, so this only bounds window drift
+     */
+    public static final long CACHE_TTL_MILLIS = 30 * 60 * 1000;
+    
+    /**
+     * Reads since the last load for an entry to count as hot
+     */
+    public static final long HOT_ACCESS_THRESHOLD = 10;
+    
+    /**
+     * Hot entries are recomputed once they are within this window of expiring
+     * Must exceed the refresh scheduler period so no hot entry expires between runs
+     */
+    public static final long REFRESH_AHEAD_MILLIS = 2 * 60 * 1000;
+    
+    /**
+     * Maximum total weight (leaderboard rows) held across all cached rankings
+     * Fits about a hundred full-depth rankings; keeps heap use predictable
+     * regardless of how many subjects are requested
      */
-    private static final Map<String, CacheEntry> leaderboardCache = new ConcurrentHashMap<>();
+    public static final long CACHE_MAX_WEIGHT = 100_000;
     
     /**
-     * Cache TTL: 5 minutes (300,000 milliseconds)
+     * Last invalidation stamp per cache key, used to drop rankings loaded before a write
+     * Stamps come from one global counter, so a pruned key never reuses an old version
      */
-    public static final long CACHE_TTL_MILLIS = 5 * 60 * 1000;
+    private final Map<String, Long> keyVersions = new ConcurrentHashMap<>();
+    private final AtomicLong invalidationCounter = new AtomicLong();
     
     /**
-     * Get cached leaderboard response
+     * Background refreshes run here so no request thread pays for them
      */
-    public LeaderboardResponse get(String key) {
-        CacheEntry entry = leaderboardCache.get(key);
-        if (entry != null && !entry.isExpired()) {
-            return entry.getData();
+    private final ExecutorService refreshExecutor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "leaderboard-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong refreshFailureCount = new AtomicLong();
+    private final AtomicLong restoredCount = new AtomicLong();
+    
+    /**
+     * In-memory cache storage, holding completed or in-flight loads
+     * Key format: "window|subject"
+     */
+    private final AsyncCache<String, CacheEntry> leaderboardCache = Caffeine.newBuilder()
+        .maximumWeight(CACHE_MAX_WEIGHT)
+        .weigher((String key, CacheEntry entry) -> entry.weight())
+        .expireAfterWrite(Duration.ofMillis(CACHE_TTL_MILLIS))
+        .recordStats()
+        .buildAsync();
+    
+    /**
+     * Get cached ranking, loading it on a miss
+     * Loads are counted in the cache statistics (load time, failures)
+     * 
+     * Only one load runs per key: the caller that misses first runs the loader on its
+     * own thread, concurrent callers for the same key block on its future instead of
+     * starting their own aggregation
+     * 
+     * @param key "window|subject" the ranking is computed for
+     * @param loader computes the ranking on a miss
+     */
+    public LeaderboardRanking get(String key, Function<String, LeaderboardRanking> loader) {
+        // Remember the key version so a write racing with the load is not kept
+        long version = currentVersion(key);
+        CompletableFuture<CacheEntry> pending = new CompletableFuture<>();
+        CompletableFuture<CacheEntry> future = leaderboardCache.get(key, (k, executor) -> pending);
+        
+        if (future == pending) {
+            // This caller owns the load; a failure is handed to every waiter and the entry dropped
+            try {
+                pending.complete(new CacheEntry(loader.apply(key), loader));
+            } catch (RuntimeException | Error e) {
+                pending.completeExceptionally(e);
+                throw e;
+            }
         }
-        // Remove expired entry
-        if (entry != null) {
-            leaderboardCache.remove(key);
+        
+        CacheEntry entry = join(future);
+        if (future != pending) {
+            entry.hits.incrementAndGet();
+        }
+        
+        // Re-check after insert so a concurrent invalidate can never leave a stale entry behind
+        if (currentVersion(key) != version) {
+            leaderboardCache.asMap().remove(key, future);
         }
-        return null;
+        return entry.getData();
     }
     
     /**
-     * Put leaderboard response in cache
+     * Get cached ranking without loading or waiting for an in-flight load
      */
-    public void put(String key, LeaderboardResponse response) {
-        leaderboardCache.put(key, new CacheEntry(response, CACHE_TTL_MILLIS));
+    public LeaderboardRanking getIfPresent(String key) {
+        CompletableFuture<CacheEntry> future = leaderboardCache.getIfPresent(key);
+        if (future == null || !future.isDone() || future.isCompletedExceptionally()) {
+            return null;
+        }
+        return future.join().getData();
     }
     
     /**
-     * Generate cache key for leaderboard queries
-     * Format: "period|subject|limit|page|anonymize"
+     * Wait for a load, rethrowing the loader's own exception
      */
-    public static String generateCacheKey(
-            String period, 
-            String subject, 
-            Integer limit, 
-            Integer page, 
-            Boolean anonymize) {
-        
-        return String.format("%s|%s|%d|%d|%b",
-            period != null ? period : "all",
-            subject != null ? subject : "all",
-            limit != null ? limit : 10,
-            page != null ? page : 1,
-            anonymize != null ? anonymize : false
+    private CacheEntry join(CompletableFuture<CacheEntry> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Current invalidation version of a cache key
+     */
+    public long currentVersion(String key) {
+        return keyVersions.getOrDefault(key, 0L);
+    }
+    
+    /**
+     * Evict cached rankings affected by a write to a log on the given day and subject
+     * Covers every window containing the day, both subject-filtered and unfiltered ("all")
+     * In-flight loads are in the map too, so their version bump drops them on completion
+     */
+    public void invalidate(LocalDate day, String subject) {
+        for (String key : leaderboardCache.asMap().keySet()) {
+            if (isAffectedBy(key, day, subject)) {
+                invalidateKey(key);
+            }
+        }
+    }
+    
+    /**
+     * Whether a write to a log on the given day and subject changes the data behind a key
+     */
+    public static boolean isAffectedBy(String key, LocalDate day, String subject) {
+        int separator = key.indexOf('|');
+        String keySubject = key.substring(separator + 1);
+        return (keySubject.equals("all") || keySubject.equals(subject != null ? subject : "all"))
+            && LeaderboardWindow.fromKey(key.substring(0, separator)).contains(day);
+    }
+    
+    private void invalidateKey(String key) {
+        keyVersions.put(key, invalidationCounter.incrementAndGet());
+        leaderboardCache.synchronous().invalidate(key);
+    }
+    
+    /**
+     * Generate cache key for a ranking
+     * Format: "window|subject", e.g. "2025-01-06..2025-01-13|Mathematics"
+     */
+    public static String generateCacheKey(LeaderboardWindow window, String subject) {
+        return String.format("%s|%s",
+            window.key(),
+            subject != null ? subject : "all"
         );
     }
     
     /**
-     * Cleanup expired cache entries every 10 minutes
+     * Run pending expirations and drop versions of keys no longer cached every 10 minutes
+     * Caffeine also does this maintenance as a side effect of reads and writes
+     * Window keys change daily, so their versions would otherwise accumulate
      */
     @Scheduled(fixedRate = 10 * 60 * 1000)
     public void cleanupExpiredEntries() {
-        leaderboardCache.entrySet().removeIf(entry -> entry.getValue().isExpired());
+        leaderboardCache.synchronous().cleanUp();
+        keyVersions.keySet().removeIf(key -> !leaderboardCache.asMap().containsKey(key));
+    }
+    
+    /**
+     * Refresh hot entries that are about to expire every 30 seconds
+     * The current value stays in the cache and is served until the new one replaces it
+     */
+    @Scheduled(fixedRate = 30 * 1000)
+    public void refreshHotEntries() {
+        refreshHotEntries(System.currentTimeMillis());
+    }
+    
+    void refreshHotEntries(long now) {
+        leaderboardCache.asMap().forEach((key, future) -> {
+            if (!future.isDone() || future.isCompletedExceptionally()) {
+                return;
+            }
+            CacheEntry entry = future.join();
+            if (entry.isHot() && entry.isNearExpiry(now) && entry.refreshing.compareAndSet(false, true)) {
+                refreshExecutor.execute(() -> refresh(key, future, entry));
+            }
+        });
+    }
+    
+    /**
+     * Recompute an entry and swap it in, unless it was invalidated or replaced meanwhile
+     */
+    private void refresh(String key, CompletableFuture<CacheEntry> current, CacheEntry entry) {
+        long version = currentVersion(key);
+        try {
+            LeaderboardRanking ranking = entry.loader.apply(key);
+            CacheEntry refreshed = new CacheEntry(ranking, entry.loader);
+            if (currentVersion(key) == version
+                    && leaderboardCache.asMap().replace(key, current, CompletableFuture.completedFuture(refreshed))) {
+                refreshCount.incrementAndGet();
+            }
+        } catch (RuntimeException e) {
+            // The old value simply expires and the next reader loads it
+            refreshFailureCount.incrementAndGet();
+            log.warn("Background refresh failed for leaderboard key {}", key, e);
+        }
+    }
+    
+    /**
+     * Completed rankings currently cached, by key (in-flight and failed loads are skipped)
+     */
+    public Map<String, LeaderboardRanking> snapshot() {
+        Map<String, LeaderboardRanking> rankings = new LinkedHashMap<>();
+        leaderboardCache.asMap().forEach((key, future) -> {
+            if (future.isDone() && !future.isCompletedExceptionally()) {
+                rankings.put(key, future.join().getData());
+            }
+        });
+        return rankings;
+    }
+    
+    /**
+     * Store a ranking computed outside get(), e.g. by a load covering several keys at once
+     * Dropped if the key was invalidated since version was read; an entry already
+     * cached or loading is left alone
+     * 
+     * @param loader recomputes the ranking for background refreshes
+     * @param version currentVersion(key) read before the ranking was computed
+     */
+    public void put(String key, LeaderboardRanking ranking, Function<String, LeaderboardRanking> loader, long version) {
+        if (currentVersion(key) != version) {
+            return;
+        }
+        CompletableFuture<CacheEntry> future = CompletableFuture.completedFuture(new CacheEntry(ranking, loader));
+        if (leaderboardCache.asMap().putIfAbsent(key, future) == null && currentVersion(key) != version) {
+            leaderboardCache.asMap().remove(key, future);
+        }
+    }
+    
+    /**
+     * Seed a ranking computed before a restart and recompute it in the background
+     * The restored value is served until the refresh replaces it; keys already cached
+     * or loading are left alone
+     * 
+     * @return whether the ranking was restored
+     */
+    public boolean restore(String key, LeaderboardRanking ranking, Function<String, LeaderboardRanking> loader) {
+        CacheEntry entry = new CacheEntry(ranking, loader);
+        CompletableFuture<CacheEntry> future = CompletableFuture.completedFuture(entry);
+        if (leaderboardCache.asMap().putIfAbsent(key, future) != null) {
+            return false;
+        }
+        restoredCount.incrementAndGet();
+        entry.refreshing.set(true);
+        refreshExecutor.execute(() -> refresh(key, future, entry));
+        return true;
+    }
+    
+    @PreDestroy
+    public void shutdownRefreshExecutor() {
+        refreshExecutor.shutdownNow();
     }
     
     /**
      * Clear all cache entries (for testing or manual invalidation)
      */
     public void clearCache() {
-        leaderboardCache.clear();
+        leaderboardCache.synchronous().invalidateAll();
     }
     
     /**
      * Get cache statistics
      */
     public Map<String, Object> getCacheStats() {
-        return Map.of(
-            "size", leaderboardCache.size(),
-            "ttlMinutes", CACHE_TTL_MILLIS / 60000
-        );
+        CacheStats stats = leaderboardCache.synchronous().stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", leaderboardCache.synchronous().estimatedSize());
+        result.put("weight", leaderboardCache.synchronous().policy().eviction()
+            .map(eviction -> eviction.weightedSize().orElse(0L))
+            .orElse(0L));
+        result.put("maxWeight", CACHE_MAX_WEIGHT);
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("missRate", stats.missRate());
+        result.put("loadCount", stats.loadCount());
+        result.put("loadFailureCount", stats.loadFailureCount());
+        result.put("averageLoadMillis", stats.averageLoadPenalty() / 1_000_000.0);
+        result.put("evictionCount", stats.evictionCount());
+        result.put("evictionWeight", stats.evictionWeight());
+        result.put("backgroundRefreshCount", refreshCount.get());
+        result.put("backgroundRefreshFailureCount", refreshFailureCount.get());
+        result.put("restoredFromSnapshot", restoredCount.get());
+        result.put("inFlightLoads", leaderboardCache.asMap().values().stream().filter(f -> !f.isDone()).count());
+        result.put("ttlMinutes", CACHE_TTL_MILLIS / 60000);
+        return result;
     }
 }
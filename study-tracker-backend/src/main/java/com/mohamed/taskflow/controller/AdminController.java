@@ -0,0 +1,80 @@
+package com.mohamed.taskflow.controller;
+
+import com.mohamed.taskflow.dto.BulkUserResponse;
+import com.mohamed.taskflow.dto.RegisterRequest;
+import com.mohamed.taskflow.service.PasswordHashingService;
+import com.mohamed.taskflow.service.TokenRevocationService;
+import com.mohamed.taskflow.service.UserProvisioningService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Administration endpoints, restricted to users with the ADMIN role
+ */
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+@CrossOrigin(origins = "${frontend.origin:http://localhost:4200}")
+public class AdminController {
+    
+    private final TokenRevocationService revocationService;
+    private final PasswordHashingService passwordHashingService;
+    private final UserProvisioningService userProvisioningService;
+    
+    /**
+     * Create users from a JSON array of {username, email, password}
+     * Rows are reported individually; taken usernames or emails come back as DUPLICATE
+     */
+    @PostMapping(value = "/users/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkUserResponse> createUsers(@RequestBody List<RegisterRequest> users) {
+        return bulkResponse(() -> userProvisioningService.createUsers(users));
+    }
+    
+    /**
+     * Create users from CSV with a username,email,password header
+     */
+    @PostMapping(value = "/users/bulk", consumes = "text/csv")
+    public ResponseEntity<BulkUserResponse> createUsersFromCsv(@RequestBody String csv) {
+        return bulkResponse(() -> userProvisioningService.createUsersFromCsv(csv));
+    }
+    
+    private ResponseEntity<BulkUserResponse> bulkResponse(Supplier<BulkUserResponse> request) {
+        try {
+            return ResponseEntity.ok(request.get());
+        } catch (IllegalArgumentException e) {
+            // Empty, oversized or malformed request
+            return ResponseEntity.badRequest().build();
+        } catch (RejectedExecutionException e) {
+            // Bulk hashing pool already taken by other bulk requests
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "5").build();
+        }
+    }
+    
+    /**
+     * Revoke every token issued to a user so far, signing them out on all devices
+     */
+    @PostMapping("/users/{userId}/revoke-tokens")
+    public ResponseEntity<Void> revokeTokens(@PathVariable String userId) {
+        revocationService.revokeAllForUser(userId);
+        return ResponseEntity.noContent().build();
+    }
+    
+    /**
+     * Password hashing pool: threads, queue depth, rejected (429) logins and latency percentiles
+     */
+    @GetMapping("/auth-stats")
+    public ResponseEntity<Map<String, Object>> getAuthStats() {
+        return ResponseEntity.ok(passwordHashingService.getStats());
+    }
+}
@@ -6,10 +6,14 @@ import com.mohamed.taskflow.dto.RegisterRequest;
 import com.mohamed.taskflow.service.AuthService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
 @RestController
 @RequestMapping("/api/auth")
 @RequiredArgsConstructor
@@ -18,24 +22,51 @@ public class AuthController {
     
     private final AuthService authService;
     
+    /**
+     * Seconds a client shed with 429 is asked to wait before retrying
+     */
+    private static final String RETRY_AFTER_SECONDS = "1";
+    
+    // Password hashing runs on its own bounded pool; the request thread is released meanwhile
     @PostMapping("/register")
-    public ResponseEntity<AuthResponse> register(@Valid @RequestBody RegisterRequest request) {
+    public CompletableFuture<ResponseEntity<AuthResponse>> register(@Valid @RequestBody RegisterRequest request) {
         try {
-            AuthResponse response = authService.register(request);
-            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+            return authService.register(request)
+                    .thenApply(response -> ResponseEntity.status(HttpStatus.CREATED).body(response));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(tooManyRequests());
         } catch (RuntimeException e) {
             throw new RuntimeException(e.getMessage());
         }
     }
     
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> login(@Valid @RequestBody LoginRequest request) {
+    public CompletableFuture<ResponseEntity<AuthResponse>> login(@Valid @RequestBody LoginRequest request) {
         try {
-            AuthResponse response = authService.login(request);
-            return ResponseEntity.ok(response);
-        } catch (RuntimeException e) {
-            throw new RuntimeException("Invalid username/email or password");
+            return authService.login(request).handle((response, error) -> {
+                if (error != null) {
+                    throw new RuntimeException("Invalid username/email or password");
+                }
+                return ResponseEntity.ok(response);
+            });
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(tooManyRequests());
+        }
+    }
+    
+    private ResponseEntity<AuthResponse> tooManyRequests() {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .build();
+    }
+    
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestHeader(value = "Authorization", required = false) String authorization) {
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
+        authService.logout(authorization.substring(7));
+        return ResponseEntity.noContent().build();
     }
     
     @GetMapping("/test")
@@ -1,10 +1,26 @@
 package com.mohamed.taskflow.controller;
 
+import com.mohamed.taskflow.dto.LeaderboardBatchRequest;
+import com.mohamed.taskflow.dto.LeaderboardBatchResponse;
+import com.mohamed.taskflow.dto.LeaderboardHistoryResponse;
 import com.mohamed.taskflow.dto.LeaderboardResponse;
+import com.mohamed.taskflow.dto.LeaderboardStatsResponse;
+import com.mohamed.taskflow.dto.LeaderboardWindow;
+import com.mohamed.taskflow.security.CurrentUser;
+import com.mohamed.taskflow.service.LeaderboardHistoryService;
 import com.mohamed.taskflow.service.LeaderboardService;
+import com.mohamed.taskflow.service.LeaderboardStreamService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDate;
+import java.util.Map;
 
 /**
  * REST Controller for leaderboard endpoints
@@ -17,21 +33,28 @@ import org.springframework.web.bind.annotation.*;
 public class LeaderboardController {
     
     private final LeaderboardService leaderboardService;
+    private final LeaderboardStreamService leaderboardStreamService;
+    private final LeaderboardHistoryService leaderboardHistoryService;
     
     /**
      * Get leaderboard ranked by total study time
      * 
-     * @param period Time period filter: "all" (default), "month", "week"
+     * @param period Time period filter: "all" (default), "week" (rolling 7 days), "month" (rolling month),
+     *               "this-week" (ISO week), "this-month" (calendar month)
      * @param subject Optional subject filter (e.g., "Mathematics")
      * @param limit Number of top users to return (default 10, max 100)
      * @param page Page number for pagination (default 1)
      * @param anonymize If true, anonymize usernames for privacy (default false)
+     * @param cursor Optional nextCursor from a previous response; resumes after it instead of using page
+     * @param zone Optional IANA time zone windows are aligned to (default UTC), e.g. "Europe/Paris"
      * @return LeaderboardResponse with ranked users and statistics
      * 
      * Examples:
      * - GET /api/leaderboard?period=week&limit=20&page=1
      * - GET /api/leaderboard?subject=Mathematics&period=month
      * - GET /api/leaderboard?anonymize=true
+     * - GET /api/leaderboard?period=week&limit=20&cursor=NjAwOjIwOnVzZXIx
+     * - GET /api/leaderboard?period=this-week&zone=Africa/Casablanca
      */
     @GetMapping
     public ResponseEntity<LeaderboardResponse> getLeaderboard(
@@ -39,11 +62,13 @@ public class LeaderboardController {
             @RequestParam(required = false) String subject,
             @RequestParam(required = false, defaultValue = "10") Integer limit,
             @RequestParam(required = false, defaultValue = "1") Integer page,
-            @RequestParam(required = false, defaultValue = "false") Boolean anonymize) {
+            @RequestParam(required = false, defaultValue = "false") Boolean anonymize,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String zone) {
         
         try {
             // Validate period parameter
-            if (period != null && !period.matches("(?i)all|month|week")) {
+            if (period != null && !LeaderboardWindow.PERIODS.contains(period.toLowerCase())) {
                 return ResponseEntity.badRequest()
                     .body(new LeaderboardResponse(null, period, page, limit, 0L));
             }
@@ -60,9 +85,13 @@ public class LeaderboardController {
                     .body(new LeaderboardResponse(null, period, page, limit, 0L));
             }
             
-            LeaderboardResponse response = leaderboardService.getLeaderboard(period, subject, limit, page, anonymize);
+            LeaderboardResponse response = leaderboardService.getLeaderboard(period, subject, limit, page, anonymize, cursor, zone);
             return ResponseEntity.ok(response);
             
+        } catch (IllegalArgumentException e) {
+            // Malformed cursor or unknown time zone
+            return ResponseEntity.badRequest()
+                .body(new LeaderboardResponse(null, period, page, limit, 0L));
         } catch (Exception e) {
             // Log error and return 500
             e.printStackTrace();
@@ -70,4 +99,195 @@ public class LeaderboardController {
                 .body(new LeaderboardResponse(null, period, page, limit, 0L));
         }
     }
+    
+    /**
+     * Get several leaderboards in one request, e.g. one per subject tab
+     * Each query takes the same period, subject, limit and page as GET /api/leaderboard;
+     * anonymize and zone apply to every query
+     * 
+     * @return LeaderboardBatchResponse with one LeaderboardResponse per query, in order;
+     *         a query that failed to load has a null result and an entry in errors
+     * 
+     * Example: POST /api/leaderboard/batch
+     * {"queries": [{"period": "week", "subject": "Mathematics", "limit": 10},
+     *              {"period": "week", "subject": "Physics", "limit": 10}]}
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<LeaderboardBatchResponse> getLeaderboards(@RequestBody LeaderboardBatchRequest request) {
+        try {
+            return ResponseEntity.ok(leaderboardService.getLeaderboards(
+                request.getQueries(), request.getAnonymize(), request.getZone()));
+        } catch (IllegalArgumentException e) {
+            // Empty or oversized batch, unknown period or time zone
+            return ResponseEntity.badRequest().body(new LeaderboardBatchResponse(null, null));
+        } catch (Exception e) {
+            // Log error and return 500
+            e.printStackTrace();
+            return ResponseEntity.internalServerError().body(new LeaderboardBatchResponse(null, null));
+        }
+    }
+    
+    /**
+     * Get the current user's rank on a leaderboard
+     * 
+     * @return LeaderboardResponse with only the user's entry, or no entries if they have no study time in the period
+     * 
+     * Example: GET /api/leaderboard/me?period=week&subject=Mathematics
+     */
+    @GetMapping("/me")
+    public ResponseEntity<LeaderboardResponse> getMyRank(
+            @CurrentUser String userId,
+            @RequestParam(required = false, defaultValue = "all") String period,
+            @RequestParam(required = false) String subject,
+            @RequestParam(required = false) String zone) {
+        
+        if (period != null && !LeaderboardWindow.PERIODS.contains(period.toLowerCase())) {
+            return ResponseEntity.badRequest()
+                .body(new LeaderboardResponse(null, period, null, 1, 0L));
+        }
+        
+        try {
+            return ResponseEntity.ok(leaderboardService.getMyRank(userId, period, subject, zone));
+        } catch (IllegalArgumentException e) {
+            // Unknown time zone
+            return ResponseEntity.badRequest()
+                .body(new LeaderboardResponse(null, period, null, 1, 0L));
+        }
+    }
+    
+    /**
+     * Get the users ranked around the current user
+     * 
+     * @param radius Users to include above and below the current user (default 5, max 50)
+     * @param anonymize If true, anonymize other users' names (default false)
+     * @return LeaderboardResponse with up to 2 * radius + 1 entries centred on the user
+     * 
+     * Example: GET /api/leaderboard/around-me?radius=5&period=month
+     */
+    @GetMapping("/around-me")
+    public ResponseEntity<LeaderboardResponse> getAroundMe(
+            @CurrentUser String userId,
+            @RequestParam(required = false, defaultValue = "all") String period,
+            @RequestParam(required = false) String subject,
+            @RequestParam(required = false, defaultValue = "5") Integer radius,
+            @RequestParam(required = false, defaultValue = "false") Boolean anonymize,
+            @RequestParam(required = false) String zone) {
+        
+        if ((period != null && !LeaderboardWindow.PERIODS.contains(period.toLowerCase()))
+                || (radius != null && (radius < 0 || radius > LeaderboardService.MAX_RADIUS))) {
+            return ResponseEntity.badRequest()
+                .body(new LeaderboardResponse(null, period, null, radius, 0L));
+        }
+        
+        try {
+            return ResponseEntity.ok(leaderboardService.getAroundMe(userId, period, subject, radius, anonymize, zone));
+        } catch (IllegalArgumentException e) {
+            // Unknown time zone
+            return ResponseEntity.badRequest()
+                .body(new LeaderboardResponse(null, period, null, radius, 0L));
+        }
+    }
+    
+    /**
+     * Get the distribution of total study time on a leaderboard
+     * Percentiles (p50, p90, p99), a histogram of users per power-of-two range of minutes,
+     * and the current user's percentile
+     * 
+     * Example: GET /api/leaderboard/stats?period=month&subject=Mathematics
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<LeaderboardStatsResponse> getStats(
+            @CurrentUser String userId,
+            @RequestParam(required = false, defaultValue = "all") String period,
+            @RequestParam(required = false) String subject,
+            @RequestParam(required = false) String zone) {
+        
+        if (period != null && !LeaderboardWindow.PERIODS.contains(period.toLowerCase())) {
+            return ResponseEntity.badRequest()
+                .body(new LeaderboardStatsResponse(period, subject, 0L, null, null, null, null, null, null));
+        }
+        
+        try {
+            return ResponseEntity.ok(leaderboardService.getStats(userId, period, subject, zone));
+        } catch (IllegalArgumentException e) {
+            // Unknown time zone
+            return ResponseEntity.badRequest()
+                .body(new LeaderboardStatsResponse(period, subject, 0L, null, null, null, null, null, null));
+        }
+    }
+    
+    /**
+     * Stream rank changes of a leaderboard as Server-Sent Events
+     * Changes are batched every 2 seconds and sent as "rank-delta" events
+     * carrying a LeaderboardDeltaBatch; the stream closes after 30 minutes
+     * 
+     * Example: GET /api/leaderboard/stream?period=week&subject=Mathematics
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamLeaderboard(
+            @RequestParam(required = false, defaultValue = "all") String period,
+            @RequestParam(required = false) String subject,
+            @RequestParam(required = false) String zone,
+            @RequestParam(required = false, defaultValue = "false") Boolean anonymize) {
+        
+        if (period != null && !LeaderboardWindow.PERIODS.contains(period.toLowerCase())) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        try {
+            return ResponseEntity.ok(leaderboardStreamService.subscribe(period, subject, zone, anonymize));
+        } catch (IllegalArgumentException e) {
+            // Unknown time zone
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * Get a user's archived all-time rank per day
+     * Served from the daily rank archive; today's rank is in /me until it is archived
+     * Trends are personal: only admins may read another user's (403 otherwise)
+     * 
+     * @param userId User to get the trend of (default: the current user; others for admins only)
+     * @param subject Optional subject filter
+     * @param from First day (inclusive, default 29 days before to)
+     * @param to Last day (inclusive, default today UTC); at most 366 days after from
+     * @return LeaderboardHistoryResponse with one point per archived day
+     * 
+     * Example: GET /api/leaderboard/history?userId=abc&from=2025-01-01&to=2025-03-31
+     */
+    @GetMapping("/history")
+    public ResponseEntity<LeaderboardHistoryResponse> getHistory(
+            @CurrentUser String currentUserId,
+            Authentication authentication,
+            @RequestParam(required = false) String userId,
+            @RequestParam(required = false) String subject,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        
+        String resolvedUserId = userId != null && !userId.isBlank() ? userId : currentUserId;
+        if (!resolvedUserId.equals(currentUserId) && !isAdmin(authentication)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            return ResponseEntity.ok(leaderboardHistoryService.getHistory(resolvedUserId, subject, from, to));
+        } catch (IllegalArgumentException e) {
+            // Reversed or too long range
+            return ResponseEntity.badRequest()
+                .body(new LeaderboardHistoryResponse(resolvedUserId, subject, from, to, null));
+        }
+    }
+    
+    private boolean isAdmin(Authentication authentication) {
+        return authentication != null && authentication.getAuthorities().stream()
+            .anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
+    }
+    
+    /**
+     * Get leaderboard cache statistics
+     * Hit/miss rates, average load time, evictions and current weight
+     */
+    @GetMapping("/cache-stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(leaderboardService.getCacheStats());
+    }
 }
@@ -0,0 +1,116 @@
+package com.mohamed.taskflow.controller;
+
+import com.mohamed.taskflow.dto.GroupMemberRequest;
+import com.mohamed.taskflow.dto.LeaderboardResponse;
+import com.mohamed.taskflow.dto.LeaderboardWindow;
+import com.mohamed.taskflow.dto.StudyGroupRequest;
+import com.mohamed.taskflow.exception.ResourceNotFoundException;
+import com.mohamed.taskflow.model.StudyGroup;
+import com.mohamed.taskflow.security.CurrentUser;
+import com.mohamed.taskflow.service.GroupLeaderboardService;
+import com.mohamed.taskflow.service.StudyGroupService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * REST Controller for study groups (classes) and their leaderboards
+ */
+@RestController
+@RequestMapping("/api/groups")
+@CrossOrigin(origins = "${frontend.origin:http://localhost:4200}")
+@RequiredArgsConstructor
+public class StudyGroupController {
+    
+    private final StudyGroupService studyGroupService;
+    private final GroupLeaderboardService groupLeaderboardService;
+    
+    /**
+     * POST /api/groups - Create a group owned by the current user
+     */
+    @PostMapping
+    public ResponseEntity<StudyGroup> createGroup(
+            @Valid @RequestBody StudyGroupRequest request,
+            @CurrentUser String userId) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(studyGroupService.create(request.getName(), userId));
+    }
+    
+    /**
+     * GET /api/groups - List the groups the current user belongs to
+     */
+    @GetMapping
+    public ResponseEntity<List<StudyGroup>> getMyGroups(@CurrentUser String userId) {
+        return ResponseEntity.ok(studyGroupService.findForMember(userId));
+    }
+    
+    /**
+     * POST /api/groups/{id}/members - Add a member (group owner only)
+     */
+    @PostMapping("/{id}/members")
+    public ResponseEntity<StudyGroup> addMember(
+            @PathVariable String id,
+            @Valid @RequestBody GroupMemberRequest request,
+            @CurrentUser String userId) {
+        try {
+            return ResponseEntity.ok(studyGroupService.addMember(id, request.getUserId(), userId));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    /**
+     * DELETE /api/groups/{id}/members/{memberId} - Remove a member (owner), or leave the group (member)
+     */
+    @DeleteMapping("/{id}/members/{memberId}")
+    public ResponseEntity<Void> removeMember(
+            @PathVariable String id,
+            @PathVariable String memberId,
+            @CurrentUser String userId) {
+        try {
+            studyGroupService.removeMember(id, memberId, userId);
+            return ResponseEntity.noContent().build();
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    /**
+     * GET /api/groups/{id}/leaderboard - Leaderboard of the group's members (members only)
+     * Takes the same period, subject, limit, page, anonymize and zone parameters as /api/leaderboard
+     * 
+     * Example: GET /api/groups/abc123/leaderboard?period=week&subject=Mathematics
+     */
+    @GetMapping("/{id}/leaderboard")
+    public ResponseEntity<LeaderboardResponse> getGroupLeaderboard(
+            @PathVariable String id,
+            @CurrentUser String userId,
+            @RequestParam(required = false, defaultValue = "all") String period,
+            @RequestParam(required = false) String subject,
+            @RequestParam(required = false, defaultValue = "10") Integer limit,
+            @RequestParam(required = false, defaultValue = "1") Integer page,
+            @RequestParam(required = false, defaultValue = "false") Boolean anonymize,
+            @RequestParam(required = false) String zone) {
+        
+        if ((period != null && !LeaderboardWindow.PERIODS.contains(period.toLowerCase()))
+                || (limit != null && (limit < 1 || limit > 100))
+                || (page != null && page < 1)) {
+            return ResponseEntity.badRequest()
+                .body(new LeaderboardResponse(null, period, page, limit, 0L));
+        }
+        
+        try {
+            return ResponseEntity.ok(groupLeaderboardService.getGroupLeaderboard(
+                id, userId, period, subject, limit, page, anonymize, zone));
+        } catch (IllegalArgumentException e) {
+            // Unknown time zone
+            return ResponseEntity.badRequest()
+                .body(new LeaderboardResponse(null, period, page, limit, 0L));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.mohamed.taskflow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Result of a bulk user request, one entry per row in request order
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkUserResponse {
+    
+    private int created;
+    
+    private int failed;
+    
+    private List<BulkUserResult> results;
+}
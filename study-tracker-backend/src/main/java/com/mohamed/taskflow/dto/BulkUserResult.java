@@ -0,0 +1,31 @@
+package com.mohamed.taskflow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one row of a bulk user request
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkUserResult {
+    
+    public static final String CREATED = "CREATED";
+    public static final String INVALID = "INVALID";
+    public static final String DUPLICATE = "DUPLICATE";
+    public static final String FAILED = "FAILED";
+    
+    // 1-based position of the row in the request (data rows only for CSV)
+    private int row;
+    
+    private String username;
+    
+    // Id of the created user, null unless CREATED
+    private String id;
+    
+    private String status;
+    
+    private String error;
+}
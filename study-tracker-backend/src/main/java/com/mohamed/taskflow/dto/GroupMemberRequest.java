@@ -0,0 +1,15 @@
+package com.mohamed.taskflow.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GroupMemberRequest {
+    
+    @NotBlank(message = "User ID is required")
+    private String userId;
+}
@@ -0,0 +1,20 @@
+package com.mohamed.taskflow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Several leaderboards requested at once; anonymize and zone apply to all of them
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardBatchRequest {
+    
+    private List<LeaderboardQuery> queries;
+    private Boolean anonymize;
+    private String zone;
+}
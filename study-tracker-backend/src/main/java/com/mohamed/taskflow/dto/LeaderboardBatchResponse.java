@@ -0,0 +1,23 @@
+package com.mohamed.taskflow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Leaderboards of a batch request, in the order of its queries
+ * 
+ * A query whose leaderboard failed to load has a null result and an error at its index;
+ * errors is null when every query succeeded
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardBatchResponse {
+    
+    private List<LeaderboardResponse> results;
+    
+    private List<String> errors;
+}
@@ -0,0 +1,59 @@
+package com.mohamed.taskflow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Keyset position in a leaderboard: the last row of the previous page
+ * Rows are ordered by totalMinutes descending, then userId ascending,
+ * so (totalMinutes, userId) identifies a unique position
+ * 
+ * Sent to clients as an opaque URL-safe token; the rank is carried along
+ * so the next page can keep numbering without counting the rows before it
+ */
+@Getter
+@AllArgsConstructor
+public class LeaderboardCursor {
+    
+    private final long totalMinutes;
+    private final String userId;
+    private final int rank;
+    
+    public static LeaderboardCursor after(LeaderboardEntry entry) {
+        return new LeaderboardCursor(entry.getTotalMinutes(), entry.getUserId(), entry.getRank());
+    }
+    
+    /**
+     * Encode as "totalMinutes:rank:userId" in unpadded base64url
+     */
+    public String encode() {
+        String raw = totalMinutes + ":" + rank + ":" + userId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Decode a token produced by encode()
+     * 
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static LeaderboardCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", 3);
+            if (parts.length != 3 || parts[2].isEmpty()) {
+                throw new IllegalArgumentException("Invalid leaderboard cursor");
+            }
+            int rank = Integer.parseInt(parts[1]);
+            if (rank < 1) {
+                throw new IllegalArgumentException("Invalid leaderboard cursor");
+            }
+            return new LeaderboardCursor(Long.parseLong(parts[0]), parts[2], rank);
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException and base64 errors are IllegalArgumentExceptions too
+            throw new IllegalArgumentException("Invalid leaderboard cursor", e);
+        }
+    }
+}
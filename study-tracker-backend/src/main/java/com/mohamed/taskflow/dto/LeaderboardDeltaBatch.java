@@ -0,0 +1,21 @@
+package com.mohamed.taskflow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Rank changes of one (period, subject) channel collected over a batch window
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardDeltaBatch {
+    
+    private String period;
+    private String subject;
+    private List<LeaderboardRankDelta> deltas;
+    private Long totalUsers;
+}
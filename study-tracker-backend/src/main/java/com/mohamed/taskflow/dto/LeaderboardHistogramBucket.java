@@ -0,0 +1,18 @@
+package com.mohamed.taskflow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Number of ranked users whose total minutes fall in [fromMinutes, toMinutes)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardHistogramBucket {
+    
+    private Long fromMinutes;
+    private Long toMinutes;
+    private Long users;
+}
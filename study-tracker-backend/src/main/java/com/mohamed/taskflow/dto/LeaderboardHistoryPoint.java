@@ -0,0 +1,21 @@
+package com.mohamed.taskflow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * A user's all-time rank as archived at the end of one day
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardHistoryPoint {
+    
+    private LocalDate date;
+    private Integer rank;
+    private Long totalMinutes;
+    private Long totalUsers;
+}
@@ -0,0 +1,24 @@
+package com.mohamed.taskflow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Rank trend of one user over a date range, oldest point first
+ * Days without a point were not archived (or the user was not ranked yet)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardHistoryResponse {
+    
+    private String userId;
+    private String subject;
+    private LocalDate from;
+    private LocalDate to;
+    private List<LeaderboardHistoryPoint> points;
+}
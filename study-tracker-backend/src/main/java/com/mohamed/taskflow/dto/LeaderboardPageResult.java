@@ -0,0 +1,20 @@
+package com.mohamed.taskflow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Result of the single-pass leaderboard $facet aggregation
+ * Holds the requested page of ranked users and the total distinct-user count
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardPageResult {
+    
+    private List<LeaderboardEntry> entries;
+    private Long totalUsers;
+}
@@ -0,0 +1,20 @@
+package com.mohamed.taskflow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One leaderboard of a batch request, with the same meaning and defaults
+ * as the query parameters of GET /api/leaderboard
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardQuery {
+    
+    private String period;
+    private String subject;
+    private Integer limit;
+    private Integer page;
+}
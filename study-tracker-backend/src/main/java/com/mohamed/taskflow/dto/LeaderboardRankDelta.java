@@ -0,0 +1,24 @@
+package com.mohamed.taskflow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Change of one user's position pushed to leaderboard stream subscribers
+ * A rank of 0 means unranked
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardRankDelta {
+    
+    private String userId;
+    private String username;
+    private Integer previousRank;
+    private Integer rank;
+    private Long previousMinutes;
+    private Long totalMinutes;
+    private Long minutesDelta;
+    private Long sessionCount;
+}
@@ -0,0 +1,92 @@
+package com.mohamed.taskflow.dto;
+
+import com.mohamed.taskflow.util.UserIdDictionary;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ranked users for one (period, subject), cached once and sliced per request
+ * 
+ * Rows are sorted by total minutes, ranked from 1, carry the real username,
+ * and hold at most the top RANKING_DEPTH users of the leaderboard
+ * 
+ * Rows are stored column-wise, with user ids encoded by UserIdDictionary;
+ * LeaderboardEntry objects are only built for the rows a response returns
+ */
+public class LeaderboardRanking {
+    
+    private final UserIdDictionary dictionary;
+    private final int[] users;
+    private final long[] minutes;
+    private final long[] sessions;
+    private final String[] usernames;
+    
+    @Getter
+    private final long totalUsers;
+    
+    /**
+     * Encode ranked entries; their order is kept and their ranks are taken as 1, 2, 3, ...
+     */
+    public LeaderboardRanking(List<LeaderboardEntry> entries, long totalUsers, UserIdDictionary dictionary) {
+        int size = entries.size();
+        this.dictionary = dictionary;
+        this.users = new int[size];
+        this.minutes = new long[size];
+        this.sessions = new long[size];
+        this.usernames = new String[size];
+        this.totalUsers = totalUsers;
+        for (int i = 0; i < size; i++) {
+            LeaderboardEntry entry = entries.get(i);
+            users[i] = dictionary.encode(entry.getUserId());
+            minutes[i] = entry.getTotalMinutes() != null ? entry.getTotalMinutes() : 0L;
+            sessions[i] = entry.getSessionCount() != null ? entry.getSessionCount() : 0L;
+            usernames[i] = entry.getUsername();
+        }
+    }
+    
+    public int size() {
+        return users.length;
+    }
+    
+    public String getUserId(int index) {
+        return dictionary.decode(users[index]);
+    }
+    
+    public long getTotalMinutes(int index) {
+        return minutes[index];
+    }
+    
+    /**
+     * Build the entry of a row, with its rank and real username
+     */
+    public LeaderboardEntry getEntry(int index) {
+        return new LeaderboardEntry(
+            getUserId(index),
+            usernames[index],
+            minutes[index],
+            sessions[index],
+            sessions[index] > 0 ? (double) minutes[index] / sessions[index] : 0.0,
+            index + 1
+        );
+    }
+    
+    /**
+     * Build the entries of every row
+     */
+    public List<LeaderboardEntry> getEntries() {
+        List<LeaderboardEntry> entries = new ArrayList<>(users.length);
+        for (int i = 0; i < users.length; i++) {
+            entries.add(getEntry(i));
+        }
+        return entries;
+    }
+    
+    /**
+     * Whether the rows up to (exclusive) endIndex are all held in this ranking
+     */
+    public boolean covers(int endIndex) {
+        return endIndex <= users.length || users.length >= totalUsers;
+    }
+}
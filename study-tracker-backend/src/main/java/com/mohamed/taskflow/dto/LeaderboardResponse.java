@@ -19,4 +19,13 @@ public class LeaderboardResponse {
     private Integer page;
     private Integer limit;
     private Long totalUsers;
+    
+    /**
+     * Opaque cursor for the page after this one (null on the last page)
+     */
+    private String nextCursor;
+    
+    public LeaderboardResponse(List<LeaderboardEntry> leaderboard, String period, Integer page, Integer limit, Long totalUsers) {
+        this(leaderboard, period, page, limit, totalUsers, null);
+    }
 }
@@ -0,0 +1,31 @@
+package com.mohamed.taskflow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Distribution of total minutes among the ranked users of a leaderboard
+ * Percentiles are estimated from histogram buckets (within 1/16 of the value above 16 minutes)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardStatsResponse {
+    
+    private String period;
+    private String subject;
+    private Long totalUsers;
+    private Long p50;
+    private Long p90;
+    private Long p99;
+    
+    // Current user's minutes and percentile; null if they have no study time in the period
+    private Long myMinutes;
+    private Double myPercentile;
+    
+    // Non-empty power-of-two ranges of minutes, lowest first
+    private List<LeaderboardHistogramBucket> histogram;
+}
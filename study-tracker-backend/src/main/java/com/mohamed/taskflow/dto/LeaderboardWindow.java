@@ -0,0 +1,92 @@
+package com.mohamed.taskflow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Day-aligned date window a leaderboard period covers
+ * Bounds are whole days: start inclusive, end exclusive (both null for "all")
+ * 
+ * Periods:
+ * - all: no date filter
+ * - week: rolling 7 days ending today
+ * - month: rolling month ending today
+ * - this-week: current ISO week (Monday to Sunday)
+ * - this-month: current calendar month
+ * 
+ * "Today" is taken in the requested time zone (UTC by default), so every
+ * request and instance resolving the same period on the same day gets the same window
+ */
+@Getter
+@AllArgsConstructor
+public class LeaderboardWindow {
+    
+    public static final List<String> PERIODS = List.of("all", "week", "month", "this-week", "this-month");
+    
+    public static final ZoneId DEFAULT_ZONE = ZoneOffset.UTC;
+    
+    private final LocalDate start;
+    private final LocalDate end;
+    
+    /**
+     * Resolve a period to its window on the given day
+     * 
+     * @throws IllegalArgumentException if the period is unknown
+     */
+    public static LeaderboardWindow of(String period, LocalDate today) {
+        LocalDate tomorrow = today.plusDays(1);
+        switch (period) {
+            case "all":
+                return new LeaderboardWindow(null, null);
+            case "week":
+                return new LeaderboardWindow(today.minusDays(6), tomorrow);
+            case "month":
+                return new LeaderboardWindow(today.minusMonths(1).plusDays(1), tomorrow);
+            case "this-week":
+                LocalDate monday = today.with(DayOfWeek.MONDAY);
+                return new LeaderboardWindow(monday, monday.plusWeeks(1));
+            case "this-month":
+                LocalDate first = today.withDayOfMonth(1);
+                return new LeaderboardWindow(first, first.plusMonths(1));
+            default:
+                throw new IllegalArgumentException("Unknown leaderboard period: " + period);
+        }
+    }
+    
+    /**
+     * Whether a study log dated on this day counts towards the window
+     */
+    public boolean contains(LocalDate day) {
+        if (start == null) {
+            return true;
+        }
+        return day != null && !day.isBefore(start) && day.isBefore(end);
+    }
+    
+    /**
+     * Stable identity of the window: "start..end", or "all" when unbounded
+     */
+    public String key() {
+        return start == null ? "all" : start + ".." + end;
+    }
+    
+    /**
+     * Parse a key produced by key()
+     */
+    public static LeaderboardWindow fromKey(String key) {
+        if ("all".equals(key)) {
+            return new LeaderboardWindow(null, null);
+        }
+        int separator = key.indexOf("..");
+        return new LeaderboardWindow(
+            LocalDate.parse(key.substring(0, separator)),
+            LocalDate.parse(key.substring(separator + 2))
+        );
+    }
+}
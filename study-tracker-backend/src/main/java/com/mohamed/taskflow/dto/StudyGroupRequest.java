@@ -0,0 +1,17 @@
+package com.mohamed.taskflow.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StudyGroupRequest {
+    
+    @NotBlank(message = "Group name is required")
+    @Size(max = 100, message = "Group name must be at most 100 characters")
+    private String name;
+}
@@ -0,0 +1,21 @@
+package com.mohamed.taskflow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Read-only projection of a user: id, enabled flag and roles only
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserStatus {
+    
+    private String id;
+    private boolean enabled;
+    private Set<String> roles = new HashSet<>();
+}
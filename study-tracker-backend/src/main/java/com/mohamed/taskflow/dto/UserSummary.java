@@ -0,0 +1,18 @@
+package com.mohamed.taskflow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Read-only projection of a user: id and username only
+ * Loaded without the password hash, roles or other fields of User
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSummary {
+    
+    private String id;
+    private String username;
+}
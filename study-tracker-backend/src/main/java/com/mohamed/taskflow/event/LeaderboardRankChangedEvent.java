@@ -0,0 +1,25 @@
+package com.mohamed.taskflow.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published by LeaderboardRankIndex when a study log write moves a user within one standings
+ * 
+ * - rank 0 means unranked (no study time in the window): previousRank 0 for a newcomer,
+ *   rank 0 for a user whose last log was removed
+ */
+@Getter
+@AllArgsConstructor
+public class LeaderboardRankChangedEvent {
+    
+    // Cache key of the standings: "window|subject"
+    private final String key;
+    private final String userId;
+    private final int previousRank;
+    private final long previousMinutes;
+    private final int rank;
+    private final long totalMinutes;
+    private final long sessionCount;
+    private final long totalUsers;
+}
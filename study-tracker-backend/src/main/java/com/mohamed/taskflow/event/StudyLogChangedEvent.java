@@ -0,0 +1,21 @@
+package com.mohamed.taskflow.event;
+
+import com.mohamed.taskflow.model.StudyLog;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published by StudyLogService after a study log is created, updated or deleted
+ *
+ * - created: previous is null
+ * - updated: both previous and current are set
+ * - deleted: current is null
+ */
+@Getter
+@AllArgsConstructor
+public class StudyLogChangedEvent {
+
+    private final String userId;
+    private final StudyLog previous;
+    private final StudyLog current;
+}
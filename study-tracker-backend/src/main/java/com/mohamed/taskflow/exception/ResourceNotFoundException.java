@@ -0,0 +1,13 @@
+package com.mohamed.taskflow.exception;
+
+/**
+ * A requested resource does not exist, or the caller may not see or change it
+ *
+ * Both cases map to 404, so callers cannot probe for resources they have no access to
+ */
+public class ResourceNotFoundException extends RuntimeException {
+
+    public ResourceNotFoundException(String message) {
+        super(message);
+    }
+}
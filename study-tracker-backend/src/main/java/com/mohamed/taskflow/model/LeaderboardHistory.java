@@ -0,0 +1,68 @@
+package com.mohamed.taskflow.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Archived daily all-time rank of one user for one subject ("all" for every subject)
+ * Written by LeaderboardHistoryService, one document per (userId, subject, month)
+ * 
+ * Days are appended, never rewritten; the value arrays are delta-encoded:
+ * the first element is absolute and each following one is the change since the
+ * previous archived day, so each month document decodes on its own
+ * The last* fields hold the decoded latest values the next delta is taken from
+ */
+@Document(collection = LeaderboardHistory.COLLECTION)
+@CompoundIndex(name = "subject_month", def = "{'subject': 1, 'month': 1}")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardHistory {
+    
+    public static final String COLLECTION = "leaderboard_history";
+    
+    /**
+     * "userId|subject|yyyy-MM", see idOf()
+     */
+    @Id
+    private String id;
+    
+    private String userId;
+    
+    private String subject;
+    
+    // yyyy-MM
+    private String month;
+    
+    // Day of month of each archived point
+    private List<Integer> days;
+    
+    private List<Integer> rankDeltas;
+    
+    private List<Long> minuteDeltas;
+    
+    private List<Long> totalUserDeltas;
+    
+    private LocalDate lastDay;
+    
+    private Integer lastRank;
+    
+    private Long lastMinutes;
+    
+    private Long lastTotalUsers;
+    
+    public static String idOf(String userId, String subject, LocalDate day) {
+        return userId + "|" + subject + "|" + monthOf(day);
+    }
+    
+    public static String monthOf(LocalDate day) {
+        return day.toString().substring(0, 7);
+    }
+}
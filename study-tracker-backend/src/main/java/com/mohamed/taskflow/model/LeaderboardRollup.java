@@ -0,0 +1,79 @@
+package com.mohamed.taskflow.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Pre-aggregated study time per (userId, subject, day)
+ * Maintained by LeaderboardRollupService with $merge from study_logs
+ */
+@Document(collection = LeaderboardRollup.COLLECTION)
+@CompoundIndexes({
+    @CompoundIndex(name = "day_subject", def = "{'day': 1, 'subject': 1}"),
+    @CompoundIndex(name = "user_refreshed", def = "{'userId': 1, 'refreshedAt': 1}"),
+    @CompoundIndex(name = "user_bucket_day_subject", def = "{'userBucket': 1, 'day': 1, 'subject': 1}")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardRollup {
+
+    public static final String COLLECTION = "leaderboard_rollups";
+
+    /**
+     * Number of userBucket values: 0..USER_BUCKETS - 1
+     */
+    public static final int USER_BUCKETS = 16;
+
+    private static final String HEX_DIGITS = "0123456789abcdef";
+
+    /**
+     * Composite key produced by the $group stage: { userId, subject, day }
+     */
+    @Id
+    private Key id;
+
+    private String userId;
+
+    private String subject;
+
+    private LocalDate day;
+
+    private Long totalMinutes;
+
+    private Long sessionCount;
+
+    // Start of the rollup run that last wrote this bucket
+    private Instant refreshedAt;
+
+    // userBucketOf(userId), so partitioned aggregations match an indexed range instead of the userId text
+    private Integer userBucket;
+
+    /**
+     * Bucket of a user id: the value of its last hex digit, 0 for ids not ending in one
+     * ObjectIds end with a counter, so users spread evenly over the buckets
+     */
+    public static int userBucketOf(String userId) {
+        if (userId == null || userId.isEmpty()) {
+            return 0;
+        }
+        return Math.max(0, HEX_DIGITS.indexOf(Character.toLowerCase(userId.charAt(userId.length() - 1))));
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key {
+        private String userId;
+        private String subject;
+        private LocalDate day;
+    }
+}
@@ -0,0 +1,37 @@
+package com.mohamed.taskflow.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A class or study group with its own leaderboard
+ * 
+ * Each instance derives a membership bitmap from memberIds (see StudyGroupService);
+ * it is not stored, since the user ids it is indexed by are local to the instance
+ */
+@Document(collection = "study_groups")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StudyGroup {
+    
+    @Id
+    private String id;
+    
+    private String name;
+    
+    private String ownerId;
+    
+    @Indexed
+    private Set<String> memberIds = new HashSet<>();
+    
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
@@ -1,6 +1,7 @@
 package com.mohamed.taskflow.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -10,6 +11,7 @@ import lombok.NoArgsConstructor;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import java.time.Instant;
 import java.time.LocalDate;
 
 @Document(collection = "study_logs")
@@ -39,4 +41,8 @@ public class StudyLog {
     private LocalDate date;
     
     private String notes;
+    
+    // Set by the service layer on every write; drives incremental leaderboard rollups
+    @Indexed
+    private Instant updatedAt;
 }
\ No newline at end of file
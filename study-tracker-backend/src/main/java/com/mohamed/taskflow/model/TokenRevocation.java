@@ -0,0 +1,37 @@
+package com.mohamed.taskflow.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * A revoked token (tokenId set), or every token of a user issued up to revokedAt (tokenId null)
+ * Written by TokenRevocationService; MongoDB deletes it once the tokens it covers have expired
+ */
+@Document(collection = TokenRevocation.COLLECTION)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenRevocation {
+    
+    public static final String COLLECTION = "token_revocations";
+    
+    @Id
+    private String id;
+    
+    private String tokenId;
+    
+    private String userId;
+    
+    @Indexed
+    private Instant revokedAt;
+    
+    // Expiry of the latest token covered
+    @Indexed(expireAfterSeconds = 0)
+    private Instant expiresAt;
+}
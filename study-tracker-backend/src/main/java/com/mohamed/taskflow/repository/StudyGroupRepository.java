@@ -0,0 +1,13 @@
+package com.mohamed.taskflow.repository;
+
+import com.mohamed.taskflow.model.StudyGroup;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StudyGroupRepository extends MongoRepository<StudyGroup, String> {
+    
+    List<StudyGroup> findByMemberIdsContaining(String userId);
+}
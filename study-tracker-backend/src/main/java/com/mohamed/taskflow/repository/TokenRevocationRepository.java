@@ -0,0 +1,14 @@
+package com.mohamed.taskflow.repository;
+
+import com.mohamed.taskflow.model.TokenRevocation;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface TokenRevocationRepository extends MongoRepository<TokenRevocation, String> {
+    
+    List<TokenRevocation> findByRevokedAtAfter(Instant revokedAt);
+}
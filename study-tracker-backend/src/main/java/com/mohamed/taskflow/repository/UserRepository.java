@@ -1,9 +1,13 @@
 package com.mohamed.taskflow.repository;
 
+import com.mohamed.taskflow.dto.UserStatus;
+import com.mohamed.taskflow.dto.UserSummary;
 import com.mohamed.taskflow.model.User;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -18,4 +22,14 @@ public interface UserRepository extends MongoRepository<User, String> {
     Boolean existsByUsername(String username);
     
     Boolean existsByEmail(String email);
+    
+    /**
+     * Ids and usernames of the given users, without loading full documents
+     */
+    List<UserSummary> findSummariesByIdIn(Collection<String> ids);
+    
+    /**
+     * Id, enabled flag and roles of a user, without loading the full document
+     */
+    Optional<UserStatus> findStatusById(String id);
 }
@@ -0,0 +1,40 @@
+package com.mohamed.taskflow.security;
+
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.security.Principal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Principal of a request authenticated by JWT, built from the token's claims
+ * Carries the user id so controllers get it without looking the user up
+ */
+@Getter
+public class AuthenticatedUser implements Principal {
+    
+    private final String id;
+    private final String username;
+    private final Set<String> roles;
+    
+    public AuthenticatedUser(String id, String username, Collection<String> roles) {
+        this.id = id;
+        this.username = username;
+        this.roles = roles != null ? Set.copyOf(roles) : Set.of();
+    }
+    
+    @Override
+    public String getName() {
+        return username;
+    }
+    
+    public List<GrantedAuthority> getAuthorities() {
+        return roles.stream()
+                .map(role -> (GrantedAuthority) new SimpleGrantedAuthority("ROLE_" + role))
+                .collect(Collectors.toList());
+    }
+}
@@ -1,11 +1,8 @@
 package com.mohamed.taskflow.security;
 
-import com.mohamed.taskflow.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
 import org.springframework.core.MethodParameter;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import org.springframework.web.bind.support.WebDataBinderFactory;
 import org.springframework.web.context.request.NativeWebRequest;
@@ -14,13 +11,11 @@ import org.springframework.web.method.support.ModelAndViewContainer;
 
 /**
  * Resolves @CurrentUser annotation to inject the authenticated user's ID
+ * The ID comes from the JWT principal, without a user lookup
  */
 @Component
-@RequiredArgsConstructor
 public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
     
-    private final UserRepository userRepository;
-    
     @Override
     public boolean supportsParameter(MethodParameter parameter) {
         return parameter.hasParameterAnnotation(CurrentUser.class) 
@@ -42,11 +37,8 @@ public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolve
         
         Object principal = authentication.getPrincipal();
         
-        if (principal instanceof UserDetails) {
-            String username = ((UserDetails) principal).getUsername();
-            return userRepository.findByUsername(username)
-                    .orElseThrow(() -> new RuntimeException("User not found"))
-                    .getId();
+        if (principal instanceof AuthenticatedUser) {
+            return ((AuthenticatedUser) principal).getId();
         }
         
         throw new RuntimeException("Invalid authentication principal");
@@ -25,15 +25,17 @@ public class CustomUserDetailsService implements UserDetailsService {
                 .orElseThrow(() -> 
                     new UsernameNotFoundException("User not found with username or email: " + usernameOrEmail));
         
-        return new org.springframework.security.core.userdetails.User(
-                user.getUsername(),
-                user.getPassword(),
-                user.isEnabled(),
-                true,
-                true,
-                true,
-                getAuthorities(user)
-        );
+        return new UserAccountDetails(user, getAuthorities(user));
+    }
+    
+    /**
+     * Principal of a token issued before tokens carried the user id claim
+     */
+    public AuthenticatedUser loadPrincipal(String usernameOrEmail) throws UsernameNotFoundException {
+        User user = userRepository.findByUsernameOrEmail(usernameOrEmail, usernameOrEmail)
+                .orElseThrow(() -> 
+                    new UsernameNotFoundException("User not found with username or email: " + usernameOrEmail));
+        return new AuthenticatedUser(user.getId(), user.getUsername(), user.getRoles());
     }
     
     private Collection<? extends GrantedAuthority> getAuthorities(User user) {
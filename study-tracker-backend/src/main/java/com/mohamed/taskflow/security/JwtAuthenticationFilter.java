@@ -1,5 +1,9 @@
 package com.mohamed.taskflow.security;
 
+import com.mohamed.taskflow.dto.UserStatus;
+import com.mohamed.taskflow.service.TokenRevocationService;
+import com.mohamed.taskflow.service.UserStatusService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -8,20 +12,31 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Optional;
 
+/**
+ * Authenticates requests from their bearer token
+ * The principal is built from the verified token's claims; the per-request checks are
+ * in memory: TokenRevocationService for revoked tokens and UserStatusService's
+ * short-lived cache of whether the user is still enabled
+ * 
+ * Authorities come from the cached status rather than the token's roles claim, so a
+ * role change applies to existing tokens within UserStatusService.STATUS_TTL_MILLIS
+ */
 @Component
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     
     private final JwtUtil jwtUtil;
     private final CustomUserDetailsService userDetailsService;
+    private final UserStatusService userStatusService;
+    private final TokenRevocationService revocationService;
     
     @Override
     protected void doFilterInternal(
@@ -33,17 +48,25 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = getJwtFromRequest(request);
             
-            if (StringUtils.hasText(jwt) && jwtUtil.extractUsername(jwt) != null) {
-                String username = jwtUtil.extractUsername(jwt);
-                
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            if (StringUtils.hasText(jwt)) {
+                // Verifies the signature and expiry, once per distinct token
+                Claims claims = jwtUtil.verify(jwt);
+                AuthenticatedUser user = jwtUtil.toPrincipal(claims);
+                if (user == null) {
+                    // Token issued before tokens carried the user id
+                    user = userDetailsService.loadPrincipal(claims.getSubject());
+                }
                 
-                if (jwtUtil.validateToken(jwt, userDetails)) {
+                boolean revoked = revocationService.isRevoked(
+                        jwtUtil.tokenId(jwt, claims), user.getId(), claims.getIssuedAt());
+                Optional<UserStatus> status = revoked ? Optional.empty() : userStatusService.findActive(user.getId());
+                if (status.isPresent()) {
+                    user = new AuthenticatedUser(user.getId(), user.getUsername(), status.get().getRoles());
                     UsernamePasswordAuthenticationToken authentication = 
                             new UsernamePasswordAuthenticationToken(
-                                    userDetails,
+                                    user,
                                     null,
-                                    userDetails.getAuthorities()
+                                    user.getAuthorities()
                             );
                     
                     authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
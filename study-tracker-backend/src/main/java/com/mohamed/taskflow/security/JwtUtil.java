@@ -1,5 +1,9 @@
 package com.mohamed.taskflow.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.mohamed.taskflow.model.User;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
@@ -8,24 +12,76 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
+/**
+ * Issues and verifies JWTs
+ * 
+ * The signing key and parser are built once. Verified claims are cached by the
+ * SHA-256 of the token until the token's expiry, so a client repeating its token
+ * skips the HMAC check, base64 decoding and JSON parsing after the first request
+ */
 @Component
 public class JwtUtil {
     
-    @Value("${jwt.secret}")
-    private String secret;
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String ROLES_CLAIM = "roles";
     
-    @Value("${jwt.expiration}")
-    private Long expiration;
+    /**
+     * Maximum verified tokens held in the claims cache
+     */
+    public static final long MAX_VERIFIED_TOKENS = 10_000;
     
-    // Generate token with user details
-    public String generateToken(UserDetails userDetails) {
+    private final Long expiration;
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+    
+    // SHA-256 of the token -> its verified claims, expiring with the token
+    private final Cache<ByteBuffer, Claims> verified = Caffeine.newBuilder()
+            .maximumSize(MAX_VERIFIED_TOKENS)
+            .expireAfter(new Expiry<ByteBuffer, Claims>() {
+                @Override
+                public long expireAfterCreate(ByteBuffer key, Claims claims, long currentTime) {
+                    long millis = claims.getExpiration().getTime() - System.currentTimeMillis();
+                    return TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+                }
+                
+                @Override
+                public long expireAfterUpdate(ByteBuffer key, Claims claims, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+                
+                @Override
+                public long expireAfterRead(ByteBuffer key, Claims claims, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+    
+    public JwtUtil(@Value("${jwt.secret}") String secret, @Value("${jwt.expiration}") Long expiration) {
+        this.expiration = expiration;
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+        this.parser = Jwts.parser().verifyWith(signingKey).build();
+    }
+    
+    // Generate token carrying the user's id, so requests authenticate without a lookup
+    // (roles are informational: authorities come from UserStatusService)
+    public String generateToken(User user) {
         Map<String, Object> claims = new HashMap<>();
-        return createToken(claims, userDetails.getUsername());
+        claims.put(USER_ID_CLAIM, user.getId());
+        claims.put(ROLES_CLAIM, user.getRoles() != null ? List.copyOf(user.getRoles()) : List.of());
+        return createToken(claims, user.getUsername());
     }
     
     // Create token with claims
@@ -35,19 +91,14 @@ public class JwtUtil {
         
         return Jwts.builder()
                 .claims(claims)
+                .id(UUID.randomUUID().toString())
                 .subject(subject)
                 .issuedAt(now)
                 .expiration(expiryDate)
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
     
-    // Get signing key
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secret);
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
-    
     // Extract username from token
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
@@ -60,27 +111,63 @@ public class JwtUtil {
     
     // Extract specific claim
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
+        final Claims claims = verify(token);
         return claimsResolver.apply(claims);
     }
     
-    // Extract all claims
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+    /**
+     * Claims of a token whose signature and expiry check out, from the cache when verified before
+     * 
+     * @throws JwtException if the token is malformed, badly signed or expired
+     */
+    public Claims verify(String token) {
+        ByteBuffer key = ByteBuffer.wrap(sha256(token));
+        Claims claims = verified.getIfPresent(key);
+        if (claims != null && claims.getExpiration().after(new Date())) {
+            return claims;
+        }
+        claims = parse(token);
+        if (claims.getExpiration() != null) {
+            verified.put(key, claims);
+        }
+        return claims;
+    }
+    
+    // Verify and parse a token, bypassing the cache
+    Claims parse(String token) {
+        return parser.parseSignedClaims(token).getPayload();
+    }
+    
+    // Id to revoke a token by: its jti, or the hash of the token for tokens issued without one
+    public String tokenId(String token, Claims claims) {
+        return claims.getId() != null ? claims.getId() : HexFormat.of().formatHex(sha256(token));
+    }
+    
+    private static byte[] sha256(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
     
-    // Check if token is expired
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    // Build the principal from verified claims; null for tokens issued without the user id claim
+    public AuthenticatedUser toPrincipal(Claims claims) {
+        String userId = claims.get(USER_ID_CLAIM, String.class);
+        if (userId == null) {
+            return null;
+        }
+        List<?> roles = claims.get(ROLES_CLAIM, List.class);
+        return new AuthenticatedUser(
+                userId,
+                claims.getSubject(),
+                roles != null ? roles.stream().map(String::valueOf).toList() : List.of()
+        );
     }
     
     // Validate token
     public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        final Claims claims = verify(token);
+        return claims.getSubject().equals(userDetails.getUsername()) && claims.getExpiration().after(new Date());
     }
 }
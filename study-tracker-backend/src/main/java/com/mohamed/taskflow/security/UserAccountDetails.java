@@ -0,0 +1,21 @@
+package com.mohamed.taskflow.security;
+
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+
+/**
+ * UserDetails of a login that keeps the User document it was loaded from,
+ * so the authenticated principal can be used without looking the user up again
+ */
+@Getter
+public class UserAccountDetails extends org.springframework.security.core.userdetails.User {
+    
+    private final com.mohamed.taskflow.model.User account;
+    
+    public UserAccountDetails(com.mohamed.taskflow.model.User account, Collection<? extends GrantedAuthority> authorities) {
+        super(account.getUsername(), account.getPassword(), account.isEnabled(), true, true, true, authorities);
+        this.account = account;
+    }
+}
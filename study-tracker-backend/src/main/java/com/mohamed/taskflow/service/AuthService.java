@@ -6,16 +6,20 @@ import com.mohamed.taskflow.dto.RegisterRequest;
 import com.mohamed.taskflow.model.User;
 import com.mohamed.taskflow.repository.UserRepository;
 import com.mohamed.taskflow.security.JwtUtil;
+import com.mohamed.taskflow.security.UserAccountDetails;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @Service
 @RequiredArgsConstructor
@@ -25,8 +29,15 @@ public class AuthService {
     private final PasswordEncoder passwordEncoder;
     private final JwtUtil jwtUtil;
     private final AuthenticationManager authenticationManager;
+    private final TokenRevocationService revocationService;
+    private final PasswordHashingService passwordHashingService;
     
-    public AuthResponse register(RegisterRequest request) {
+    /**
+     * Register a user; the password is hashed on the bounded hashing pool
+     * 
+     * @throws RejectedExecutionException if the hashing pool is saturated
+     */
+    public CompletableFuture<AuthResponse> register(RegisterRequest request) {
         // Check if username already exists
         if (userRepository.existsByUsername(request.getUsername())) {
             throw new RuntimeException("Username is already taken");
@@ -37,6 +48,10 @@ public class AuthService {
             throw new RuntimeException("Email is already in use");
         }
         
+        return passwordHashingService.submit(() -> createUser(request));
+    }
+    
+    private AuthResponse createUser(RegisterRequest request) {
         // Create new user
         User user = new User();
         user.setUsername(request.getUsername());
@@ -51,13 +66,7 @@ public class AuthService {
         User savedUser = userRepository.save(user);
         
         // Generate JWT token
-        UserDetails userDetails = org.springframework.security.core.userdetails.User
-                .withUsername(savedUser.getUsername())
-                .password(savedUser.getPassword())
-                .authorities("ROLE_USER")
-                .build();
-        
-        String token = jwtUtil.generateToken(userDetails);
+        String token = jwtUtil.generateToken(savedUser);
         
         // Build response
         return AuthResponse.builder()
@@ -70,8 +79,17 @@ public class AuthService {
                 .build();
     }
     
-    public AuthResponse login(LoginRequest request) {
-        // Authenticate user
+    /**
+     * Check credentials on the bounded hashing pool and issue a token
+     * 
+     * @throws RejectedExecutionException if the hashing pool is saturated
+     */
+    public CompletableFuture<AuthResponse> login(LoginRequest request) {
+        return passwordHashingService.submit(() -> authenticate(request));
+    }
+    
+    private AuthResponse authenticate(LoginRequest request) {
+        // Authenticate user (user lookup and BCrypt check)
         Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(
                         request.getUsernameOrEmail(),
@@ -79,17 +97,11 @@ public class AuthService {
                 )
         );
         
-        // Get user details
-        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-        
-        // Find user in database
-        User user = userRepository.findByUsernameOrEmail(
-                request.getUsernameOrEmail(),
-                request.getUsernameOrEmail()
-        ).orElseThrow(() -> new RuntimeException("User not found"));
+        // User document loaded by the authentication
+        User user = ((UserAccountDetails) authentication.getPrincipal()).getAccount();
         
         // Generate JWT token
-        String token = jwtUtil.generateToken(userDetails);
+        String token = jwtUtil.generateToken(user);
         
         // Build response
         return AuthResponse.builder()
@@ -101,4 +113,22 @@ public class AuthService {
                         .build())
                 .build();
     }
+    
+    /**
+     * Revoke the token a client logs out with
+     * Tokens that are already invalid or expired have nothing left to revoke
+     */
+    public void logout(String token) {
+        Claims claims;
+        try {
+            claims = jwtUtil.verify(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            return;
+        }
+        revocationService.revokeToken(
+                jwtUtil.tokenId(token, claims),
+                claims.get(JwtUtil.USER_ID_CLAIM, String.class),
+                claims.getExpiration()
+        );
+    }
 }
@@ -0,0 +1,194 @@
+package com.mohamed.taskflow.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mohamed.taskflow.dto.LeaderboardEntry;
+import com.mohamed.taskflow.dto.LeaderboardResponse;
+import com.mohamed.taskflow.exception.ResourceNotFoundException;
+import com.mohamed.taskflow.model.StudyGroup;
+import com.mohamed.taskflow.util.UserIdDictionary;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Leaderboards restricted to the members of a study group
+ *
+ * The global standings of a (window, subject) are copied into arrays indexed by
+ * UserIdDictionary id (minutes, sessions, and a bitmap of users with study time). A group
+ * leaderboard is the AND of that bitmap with the group's membership bitmap, ranked
+ * from the arrays: no query per group and no $match over a member list
+ *
+ * When the standings change, only the users changed since the copy are patched in
+ * (Standings.changedSince); the arrays are rebuilt after a reload of the standings,
+ * or when more changes happened than the standings remember
+ */
+@Service
+@RequiredArgsConstructor
+public class GroupLeaderboardService {
+
+    private final LeaderboardService leaderboardService;
+    private final StudyGroupService studyGroupService;
+    private final UserIdDictionary userIdDictionary;
+
+    /**
+     * Per-user totals of one (window, subject), indexed by UserIdDictionary id
+     */
+    static class UserTotals {
+        private long version;
+        private long[] minutes;
+        private long[] sessions;
+        private final BitSet ranked = new BitSet();
+
+        UserTotals(long version, int capacity) {
+            this.version = version;
+            this.minutes = new long[capacity];
+            this.sessions = new long[capacity];
+        }
+
+        /**
+         * Copy one user's standing, or unrank the user if they have none
+         */
+        synchronized void set(int user, LeaderboardRankIndex.Standing standing) {
+            if (standing == null) {
+                ranked.clear(user);
+                return;
+            }
+            if (user >= minutes.length) {
+                int capacity = Math.max(user + 1, minutes.length * 2);
+                minutes = Arrays.copyOf(minutes, capacity);
+                sessions = Arrays.copyOf(sessions, capacity);
+            }
+            minutes[user] = standing.getTotalMinutes();
+            sessions[user] = standing.getSessionCount();
+            ranked.set(user);
+        }
+
+        /**
+         * Standings of the members with study time, unordered
+         */
+        synchronized List<LeaderboardRankIndex.Standing> rankedMembers(BitSet members, UserIdDictionary dictionary) {
+            BitSet rankedMembers = (BitSet) members.clone();
+            rankedMembers.and(ranked);
+            List<LeaderboardRankIndex.Standing> result = new ArrayList<>(rankedMembers.cardinality());
+            for (int user = rankedMembers.nextSetBit(0); user >= 0; user = rankedMembers.nextSetBit(user + 1)) {
+                result.add(new LeaderboardRankIndex.Standing(dictionary.decode(user), minutes[user], sessions[user]));
+            }
+            return result;
+        }
+    }
+
+    private final Cache<LeaderboardRankIndex.Standings, UserTotals> totals = Caffeine.newBuilder()
+        .weakKeys()
+        .expireAfterAccess(Duration.ofMinutes(10))
+        .maximumSize(LeaderboardRankIndex.MAX_INDEXES)
+        .build();
+
+    /**
+     * Get a group's leaderboard
+     *
+     * @param userId Member requesting it; non-members get the same error as a missing group
+     * @return LeaderboardResponse ranked within the group, totalUsers counting members with study time
+     * @throws IllegalArgumentException if the period or zone is invalid
+     * @throws ResourceNotFoundException if the group does not exist or the user is not a member
+     */
+    public LeaderboardResponse getGroupLeaderboard(
+            String groupId,
+            String userId,
+            String period,
+            String subject,
+            Integer limit,
+            Integer page,
+            Boolean anonymize,
+            String zone) {
+        String resolvedPeriod = period != null ? period.toLowerCase() : "all";
+        int resolvedLimit = limit != null && limit > 0 ? Math.min(limit, 100) : 10;
+        int resolvedPage = page != null && page > 0 ? page : 1;
+        boolean resolvedAnonymize = anonymize != null ? anonymize : false;
+
+        StudyGroup group = studyGroupService.getForMember(groupId, userId);
+        UserTotals userTotals = getTotals(leaderboardService.getStandings(resolvedPeriod, subject, zone));
+
+        // Members with study time in the window
+        List<LeaderboardRankIndex.Standing> ranked = userTotals.rankedMembers(
+            studyGroupService.getMembers(group), userIdDictionary);
+        ranked.sort(LeaderboardRankIndex.ORDER);
+
+        // In long and clamped, so a huge page is an empty page rather than an overflow
+        int fromIndex = (int) Math.min((resolvedPage - 1L) * resolvedLimit, ranked.size());
+        List<LeaderboardRankIndex.Standing> slice = ranked.subList(
+            fromIndex, Math.min(fromIndex + resolvedLimit, ranked.size()));
+        Map<String, String> usernames = resolvedAnonymize
+            ? Map.of()
+            : leaderboardService.resolveUsernames(slice.stream().map(LeaderboardRankIndex.Standing::getUserId).toList());
+
+        List<LeaderboardEntry> entries = new ArrayList<>(slice.size());
+        for (int i = 0; i < slice.size(); i++) {
+            LeaderboardRankIndex.Standing standing = slice.get(i);
+            entries.add(new LeaderboardEntry(
+                standing.getUserId(),
+                resolvedAnonymize
+                    ? LeaderboardService.anonymizedUsername(standing.getUserId())
+                    : usernames.get(standing.getUserId()),
+                standing.getTotalMinutes(),
+                standing.getSessionCount(),
+                (double) standing.getTotalMinutes() / standing.getSessionCount(),
+                fromIndex + i + 1
+            ));
+        }
+        return new LeaderboardResponse(entries, resolvedPeriod, resolvedPage, resolvedLimit, (long) ranked.size());
+    }
+
+    /**
+     * Totals arrays of the standings, patched with the users changed since the last call
+     */
+    UserTotals getTotals(LeaderboardRankIndex.Standings standings) {
+        UserTotals current = totals.getIfPresent(standings);
+        if (current != null && catchUp(current, standings)) {
+            return current;
+        }
+
+        long version;
+        List<LeaderboardRankIndex.Standing> all;
+        synchronized (standings) {
+            version = standings.version();
+            all = standings.range(0, standings.size());
+        }
+
+        // Every ranked user has an id: the standings hold the dictionary's instances
+        UserTotals rebuilt = new UserTotals(version, userIdDictionary.size());
+        for (LeaderboardRankIndex.Standing standing : all) {
+            rebuilt.set(userIdDictionary.encode(standing.getUserId()), standing);
+        }
+        totals.put(standings, rebuilt);
+        return rebuilt;
+    }
+
+    /**
+     * Bring the totals to the standings' version by re-copying the users changed since
+     *
+     * @return false if the changes are no longer known and the totals must be rebuilt
+     */
+    private boolean catchUp(UserTotals current, LeaderboardRankIndex.Standings standings) {
+        // Lock order: standings, then totals (readers only take the totals lock)
+        synchronized (standings) {
+            long version = standings.version();
+            synchronized (current) {
+                if (current.version == version) {
+                    return true;
+                }
+                List<String> changed = standings.changedSince(current.version);
+                if (changed == null) {
+                    return false;
+                }
+                for (String userId : changed) {
+                    current.set(userIdDictionary.encode(userId), standings.get(userId));
+                }
+                current.version = version;
+                return true;
+            }
+        }
+    }
+}
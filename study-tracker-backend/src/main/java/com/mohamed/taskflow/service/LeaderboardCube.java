@@ -0,0 +1,473 @@
+package com.mohamed.taskflow.service;
+
+import com.mohamed.taskflow.dto.LeaderboardCursor;
+import com.mohamed.taskflow.dto.LeaderboardEntry;
+import com.mohamed.taskflow.dto.LeaderboardPageResult;
+import com.mohamed.taskflow.dto.LeaderboardWindow;
+import com.mohamed.taskflow.event.StudyLogChangedEvent;
+import com.mohamed.taskflow.model.LeaderboardRollup;
+import com.mohamed.taskflow.model.StudyLog;
+import com.mohamed.taskflow.util.UserIdDictionary;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory cube of the leaderboard rollups: minutes and sessions per (user, subject, day)
+ * 
+ * Cells are held column-wise in primitive arrays, with users and subjects replaced by
+ * dense ints local to the loaded columns. A leaderboard of any (window, subject) is one linear scan summing the
+ * matching cells into per-user arrays, followed by a bounded heap selecting the top K;
+ * LeaderboardEntry objects are only created for the K users returned. The per-user arrays
+ * are sized by the users in the cube, so ids the dictionary holds for users without
+ * rollups (or from stale rankings) cost nothing per scan
+ * 
+ * - Loaded from leaderboard_rollups on startup, then kept current from study log writes
+ * - Reloaded every 10 minutes and after the nightly rollup rebuild, which picks up
+ *   writes made through other instances
+ * - Not ready (callers fall back to MongoDB) until the first load, or if a cell falls
+ *   outside the packed key range (MAX_SUBJECTS subjects, days from 1970 to ~4840)
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LeaderboardCube {
+    
+    /**
+     * Distinct subjects the cell key has room for
+     */
+    public static final int MAX_SUBJECTS = 1 << 12;
+    
+    private static final int DAY_BITS = 20;
+    private static final int MAX_RELOAD_ATTEMPTS = 3;
+    
+    private final MongoTemplate mongoTemplate;
+    private final UserIdDictionary userIdDictionary;
+    
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    // Bumped on every write, so reloads racing with a write can be detected
+    private final AtomicLong writes = new AtomicLong();
+    
+    private volatile Columns columns;
+    
+    /**
+     * Cells of the cube, column-wise; guarded by lock once published
+     */
+    static class Columns {
+        private final UserIdDictionary dictionary;
+        private final Map<String, Integer> subjectOrdinals = new HashMap<>();
+        
+        // Dense user index of these columns; user ids are the dictionary's shared instances
+        private final Map<String, Integer> userOrdinals = new HashMap<>();
+        private String[] userIds = new String[64];
+        
+        // Cell index by packed (user, subject, day) key
+        private final Map<Long, Integer> cellIndex = new HashMap<>();
+        private int[] users = new int[64];
+        private int[] subjects = new int[64];
+        private int[] days = new int[64];
+        private long[] minutes = new long[64];
+        private long[] sessions = new long[64];
+        private int size;
+        
+        Columns(UserIdDictionary dictionary) {
+            this.dictionary = dictionary;
+        }
+        
+        /**
+         * Add minutes and sessions to a cell, creating it if needed
+         * 
+         * @return false if the cell cannot be keyed (too many subjects or day out of range)
+         */
+        boolean add(String userId, String subject, LocalDate day, long minutesDelta, long sessionDelta) {
+            long epochDay = day.toEpochDay();
+            if (epochDay < 0 || epochDay >= 1L << DAY_BITS) {
+                return false;
+            }
+            Integer subjectOrdinal = subjectOrdinals.get(subject);
+            if (subjectOrdinal == null) {
+                if (subjectOrdinals.size() >= MAX_SUBJECTS) {
+                    return false;
+                }
+                subjectOrdinal = subjectOrdinals.size();
+                subjectOrdinals.put(subject, subjectOrdinal);
+            }
+            Integer user = userOrdinals.get(userId);
+            if (user == null) {
+                user = userOrdinals.size();
+                if (user == userIds.length) {
+                    userIds = Arrays.copyOf(userIds, user * 2);
+                }
+                userIds[user] = dictionary.canonical(userId);
+                userOrdinals.put(userIds[user], user);
+            }
+            long key = ((long) user << 32) | ((long) subjectOrdinal << DAY_BITS) | epochDay;
+            Integer cell = cellIndex.get(key);
+            if (cell == null) {
+                cell = size++;
+                ensureCapacity(size);
+                users[cell] = user;
+                subjects[cell] = subjectOrdinal;
+                days[cell] = (int) epochDay;
+                cellIndex.put(key, cell);
+            }
+            minutes[cell] += minutesDelta;
+            sessions[cell] += sessionDelta;
+            return true;
+        }
+        
+        private void ensureCapacity(int capacity) {
+            if (capacity <= users.length) {
+                return;
+            }
+            int grown = Math.max(capacity, users.length * 2);
+            users = Arrays.copyOf(users, grown);
+            subjects = Arrays.copyOf(subjects, grown);
+            days = Arrays.copyOf(days, grown);
+            minutes = Arrays.copyOf(minutes, grown);
+            sessions = Arrays.copyOf(sessions, grown);
+        }
+        
+        /**
+         * Per-user totals of the cells in [fromDay, toDay) of a subject (-1 for all subjects)
+         */
+        Totals sum(int fromDay, int toDay, int subject) {
+            int userCount = userOrdinals.size();
+            long[] userMinutes = new long[userCount];
+            long[] userSessions = new long[userCount];
+            int[] cellUsers = users;
+            int[] cellSubjects = subjects;
+            int[] cellDays = days;
+            long[] cellMinutes = minutes;
+            long[] cellSessions = sessions;
+            for (int i = 0; i < size; i++) {
+                // Buckets emptied by deletes do not count, as in the rollup match
+                if (cellDays[i] >= fromDay && cellDays[i] < toDay
+                        && (subject < 0 || cellSubjects[i] == subject) && cellSessions[i] > 0) {
+                    userMinutes[cellUsers[i]] += cellMinutes[i];
+                    userSessions[cellUsers[i]] += cellSessions[i];
+                }
+            }
+            int ranked = 0;
+            for (int user = 0; user < userCount; user++) {
+                if (userSessions[user] > 0) {
+                    ranked++;
+                }
+            }
+            return new Totals(userIds, userMinutes, userSessions, ranked);
+        }
+    }
+    
+    /**
+     * Scan result: totals indexed by the columns' user index
+     */
+    static class Totals {
+        private final String[] userIds;
+        private final long[] minutes;
+        private final long[] sessions;
+        private final int ranked;
+        
+        Totals(String[] userIds, long[] minutes, long[] sessions, int ranked) {
+            this.userIds = userIds;
+            this.minutes = minutes;
+            this.sessions = sessions;
+            this.ranked = ranked;
+        }
+    }
+    
+    /**
+     * Whether the cube holds the rollups and can answer leaderboards
+     */
+    public boolean isReady() {
+        return columns != null;
+    }
+    
+    /**
+     * Top users of a window and subject in ranking order (totalMinutes desc, userId asc)
+     * 
+     * @param after Optional cursor; only users ranked after it are returned
+     * @param k Maximum number of users returned
+     * @return the entries without usernames or ranks, and the number of ranked users;
+     *         empty if the cube is not ready
+     */
+    public Optional<LeaderboardPageResult> top(LeaderboardWindow window, String subject, LeaderboardCursor after, int k) {
+        lock.readLock().lock();
+        try {
+            Columns current = columns;
+            if (current == null) {
+                return Optional.empty();
+            }
+            Totals totals = scan(current, window, subject);
+            if (totals == null) {
+                return Optional.of(new LeaderboardPageResult(new ArrayList<>(), 0L));
+            }
+            
+            // Min-heap on ranking order: the root is the weakest of the users kept so far
+            int[] heap = new int[Math.max(0, Math.min(k, totals.ranked))];
+            int heapSize = 0;
+            long[] userMinutes = totals.minutes;
+            for (int user = 0; user < userMinutes.length && heap.length > 0; user++) {
+                if (totals.sessions[user] <= 0) {
+                    continue;
+                }
+                if (after != null && !ranksBefore(after.getTotalMinutes(), after.getUserId(),
+                        userMinutes[user], totals.userIds[user])) {
+                    continue;
+                }
+                if (heapSize < heap.length) {
+                    heap[heapSize] = user;
+                    siftUp(heap, heapSize++, totals);
+                } else if (ranksBefore(user, heap[0], totals)) {
+                    heap[0] = user;
+                    siftDown(heap, heapSize, totals);
+                }
+            }
+            
+            // Popping the weakest first fills the result from the back
+            LeaderboardEntry[] entries = new LeaderboardEntry[heapSize];
+            while (heapSize > 0) {
+                int user = heap[0];
+                heap[0] = heap[--heapSize];
+                siftDown(heap, heapSize, totals);
+                entries[heapSize] = toEntry(totals, user);
+            }
+            return Optional.of(new LeaderboardPageResult(new ArrayList<>(Arrays.asList(entries)), (long) totals.ranked));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Every ranked user of a window and subject, unsorted (rank index build path)
+     * 
+     * @return the entries, or empty if the cube is not ready
+     */
+    public Optional<List<LeaderboardEntry>> totals(LeaderboardWindow window, String subject) {
+        lock.readLock().lock();
+        try {
+            Columns current = columns;
+            if (current == null) {
+                return Optional.empty();
+            }
+            Totals totals = scan(current, window, subject);
+            if (totals == null) {
+                return Optional.of(new ArrayList<>());
+            }
+            List<LeaderboardEntry> entries = new ArrayList<>(totals.ranked);
+            for (int user = 0; user < totals.minutes.length; user++) {
+                if (totals.sessions[user] > 0) {
+                    entries.add(toEntry(totals, user));
+                }
+            }
+            return Optional.of(entries);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Sum the cells of a window and subject, or null if the subject has no cells
+     */
+    private Totals scan(Columns current, LeaderboardWindow window, String subject) {
+        int subjectOrdinal = -1;
+        if (subject != null) {
+            Integer ordinal = current.subjectOrdinals.get(subject);
+            if (ordinal == null) {
+                return null;
+            }
+            subjectOrdinal = ordinal;
+        }
+        int fromDay = window.getStart() != null ? (int) window.getStart().toEpochDay() : Integer.MIN_VALUE;
+        int toDay = window.getEnd() != null ? (int) window.getEnd().toEpochDay() : Integer.MAX_VALUE;
+        return current.sum(fromDay, toDay, subjectOrdinal);
+    }
+    
+    private static LeaderboardEntry toEntry(Totals totals, int user) {
+        long minutes = totals.minutes[user];
+        long sessions = totals.sessions[user];
+        return new LeaderboardEntry(totals.userIds[user], null, minutes, sessions, (double) minutes / sessions, null);
+    }
+    
+    /**
+     * Ranking order: more minutes first, then lower userId
+     */
+    private static boolean ranksBefore(long minutesA, String userA, long minutesB, String userB) {
+        if (minutesA != minutesB) {
+            return minutesA > minutesB;
+        }
+        return userA.compareTo(userB) < 0;
+    }
+    
+    private static boolean ranksBefore(int userA, int userB, Totals totals) {
+        return ranksBefore(totals.minutes[userA], totals.userIds[userA], totals.minutes[userB], totals.userIds[userB]);
+    }
+    
+    private static void siftUp(int[] heap, int index, Totals totals) {
+        int user = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            // Stronger parents move down: the weakest user stays at the root
+            if (!ranksBefore(heap[parent], user, totals)) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = user;
+    }
+    
+    private static void siftDown(int[] heap, int size, Totals totals) {
+        if (size == 0) {
+            return;
+        }
+        int user = heap[0];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            // Pick the weaker child
+            if (child + 1 < size && ranksBefore(heap[child], heap[child + 1], totals)) {
+                child++;
+            }
+            if (!ranksBefore(user, heap[child], totals)) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = user;
+    }
+    
+    /**
+     * Apply a study log write once the rollups hold it, before the leaderboard cache is invalidated
+     */
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE + 2)
+    public void onStudyLogChanged(StudyLogChangedEvent event) {
+        if (event.getUserId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            writes.incrementAndGet();
+            if (columns != null
+                    && !(applyDelta(event.getPrevious(), -1) && applyDelta(event.getCurrent(), 1))) {
+                log.warn("Leaderboard cube cannot key a cell, falling back to MongoDB until the next reload");
+                columns = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private boolean applyDelta(StudyLog studyLog, int sign) {
+        if (studyLog == null || studyLog.getUserId() == null || studyLog.getDate() == null) {
+            return true;
+        }
+        long minutes = studyLog.getDuration() != null ? studyLog.getDuration() : 0;
+        return columns.add(studyLog.getUserId(), studyLog.getSubject(), studyLog.getDate(), sign * minutes, sign);
+    }
+    
+    /**
+     * Load the cube on startup, before the rank index is warmed from it
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    public void load() {
+        reload();
+    }
+    
+    /**
+     * Reload the cube from the rollups every 10 minutes and after the nightly rollup rebuild
+     * A load racing with a write is retried, and accepted on the last attempt
+     */
+    @Scheduled(fixedDelay = 10 * 60 * 1000, initialDelay = 10 * 60 * 1000)
+    @Scheduled(cron = "0 45 3 * * *")
+    public void reload() {
+        long startedAt = System.currentTimeMillis();
+        try {
+            for (int attempt = 1; attempt <= MAX_RELOAD_ATTEMPTS; attempt++) {
+                long before = writes.get();
+                Columns loaded = loadColumns();
+                lock.writeLock().lock();
+                try {
+                    if (writes.get() == before || attempt == MAX_RELOAD_ATTEMPTS) {
+                        columns = loaded;
+                        if (loaded != null) {
+                            log.info("Loaded leaderboard cube: {} cells in {} ms",
+                                loaded.size, System.currentTimeMillis() - startedAt);
+                        }
+                        return;
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Leaderboard cube reload failed", e);
+        }
+    }
+    
+    /**
+     * Read every rollup bucket into fresh columns, or null if one cannot be keyed
+     */
+    private Columns loadColumns() {
+        Columns loaded = new Columns(userIdDictionary);
+        Query query = new Query(Criteria.where("userId").ne(null).exists(true));
+        query.fields().include("userId", "subject", "day", "totalMinutes", "sessionCount");
+        try (Stream<LeaderboardRollup> rollups = mongoTemplate.stream(query, LeaderboardRollup.class)) {
+            Iterator<LeaderboardRollup> iterator = rollups.iterator();
+            while (iterator.hasNext()) {
+                LeaderboardRollup rollup = iterator.next();
+                if (rollup.getDay() == null) {
+                    continue;
+                }
+                if (!loaded.add(rollup.getUserId(), rollup.getSubject(), rollup.getDay(),
+                        rollup.getTotalMinutes() != null ? rollup.getTotalMinutes() : 0,
+                        rollup.getSessionCount() != null ? rollup.getSessionCount() : 0)) {
+                    log.warn("Leaderboard cube cannot key rollup {}, falling back to MongoDB", rollup.getId());
+                    return null;
+                }
+            }
+        }
+        return loaded;
+    }
+    
+    /**
+     * Cells and subjects held (empty if the cube is not ready)
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            Columns current = columns;
+            stats.put("ready", current != null);
+            if (current != null) {
+                stats.put("cells", current.size);
+                stats.put("subjects", current.subjectOrdinals.size());
+                stats.put("users", current.userOrdinals.size());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,269 @@
+package com.mohamed.taskflow.service;
+
+import com.mohamed.taskflow.dto.LeaderboardHistoryPoint;
+import com.mohamed.taskflow.dto.LeaderboardHistoryResponse;
+import com.mohamed.taskflow.dto.LeaderboardWindow;
+import com.mohamed.taskflow.model.LeaderboardHistory;
+import com.mohamed.taskflow.model.LeaderboardRollup;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Archives daily leaderboard ranks and serves per-user rank trends from the archive
+ * 
+ * - Shortly after midnight (UTC) every user's all-time rank as of the end of the
+ *   previous day is appended, per subject and for all subjects, to leaderboard_history
+ * - Ranks are computed from leaderboard_rollups (day <= archived day), so a late
+ *   run still archives the day as it was
+ * - Trends read one small document per month of the range; past study logs are
+ *   never re-aggregated, so the cost depends on the range length, not its age
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LeaderboardHistoryService {
+    
+    /**
+     * Subject key of the archive across all subjects
+     */
+    public static final String ALL_SUBJECTS = "all";
+    
+    /**
+     * Longest range a single trend request may cover
+     */
+    public static final int MAX_RANGE_DAYS = 366;
+    
+    private final MongoTemplate mongoTemplate;
+    
+    /**
+     * Archive yesterday every night at 00:15 UTC
+     */
+    @Scheduled(cron = "0 15 0 * * *", zone = "UTC")
+    public void archiveYesterday() {
+        LocalDate yesterday = LocalDate.now(LeaderboardWindow.DEFAULT_ZONE).minusDays(1);
+        try {
+            archiveDay(yesterday);
+        } catch (RuntimeException e) {
+            log.error("Failed to archive leaderboard ranks for {}", yesterday, e);
+        }
+    }
+    
+    /**
+     * Catch up on startup when the instance was down during the nightly run
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void archiveMissedDay() {
+        LocalDate yesterday = LocalDate.now(LeaderboardWindow.DEFAULT_ZONE).minusDays(1);
+        Query archived = new Query(Criteria.where("subject").is(ALL_SUBJECTS)
+            .and("month").is(LeaderboardHistory.monthOf(yesterday))
+            .and("lastDay").gte(yesterday));
+        if (!mongoTemplate.exists(archived, LeaderboardHistory.class)) {
+            archiveYesterday();
+        }
+    }
+    
+    /**
+     * Append every ranked user's standing at the end of the day to the archive
+     * Idempotent: users whose month document already holds the day are skipped
+     * 
+     * @return number of points appended
+     */
+    public int archiveDay(LocalDate day) {
+        // Totals per (user, subject) up to and including the day
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(Criteria.where("day").lt(LeaderboardService.toStartOfDay(day.plusDays(1)))
+                .and("sessionCount").gt(0)),
+            Aggregation.group("userId", "subject")
+                .sum("totalMinutes").as("totalMinutes")
+                .sum("sessionCount").as("sessionCount")
+        ).withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+        List<Document> totals = mongoTemplate.aggregate(aggregation, LeaderboardRollup.COLLECTION, Document.class)
+            .getMappedResults();
+        
+        Map<String, Map<String, long[]>> bySubject = new HashMap<>();
+        for (Document total : totals) {
+            Document id = total.get("_id", Document.class);
+            String userId = id.getString("userId");
+            String subject = id.getString("subject");
+            long minutes = ((Number) total.get("totalMinutes")).longValue();
+            long sessions = ((Number) total.get("sessionCount")).longValue();
+            if (subject != null) {
+                add(bySubject, subject, userId, minutes, sessions);
+            }
+            add(bySubject, ALL_SUBJECTS, userId, minutes, sessions);
+        }
+        
+        int appended = 0;
+        for (Map.Entry<String, Map<String, long[]>> subject : bySubject.entrySet()) {
+            appended += archiveSubject(day, subject.getKey(), rank(subject.getValue()));
+        }
+        log.info("Archived {} leaderboard rank points for {}", appended, day);
+        return appended;
+    }
+    
+    private static void add(Map<String, Map<String, long[]>> bySubject,
+                            String subject, String userId, long minutes, long sessions) {
+        long[] sums = bySubject.computeIfAbsent(subject, k -> new HashMap<>())
+            .computeIfAbsent(userId, k -> new long[2]);
+        sums[0] += minutes;
+        sums[1] += sessions;
+    }
+    
+    /**
+     * Users in leaderboard order (same order and tiebreak as the live leaderboard)
+     */
+    private static List<LeaderboardRankIndex.Standing> rank(Map<String, long[]> totals) {
+        List<LeaderboardRankIndex.Standing> standings = new ArrayList<>(totals.size());
+        totals.forEach((userId, sums) -> {
+            if (sums[1] > 0) {
+                standings.add(new LeaderboardRankIndex.Standing(userId, sums[0], sums[1]));
+            }
+        });
+        standings.sort(LeaderboardRankIndex.ORDER);
+        return standings;
+    }
+    
+    /**
+     * Append one subject's ranking, delta-encoded against each user's previous point of the month
+     */
+    private int archiveSubject(LocalDate day, String subject, List<LeaderboardRankIndex.Standing> standings) {
+        if (standings.isEmpty()) {
+            return 0;
+        }
+        
+        String month = LeaderboardHistory.monthOf(day);
+        Map<String, LeaderboardHistory> existing = mongoTemplate.find(
+                new Query(Criteria.where("subject").is(subject).and("month").is(month)), LeaderboardHistory.class)
+            .stream()
+            .collect(Collectors.toMap(LeaderboardHistory::getUserId, Function.identity()));
+        
+        long totalUsers = standings.size();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LeaderboardHistory.class);
+        int appended = 0;
+        for (int i = 0; i < standings.size(); i++) {
+            LeaderboardRankIndex.Standing standing = standings.get(i);
+            int rank = i + 1;
+            LeaderboardHistory history = existing.get(standing.getUserId());
+            
+            if (history == null) {
+                bulk.insert(new LeaderboardHistory(
+                    LeaderboardHistory.idOf(standing.getUserId(), subject, day),
+                    standing.getUserId(),
+                    subject,
+                    month,
+                    new ArrayList<>(List.of(day.getDayOfMonth())),
+                    new ArrayList<>(List.of(rank)),
+                    new ArrayList<>(List.of(standing.getTotalMinutes())),
+                    new ArrayList<>(List.of(totalUsers)),
+                    day,
+                    rank,
+                    standing.getTotalMinutes(),
+                    totalUsers
+                ));
+            } else if (history.getLastDay().isBefore(day)) {
+                // The lastDay guard keeps a concurrent run on another instance from appending twice
+                bulk.updateOne(
+                    new Query(Criteria.where("_id").is(history.getId()).and("lastDay").lt(day)),
+                    new Update()
+                        .push("days", day.getDayOfMonth())
+                        .push("rankDeltas", rank - history.getLastRank())
+                        .push("minuteDeltas", standing.getTotalMinutes() - history.getLastMinutes())
+                        .push("totalUserDeltas", totalUsers - history.getLastTotalUsers())
+                        .set("lastDay", day)
+                        .set("lastRank", rank)
+                        .set("lastMinutes", standing.getTotalMinutes())
+                        .set("lastTotalUsers", totalUsers)
+                );
+            } else {
+                continue;
+            }
+            appended++;
+        }
+        
+        if (appended > 0) {
+            try {
+                bulk.execute();
+            } catch (RuntimeException e) {
+                // Duplicate inserts when another instance archived the same day first
+                log.warn("Some leaderboard history points for {} / {} were not written", subject, day, e);
+            }
+        }
+        return appended;
+    }
+    
+    /**
+     * Rank trend of a user between two days (inclusive)
+     * 
+     * @param subject Subject filter (null for all subjects)
+     * @throws IllegalArgumentException if the range is reversed or longer than MAX_RANGE_DAYS
+     */
+    public LeaderboardHistoryResponse getHistory(String userId, String subject, LocalDate from, LocalDate to) {
+        LocalDate resolvedTo = to != null ? to : LocalDate.now(LeaderboardWindow.DEFAULT_ZONE);
+        LocalDate resolvedFrom = from != null ? from : resolvedTo.minusDays(29);
+        if (resolvedFrom.isAfter(resolvedTo)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (ChronoUnit.DAYS.between(resolvedFrom, resolvedTo) >= MAX_RANGE_DAYS) {
+            throw new IllegalArgumentException("History range is limited to " + MAX_RANGE_DAYS + " days");
+        }
+        String resolvedSubject = subject != null && !subject.trim().isEmpty() ? subject.trim() : ALL_SUBJECTS;
+        
+        // One document per month of the range, fetched by id
+        List<String> ids = new ArrayList<>();
+        YearMonth last = YearMonth.from(resolvedTo);
+        for (YearMonth month = YearMonth.from(resolvedFrom); !month.isAfter(last); month = month.plusMonths(1)) {
+            ids.add(LeaderboardHistory.idOf(userId, resolvedSubject, month.atDay(1)));
+        }
+        List<LeaderboardHistory> months = mongoTemplate.find(
+            new Query(Criteria.where("_id").in(ids)).with(Sort.by("month")),
+            LeaderboardHistory.class);
+        
+        List<LeaderboardHistoryPoint> points = new ArrayList<>();
+        for (LeaderboardHistory history : months) {
+            for (LeaderboardHistoryPoint point : decode(history)) {
+                if (!point.getDate().isBefore(resolvedFrom) && !point.getDate().isAfter(resolvedTo)) {
+                    points.add(point);
+                }
+            }
+        }
+        return new LeaderboardHistoryResponse(userId, subject, resolvedFrom, resolvedTo, points);
+    }
+    
+    /**
+     * Expand a month document back into absolute points
+     */
+    static List<LeaderboardHistoryPoint> decode(LeaderboardHistory history) {
+        YearMonth month = YearMonth.parse(history.getMonth());
+        List<LeaderboardHistoryPoint> points = new ArrayList<>(history.getDays().size());
+        int rank = 0;
+        long minutes = 0;
+        long totalUsers = 0;
+        for (int i = 0; i < history.getDays().size(); i++) {
+            rank += history.getRankDeltas().get(i);
+            minutes += history.getMinuteDeltas().get(i);
+            totalUsers += history.getTotalUserDeltas().get(i);
+            points.add(new LeaderboardHistoryPoint(month.atDay(history.getDays().get(i)), rank, minutes, totalUsers));
+        }
+        return points;
+    }
+}
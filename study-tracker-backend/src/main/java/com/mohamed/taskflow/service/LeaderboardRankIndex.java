@@ -0,0 +1,360 @@
+package com.mohamed.taskflow.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.mohamed.taskflow.config.CacheConfig;
+import com.mohamed.taskflow.dto.LeaderboardEntry;
+import com.mohamed.taskflow.event.LeaderboardRankChangedEvent;
+import com.mohamed.taskflow.event.StudyLogChangedEvent;
+import com.mohamed.taskflow.model.StudyLog;
+import com.mohamed.taskflow.util.LogLinearHistogram;
+import com.mohamed.taskflow.util.OrderStatisticTree;
+import com.mohamed.taskflow.util.UserIdDictionary;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * In-memory standings of every ranked user per (date window, subject)
+ * Backs "my rank" and "around me" lookups in O(log n) without paging through the leaderboard
+ * 
+ * - Built on first use from the rollup aggregation (see LeaderboardService#loadStandings)
+ * - Kept current by applying study log writes as they are published;
+ *   each move is republished as a LeaderboardRankChangedEvent
+ * - Reconciled against the rollups every 10 minutes to repair any drift
+ * - Indexes not read for an hour are dropped (window keys change daily)
+ * - Each standings also keeps a histogram of its users' minutes for percentile stats
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LeaderboardRankIndex {
+    
+    /**
+     * Order of the leaderboard: most minutes first, userId as tiebreak
+     */
+    public static final Comparator<Standing> ORDER = Comparator
+        .comparingLong(Standing::getTotalMinutes).reversed()
+        .thenComparing(Standing::getUserId);
+    
+    public static final long IDLE_EXPIRY_MILLIS = 60 * 60 * 1000;
+    
+    public static final long MAX_INDEXES = 200;
+    
+    /**
+     * Builds retried when a write lands during the load, before accepting the result
+     */
+    private static final int MAX_BUILD_ATTEMPTS = 3;
+    
+    /**
+     * Changes each standings remembers for Standings.changedSince
+     */
+    static final int JOURNAL_SIZE = 1024;
+    
+    /**
+     * One user's totals within a window and subject
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Standing {
+        private final String userId;
+        private final long totalMinutes;
+        private final long sessionCount;
+    }
+    
+    /**
+     * Ranked users of one (window, subject)
+     */
+    public static class Standings {
+        private final OrderStatisticTree<Standing> tree = new OrderStatisticTree<>(ORDER);
+        private final Map<String, Standing> byUser = new HashMap<>();
+        private final LogLinearHistogram histogram = new LogLinearHistogram();
+        private final Function<String, List<LeaderboardEntry>> loader;
+        private final UserIdDictionary dictionary;
+        
+        // Bumped on every change, so copies of the standings can tell they are stale
+        private long version;
+        
+        // User changed at each of the last JOURNAL_SIZE versions, and the version the last reload ended at
+        private final String[] journal = new String[JOURNAL_SIZE];
+        private long reloadedVersion;
+        
+        Standings(Function<String, List<LeaderboardEntry>> loader, UserIdDictionary dictionary) {
+            this.loader = loader;
+            this.dictionary = dictionary;
+        }
+        
+        public synchronized int size() {
+            return tree.size();
+        }
+        
+        public synchronized long version() {
+            return version;
+        }
+        
+        /**
+         * Users changed after a version, so copies can patch themselves instead of copying
+         * every user; null if they are no longer known (a reload, or too many changes since)
+         */
+        public synchronized List<String> changedSince(long sinceVersion) {
+            if (sinceVersion < reloadedVersion || version - sinceVersion > JOURNAL_SIZE) {
+                return null;
+            }
+            List<String> changed = new ArrayList<>((int) (version - sinceVersion));
+            for (long v = sinceVersion + 1; v <= version; v++) {
+                changed.add(journal[(int) (v % JOURNAL_SIZE)]);
+            }
+            return changed;
+        }
+        
+        /**
+         * Distribution of the ranked users' minutes (a copy)
+         */
+        public synchronized LogLinearHistogram histogram() {
+            return histogram.copy();
+        }
+        
+        public synchronized Standing get(String userId) {
+            return byUser.get(userId);
+        }
+        
+        /**
+         * 1-based rank of a user, or 0 if the user has no study time in this window
+         */
+        public synchronized int rankOf(String userId) {
+            Standing standing = byUser.get(userId);
+            return standing != null ? tree.indexOf(standing) + 1 : 0;
+        }
+        
+        /**
+         * Users at 0-based positions [fromIndex, toIndex), clamped to the standings
+         */
+        public synchronized List<Standing> range(int fromIndex, int toIndex) {
+            int from = Math.max(0, fromIndex);
+            int to = Math.min(toIndex, tree.size());
+            List<Standing> result = new ArrayList<>(Math.max(0, to - from));
+            for (int i = from; i < to; i++) {
+                result.add(tree.get(i));
+            }
+            return result;
+        }
+        
+        /**
+         * Apply a write and describe the user's move
+         */
+        synchronized LeaderboardRankChangedEvent apply(String key, String userId, long minutesDelta, long sessionDelta) {
+            Standing current = byUser.get(userId);
+            int previousRank = rankOf(userId);
+            long previousMinutes = current != null ? current.getTotalMinutes() : 0;
+            long sessions = (current != null ? current.getSessionCount() : 0) + sessionDelta;
+            put(userId, previousMinutes + minutesDelta, sessions);
+            Standing updated = byUser.get(userId);
+            return new LeaderboardRankChangedEvent(key, userId, previousRank, previousMinutes,
+                rankOf(userId),
+                updated != null ? updated.getTotalMinutes() : 0,
+                updated != null ? updated.getSessionCount() : 0,
+                tree.size());
+        }
+        
+        synchronized void reload(List<LeaderboardEntry> entries) {
+            tree.clear();
+            byUser.clear();
+            histogram.clear();
+            for (LeaderboardEntry entry : entries) {
+                put(entry.getUserId(), entry.getTotalMinutes(), entry.getSessionCount());
+            }
+            reloadedVersion = version;
+        }
+        
+        private void put(String userId, long minutes, long sessions) {
+            version++;
+            journal[(int) (version % JOURNAL_SIZE)] = userId;
+            Standing previous = byUser.remove(userId);
+            if (previous != null) {
+                tree.remove(previous);
+                histogram.remove(previous.getTotalMinutes());
+            }
+            // Same rule as the rollup match: users without sessions are not ranked
+            if (sessions > 0) {
+                // One instance of the id across every standings holding the user
+                String canonicalId = dictionary.canonical(userId);
+                Standing standing = new Standing(canonicalId, minutes, sessions);
+                byUser.put(canonicalId, standing);
+                tree.add(standing);
+                histogram.add(minutes);
+            }
+        }
+    }
+    
+    private final ApplicationEventPublisher eventPublisher;
+    private final UserIdDictionary userIdDictionary;
+    
+    /**
+     * Write counter per key, bumped before and after each write reaches the rollups
+     * A load is only kept if no bump happened while it ran, so it cannot disagree
+     * with the deltas applied to the standings
+     */
+    private final Map<String, AtomicLong> writeStamps = new ConcurrentHashMap<>();
+    
+    /**
+     * Standings being built, visible to writes before they are published in the cache
+     */
+    private final Map<String, Standings> building = new ConcurrentHashMap<>();
+    
+    private final Cache<String, Standings> indexes = Caffeine.newBuilder()
+        .expireAfterAccess(Duration.ofMillis(IDLE_EXPIRY_MILLIS))
+        .maximumSize(MAX_INDEXES)
+        .removalListener((String key, Standings standings, RemovalCause cause) -> {
+            if (key != null) {
+                writeStamps.remove(key);
+            }
+        })
+        .build();
+    
+    /**
+     * Get the standings for a cache key ("window|subject"), building them on first use
+     * 
+     * @param loader returns every ranked user of the key (order does not matter)
+     */
+    public Standings get(String key, Function<String, List<LeaderboardEntry>> loader) {
+        try {
+            return indexes.get(key, k -> build(k, loader));
+        } finally {
+            building.remove(key);
+        }
+    }
+    
+    private Standings build(String key, Function<String, List<LeaderboardEntry>> loader) {
+        Standings standings = new Standings(loader, userIdDictionary);
+        AtomicLong stamp = writeStamps.computeIfAbsent(key, k -> new AtomicLong());
+        building.put(key, standings);
+        try {
+            for (int attempt = 1; ; attempt++) {
+                // Accept a racing write on the last attempt; the next reconcile repairs it
+                if (reloadIfUnchanged(key, standings, stamp, attempt == MAX_BUILD_ATTEMPTS)) {
+                    return standings;
+                }
+            }
+        } catch (RuntimeException e) {
+            writeStamps.remove(key);
+            throw e;
+        }
+    }
+    
+    /**
+     * Load the key and swap the result in, unless a write overlapped the load
+     */
+    private boolean reloadIfUnchanged(String key, Standings standings, AtomicLong stamp, boolean force) {
+        long before = stamp.get();
+        List<LeaderboardEntry> entries = standings.loader.apply(key);
+        synchronized (standings) {
+            if (stamp.get() != before && !force) {
+                return false;
+            }
+            standings.reload(entries);
+            return true;
+        }
+    }
+    
+    /**
+     * Apply a study log write to every standings it affects
+     * Runs before LeaderboardRollupService writes the same change to the rollups
+     */
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onStudyLogChanged(StudyLogChangedEvent event) {
+        if (event.getUserId() == null) {
+            return;
+        }
+        applyDelta(event.getPrevious(), -1);
+        applyDelta(event.getCurrent(), 1);
+    }
+    
+    /**
+     * Bump the affected keys again once the rollups hold the write
+     */
+    @EventListener
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void afterStudyLogChanged(StudyLogChangedEvent event) {
+        if (event.getUserId() == null) {
+            return;
+        }
+        bumpAffected(event.getPrevious());
+        bumpAffected(event.getCurrent());
+    }
+    
+    private void applyDelta(StudyLog studyLog, int sign) {
+        if (studyLog == null || studyLog.getUserId() == null || studyLog.getDate() == null) {
+            return;
+        }
+        long minutes = studyLog.getDuration() != null ? studyLog.getDuration() : 0;
+        for (String key : bumpAffected(studyLog)) {
+            Standings standings = building.get(key);
+            if (standings == null) {
+                standings = indexes.policy().getIfPresentQuietly(key);
+            }
+            if (standings != null) {
+                // Published outside the standings lock
+                eventPublisher.publishEvent(standings.apply(key, studyLog.getUserId(), sign * minutes, sign));
+            }
+        }
+    }
+    
+    private List<String> bumpAffected(StudyLog studyLog) {
+        List<String> affected = new ArrayList<>();
+        if (studyLog == null || studyLog.getDate() == null) {
+            return affected;
+        }
+        String subject = studyLog.getSubject() != null ? studyLog.getSubject().trim() : null;
+        writeStamps.forEach((key, stamp) -> {
+            if (CacheConfig.isAffectedBy(key, studyLog.getDate(), subject)) {
+                stamp.incrementAndGet();
+                affected.add(key);
+            }
+        });
+        return affected;
+    }
+    
+    /**
+     * Reload live standings from the rollups every 10 minutes
+     * A standings written to during its reload is left for the next run
+     */
+    @Scheduled(fixedDelay = 10 * 60 * 1000)
+    public void reconcile() {
+        indexes.asMap().forEach((key, standings) -> {
+            AtomicLong stamp = writeStamps.get(key);
+            if (stamp == null) {
+                return;
+            }
+            try {
+                reloadIfUnchanged(key, standings, stamp, false);
+            } catch (RuntimeException e) {
+                log.warn("Could not reconcile leaderboard standings for key {}", key, e);
+            }
+        });
+    }
+    
+    /**
+     * Number of standings held and users indexed across them
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("indexes", indexes.estimatedSize());
+        stats.put("indexedUsers", indexes.asMap().values().stream().mapToLong(Standings::size).sum());
+        return stats;
+    }
+}
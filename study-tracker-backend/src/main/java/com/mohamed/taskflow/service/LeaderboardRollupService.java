@@ -0,0 +1,240 @@
+package com.mohamed.taskflow.service;
+
+import com.mohamed.taskflow.event.StudyLogChangedEvent;
+import com.mohamed.taskflow.model.LeaderboardRollup;
+import com.mohamed.taskflow.model.StudyLog;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.Fields;
+import org.springframework.data.mongodb.core.aggregation.LiteralOperators;
+import org.springframework.data.mongodb.core.aggregation.MergeOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maintains the leaderboard_rollups collection
+ * One document per (userId, subject, day) with summed minutes and session count
+ *
+ * - Study log writes are applied immediately as $inc deltas on the affected buckets
+ * - Incremental refresh every minute: re-aggregates only users whose logs changed
+ *   since the last run and $merges the buckets into the rollup collection
+ * - Full rebuild nightly (and on first start when the collection is empty)
+ *   to repair any drift
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LeaderboardRollupService {
+
+    private static final String STUDY_LOGS_COLLECTION = "study_logs";
+
+    /**
+     * Re-read logs written slightly before the previous run started
+     * so writes racing with that run are never missed
+     */
+    private static final long WATERMARK_OVERLAP_MILLIS = 60 * 1000;
+
+    /**
+     * Maximum users re-aggregated per $merge pipeline on incremental runs
+     */
+    private static final int USER_BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Users with writes seen by this instance since the last run
+     * Deletes are only visible here since the removed log has no updatedAt left to query
+     */
+    private final Set<String> dirtyUsers = ConcurrentHashMap.newKeySet();
+
+    private volatile Instant watermark;
+
+    /**
+     * Apply a write to the rollups before the leaderboard cache is invalidated
+     * The user is also marked dirty so the next refresh reconciles the deltas
+     * Runs right after LeaderboardRankIndex has marked its loads as racing with this write
+     */
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    public void onStudyLogChanged(StudyLogChangedEvent event) {
+        if (event.getUserId() == null) {
+            return;
+        }
+        dirtyUsers.add(event.getUserId());
+        try {
+            applyDelta(event.getPrevious(), -1);
+            applyDelta(event.getCurrent(), 1);
+        } catch (RuntimeException e) {
+            log.warn("Could not apply rollup delta for user {}, waiting for next refresh", event.getUserId(), e);
+        }
+    }
+    
+    /**
+     * Add (sign = 1) or remove (sign = -1) one log from its (userId, subject, day) bucket
+     */
+    private void applyDelta(StudyLog studyLog, int sign) {
+        if (studyLog == null || studyLog.getUserId() == null || studyLog.getDate() == null) {
+            return;
+        }
+        Object day = mongoTemplate.getConverter().convertToMongoType(studyLog.getDate());
+        // Same field order as the $group _id so deltas and merges address the same document
+        Document id = new Document("userId", studyLog.getUserId())
+            .append("subject", studyLog.getSubject())
+            .append("day", day);
+        int minutes = studyLog.getDuration() != null ? studyLog.getDuration() : 0;
+        
+        Update update = new Update()
+            .inc("totalMinutes", sign * minutes)
+            .inc("sessionCount", sign)
+            .setOnInsert("userId", studyLog.getUserId())
+            .setOnInsert("subject", studyLog.getSubject())
+            .setOnInsert("day", studyLog.getDate())
+            .setOnInsert("userBucket", LeaderboardRollup.userBucketOf(studyLog.getUserId()));
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(id)), update, LeaderboardRollup.class);
+    }
+
+    /**
+     * Incrementally refresh rollups for users whose logs changed since the last run
+     */
+    @Scheduled(fixedDelay = 60 * 1000)
+    public void refreshRollups() {
+        if (watermark == null) {
+            watermark = findLatestRefresh();
+            if (watermark == null) {
+                rebuildRollups();
+                return;
+            }
+        }
+
+        Instant runStart = Instant.now();
+        Set<String> users = drainDirtyUsers();
+        users.addAll(findUsersChangedSince(watermark.minusMillis(WATERMARK_OVERLAP_MILLIS)));
+        if (users.isEmpty()) {
+            watermark = runStart;
+            return;
+        }
+
+        try {
+            List<String> userList = new ArrayList<>(users);
+            for (int from = 0; from < userList.size(); from += USER_BATCH_SIZE) {
+                List<String> batch = userList.subList(from, Math.min(from + USER_BATCH_SIZE, userList.size()));
+                mergeRollups(Criteria.where("userId").in(batch), runStart);
+                removeStaleRollups(batch, runStart);
+            }
+            watermark = runStart;
+            log.debug("Refreshed leaderboard rollups for {} users", users.size());
+        } catch (RuntimeException e) {
+            // Retry the same users on the next run
+            dirtyUsers.addAll(users);
+            log.error("Leaderboard rollup refresh failed", e);
+        }
+    }
+
+    /**
+     * Rebuild every rollup bucket from study_logs
+     * Runs nightly at 03:30 to repair drift (e.g. deletes seen by an instance that died before its next run)
+     */
+    @Scheduled(cron = "0 30 3 * * *")
+    public void rebuildRollups() {
+        Instant runStart = Instant.now();
+        try {
+            mergeRollups(Criteria.where("userId").ne(null).exists(true), runStart);
+            removeStaleRollups(null, runStart);
+            watermark = runStart;
+            log.info("Rebuilt leaderboard rollups in {} ms", Instant.now().toEpochMilli() - runStart.toEpochMilli());
+        } catch (RuntimeException e) {
+            log.error("Leaderboard rollup rebuild failed", e);
+        }
+    }
+
+    /**
+     * Group matching study logs by (userId, subject, day) and $merge the buckets into leaderboard_rollups
+     */
+    private void mergeRollups(Criteria criteria, Instant runStart) {
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(criteria),
+            Aggregation.group(Fields.from(
+                    Fields.field("userId"),
+                    Fields.field("subject"),
+                    Fields.field("day", "date")))
+                .sum("duration").as("totalMinutes")
+                .count().as("sessionCount"),
+            Aggregation.project("userId", "subject", "day", "totalMinutes", "sessionCount")
+                .and(LiteralOperators.Literal.asLiteral(Date.from(runStart))).as("refreshedAt")
+                .and(context -> userBucketExpression("$_id.userId")).as("userBucket"),
+            Aggregation.merge()
+                .intoCollection(LeaderboardRollup.COLLECTION)
+                .whenMatched(MergeOperation.WhenDocumentsMatch.replaceDocument())
+                .whenDocumentsDontMatch(MergeOperation.WhenDocumentsDontMatch.insertNewDocument())
+                .build()
+        ).withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        mongoTemplate.aggregate(aggregation, STUDY_LOGS_COLLECTION, Document.class);
+    }
+
+    /**
+     * LeaderboardRollup.userBucketOf as an aggregation expression over a userId field
+     */
+    static Document userBucketExpression(String userIdField) {
+        Document length = new Document("$strLenCP", userIdField);
+        Document lastChar = new Document("$substrCP", List.of(
+            userIdField, new Document("$subtract", List.of(length, 1)), 1));
+        Document digit = new Document("$indexOfCP", List.of("0123456789abcdef", new Document("$toLower", lastChar)));
+        return new Document("$cond", List.of(
+            new Document("$gt", List.of(length, 0)),
+            new Document("$max", List.of(0, digit)),
+            0));
+    }
+
+    /**
+     * Buckets not rewritten by this run no longer have any logs behind them,
+     * and buckets emptied by delete deltas can go as well
+     * A null user list means every bucket (full rebuild)
+     */
+    private void removeStaleRollups(List<String> userIds, Instant runStart) {
+        Criteria criteria = new Criteria().orOperator(
+            Criteria.where("refreshedAt").lt(runStart),
+            Criteria.where("sessionCount").lte(0)
+        );
+        if (userIds != null) {
+            criteria = Criteria.where("userId").in(userIds).andOperator(criteria);
+        }
+        mongoTemplate.remove(new Query(criteria), LeaderboardRollup.class);
+    }
+
+    private Set<String> findUsersChangedSince(Instant since) {
+        Query query = new Query(Criteria.where("updatedAt").gte(since));
+        return new HashSet<>(mongoTemplate.findDistinct(query, "userId", STUDY_LOGS_COLLECTION, String.class));
+    }
+
+    private Instant findLatestRefresh() {
+        Query query = new Query().with(Sort.by(Sort.Direction.DESC, "refreshedAt")).limit(1);
+        LeaderboardRollup latest = mongoTemplate.findOne(query, LeaderboardRollup.class);
+        return latest != null ? latest.getRefreshedAt() : null;
+    }
+
+    private Set<String> drainDirtyUsers() {
+        Set<String> drained = new HashSet<>();
+        Iterator<String> iterator = dirtyUsers.iterator();
+        while (iterator.hasNext()) {
+            drained.add(iterator.next());
+            iterator.remove();
+        }
+        return drained;
+    }
+}
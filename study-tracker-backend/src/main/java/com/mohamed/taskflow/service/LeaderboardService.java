@@ -1,21 +1,44 @@
 package com.mohamed.taskflow.service;
 
 import com.mohamed.taskflow.config.CacheConfig;
+import com.mohamed.taskflow.dto.LeaderboardBatchResponse;
+import com.mohamed.taskflow.dto.LeaderboardCursor;
 import com.mohamed.taskflow.dto.LeaderboardEntry;
+import com.mohamed.taskflow.dto.LeaderboardHistogramBucket;
+import com.mohamed.taskflow.dto.LeaderboardPageResult;
+import com.mohamed.taskflow.dto.LeaderboardQuery;
+import com.mohamed.taskflow.dto.LeaderboardRanking;
 import com.mohamed.taskflow.dto.LeaderboardResponse;
-import com.mohamed.taskflow.model.User;
-import com.mohamed.taskflow.repository.UserRepository;
+import com.mohamed.taskflow.dto.LeaderboardStatsResponse;
+import com.mohamed.taskflow.dto.LeaderboardWindow;
+import com.mohamed.taskflow.event.StudyLogChangedEvent;
+import com.mohamed.taskflow.model.LeaderboardRollup;
+import com.mohamed.taskflow.model.StudyLog;
+import com.mohamed.taskflow.util.LogLinearHistogram;
+import com.mohamed.taskflow.util.UserIdDictionary;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.*;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
+import java.time.DateTimeException;
+import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 /**
@@ -24,9 +47,13 @@ import java.util.stream.Collectors;
  * 
  * Features:
  * - Subject filtering
- * - In-memory caching with 5-minute TTL
+ * - In-memory caching of one ranking per (period, subject), invalidated by study log writes;
+ *   pages, ranks and anonymized views are sliced from it without touching MongoDB
  * - Privacy/anonymization support
- * - Optimized MongoDB aggregation
+ * - Aggregates pre-computed (userId, subject, day) buckets from leaderboard_rollups
+ *   instead of raw study_logs (see LeaderboardRollupService)
+ * - Rankings are computed from the in-memory LeaderboardCube when it is loaded,
+ *   and from the rollups in MongoDB otherwise
  */
 @Service
 @RequiredArgsConstructor
@@ -34,13 +61,69 @@ import java.util.stream.Collectors;
 public class LeaderboardService {
     
     private final MongoTemplate mongoTemplate;
-    private final UserRepository userRepository;
+    private final UserSummaryService userSummaryService;
     private final CacheConfig cacheConfig;
+    private final LeaderboardRankIndex rankIndex;
+    private final LeaderboardCube cube;
+    private final UserIdDictionary userIdDictionary;
+    
+    /**
+     * Number of top users held in each cached ranking
+     * Covers 10 pages at the maximum limit of 100
+     */
+    public static final int RANKING_DEPTH = 1000;
+    
+    /**
+     * Maximum users returned on each side of the current user by getAroundMe
+     */
+    public static final int MAX_RADIUS = 50;
+    
+    /**
+     * Maximum leaderboards answered by one batch request
+     */
+    public static final int MAX_BATCH_QUERIES = 20;
+    
+    /**
+     * Rankings of batch requests computed in parallel, across all requests
+     */
+    private static final int BATCH_PARALLELISM = 4;
+    
+    private final ExecutorService batchExecutor = Executors.newFixedThreadPool(BATCH_PARALLELISM, runnable -> {
+        Thread thread = new Thread(runnable, "leaderboard-batch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /**
+     * Upper bound of leaderboard.aggregation.partitions
+     */
+    public static final int MAX_PARTITIONS = LeaderboardRollup.USER_BUCKETS;
+    
+    // Ranking order of merged partition rows: totalMinutes desc, userId asc
+    private static final Comparator<LeaderboardEntry> RANKING_ORDER = Comparator
+        .comparingLong((LeaderboardEntry entry) -> entry.getTotalMinutes() != null ? entry.getTotalMinutes() : 0L)
+        .reversed()
+        .thenComparing(LeaderboardEntry::getUserId, Comparator.nullsFirst(Comparator.naturalOrder()));
+    
+    /**
+     * Number of userId partitions a rollup aggregation is split into, run in parallel
+     * 1 runs the single pipeline; values are clamped to 1..MAX_PARTITIONS
+     * Only used while the cube is not loaded, since rankings are otherwise served from it
+     */
+    @Value("${leaderboard.aggregation.partitions:1}")
+    private int aggregationPartitions = 1;
+    
+    // Separate from batchExecutor: batch loads wait on partitions and must not starve them
+    private final ExecutorService partitionExecutor = Executors.newFixedThreadPool(MAX_PARTITIONS, runnable -> {
+        Thread thread = new Thread(runnable, "leaderboard-partition");
+        thread.setDaemon(true);
+        return thread;
+    });
     
     /**
      * Get leaderboard with aggregated study statistics
      * 
-     * @param period Filter by time period: "all", "month", "week"
+     * @param period Filter by time period: "all", "week", "month", "this-week", "this-month"
      * @param subject Optional subject filter (null for all subjects)
      * @param limit Number of top users to return
      * @param page Page number for pagination
@@ -53,82 +136,715 @@ public class LeaderboardService {
             Integer limit, 
             Integer page, 
             Boolean anonymize) {
+        return getLeaderboard(period, subject, limit, page, anonymize, null, null);
+    }
+    
+    /**
+     * Get leaderboard, resuming after a cursor from a previous response when given
+     * 
+     * @param cursor Optional nextCursor of the previous page; takes precedence over page
+     * @param zone Optional IANA time zone deciding which day is "today" (default UTC)
+     * @return LeaderboardResponse with ranked users and the cursor of the following page
+     * @throws IllegalArgumentException if the period, cursor or zone is invalid
+     */
+    public LeaderboardResponse getLeaderboard(
+            String period, 
+            String subject, 
+            Integer limit, 
+            Integer page, 
+            Boolean anonymize,
+            String cursor,
+            String zone) {
         // Validate and set defaults
-        period = period != null ? period.toLowerCase() : "all";
-        subject = subject != null && !subject.trim().isEmpty() ? subject.trim() : null;
-        limit = limit != null && limit > 0 ? Math.min(limit, 100) : 10;
-        page = page != null && page > 0 ? page : 1;
-        anonymize = anonymize != null ? anonymize : false;
+        String resolvedPeriod = period != null ? period.toLowerCase() : "all";
+        LeaderboardWindow window = LeaderboardWindow.of(resolvedPeriod, LocalDate.now(resolveZone(zone)));
+        String resolvedSubject = subject != null && !subject.trim().isEmpty() ? subject.trim() : null;
+        int resolvedLimit = limit != null && limit > 0 ? Math.min(limit, 100) : 10;
+        int resolvedPage = page != null && page > 0 ? page : 1;
+        boolean resolvedAnonymize = anonymize != null ? anonymize : false;
+        
+        LeaderboardCursor after = cursor != null && !cursor.isBlank() ? LeaderboardCursor.decode(cursor) : null;
         
-        // Check cache first
-        String cacheKey = CacheConfig.generateCacheKey(period, subject, limit, page, anonymize);
-        LeaderboardResponse cached = cacheConfig.get(cacheKey);
-        if (cached != null) {
-            log.debug("Cache hit for key: {}", cacheKey);
-            return cached;
+        // One cached ranking per (window, subject) serves every page, limit and anonymized view
+        LeaderboardRanking ranking = getRanking(window, resolvedSubject);
+        
+        // Classic pages start at an offset, cursor pages right after the cursor's row
+        // The offset is clamped to the user count, so a huge page cannot overflow it
+        int fromIndex = after != null
+            ? indexAfter(ranking, after)
+            : (int) Math.min((resolvedPage - 1L) * resolvedLimit, ranking.getTotalUsers());
+        List<LeaderboardEntry> entries;
+        if (fromIndex >= ranking.getTotalUsers()) {
+            // Past the last ranked user
+            entries = new ArrayList<>();
+        } else if (ranking.covers(fromIndex + resolvedLimit)) {
+            entries = slice(ranking, fromIndex, resolvedLimit, resolvedAnonymize);
+        } else {
+            // Pages past the cached depth are rare enough to aggregate directly
+            entries = loadPage(window, resolvedSubject, resolvedLimit, resolvedPage, after, resolvedAnonymize);
         }
         
-        log.debug("Cache miss for key: {}", cacheKey);
+        String nextCursor = null;
+        if (!entries.isEmpty() && entries.size() == resolvedLimit) {
+            LeaderboardEntry last = entries.get(entries.size() - 1);
+            if (last.getRank() < ranking.getTotalUsers()) {
+                nextCursor = LeaderboardCursor.after(last).encode();
+            }
+        }
         
-        // Calculate date range based on period
-        Date startDate = getStartDateForPeriod(period);
+        // Cursor pages have no page number
+        Integer responsePage = after != null ? null : resolvedPage;
+        return new LeaderboardResponse(
+            entries, resolvedPeriod, responsePage, resolvedLimit, ranking.getTotalUsers(), nextCursor);
+    }
+    
+    /**
+     * Answer several leaderboards in one call
+     * 
+     * Rankings missing from the cache are computed first: subjects sharing a date window
+     * come from one aggregation grouped by subject, other rankings load in parallel on a
+     * bounded pool. Each query is then sliced from the cache like a single request
+     * 
+     * @return one LeaderboardResponse per query, in query order; a query whose ranking cannot
+     *         be loaded gets a null result and an error entry instead of failing the batch
+     * @throws IllegalArgumentException if there are no or too many queries, or a period or zone is invalid
+     */
+    public LeaderboardBatchResponse getLeaderboards(List<LeaderboardQuery> queries, Boolean anonymize, String zone) {
+        if (queries == null || queries.isEmpty() || queries.size() > MAX_BATCH_QUERIES) {
+            throw new IllegalArgumentException("A batch holds 1 to " + MAX_BATCH_QUERIES + " queries");
+        }
+        LocalDate today = LocalDate.now(resolveZone(zone));
         
-        // Build aggregation pipeline with subject filter
-        Aggregation aggregation = buildLeaderboardAggregation(startDate, subject, limit, page);
+        // Rankings not cached yet, by window key: subjects (null for all subjects)
+        Map<String, Set<String>> missing = new LinkedHashMap<>();
+        for (LeaderboardQuery query : queries) {
+            String period = query.getPeriod() != null ? query.getPeriod().toLowerCase() : "all";
+            LeaderboardWindow window = LeaderboardWindow.of(period, today);
+            String subject = query.getSubject() != null && !query.getSubject().trim().isEmpty()
+                ? query.getSubject().trim() : null;
+            if (cacheConfig.getIfPresent(CacheConfig.generateCacheKey(window, subject)) == null) {
+                missing.computeIfAbsent(window.key(), k -> new LinkedHashSet<>()).add(subject);
+            }
+        }
         
-        // Execute aggregation
-        AggregationResults<LeaderboardEntry> results = mongoTemplate.aggregate(
-            aggregation,
-            "study_logs",
-            LeaderboardEntry.class
+        List<CompletableFuture<?>> loads = new ArrayList<>();
+        missing.forEach((windowKey, subjects) -> {
+            LeaderboardWindow window = LeaderboardWindow.fromKey(windowKey);
+            List<String> named = subjects.stream().filter(Objects::nonNull).collect(Collectors.toList());
+            // The cube answers each subject with a scan, leaving nothing to share
+            if (named.size() > 1 && !cube.isReady()) {
+                loads.add(CompletableFuture.runAsync(() -> loadRankings(window, named), batchExecutor));
+            } else {
+                named.forEach(subject ->
+                    loads.add(CompletableFuture.runAsync(() -> getRanking(window, subject), batchExecutor)));
+            }
+            if (subjects.contains(null)) {
+                loads.add(CompletableFuture.runAsync(() -> getRanking(window, null), batchExecutor));
+            }
+        });
+        try {
+            CompletableFuture.allOf(loads.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            // Queries whose ranking failed to load retry it below and report their own error
+            log.warn("Batch leaderboard preload failed", e.getCause());
+        }
+        
+        boolean resolvedAnonymize = anonymize != null ? anonymize : false;
+        List<LeaderboardResponse> results = new ArrayList<>(queries.size());
+        List<String> errors = null;
+        for (int i = 0; i < queries.size(); i++) {
+            LeaderboardQuery query = queries.get(i);
+            LeaderboardResponse result = null;
+            try {
+                result = getLeaderboard(
+                    query.getPeriod(), query.getSubject(), query.getLimit(), query.getPage(), resolvedAnonymize, null, zone);
+            } catch (IllegalArgumentException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                log.warn("Batch leaderboard query {} failed", i, e);
+                if (errors == null) {
+                    errors = new ArrayList<>(Collections.nCopies(queries.size(), null));
+                }
+                errors.set(i, "Failed to load leaderboard");
+            }
+            results.add(result);
+        }
+        return new LeaderboardBatchResponse(results, errors);
+    }
+    
+    @PreDestroy
+    public void shutdownBatchExecutor() {
+        batchExecutor.shutdownNow();
+        partitionExecutor.shutdownNow();
+    }
+    
+    /**
+     * Get the current user's position on a leaderboard
+     * 
+     * @return LeaderboardResponse holding only the user's entry (empty if they have no study time in the window)
+     * @throws IllegalArgumentException if the period or zone is invalid
+     */
+    public LeaderboardResponse getMyRank(String userId, String period, String subject, String zone) {
+        return getAroundMe(userId, period, subject, 0, false, zone);
+    }
+    
+    /**
+     * Get the users ranked just above and below the current user
+     * Served from the in-memory rank index in O(log n + radius)
+     * 
+     * @param radius Users to include on each side of the current user (default 5, max 50)
+     * @param anonymize If true, anonymize other users' names (the user's own name is always shown)
+     * @return LeaderboardResponse with the surrounding entries (empty if the user has no study time in the window)
+     * @throws IllegalArgumentException if the period or zone is invalid
+     */
+    public LeaderboardResponse getAroundMe(
+            String userId,
+            String period,
+            String subject,
+            Integer radius,
+            Boolean anonymize,
+            String zone) {
+        String resolvedPeriod = period != null ? period.toLowerCase() : "all";
+        LeaderboardWindow window = LeaderboardWindow.of(resolvedPeriod, LocalDate.now(resolveZone(zone)));
+        String resolvedSubject = subject != null && !subject.trim().isEmpty() ? subject.trim() : null;
+        int resolvedRadius = radius != null && radius >= 0 ? Math.min(radius, MAX_RADIUS) : 5;
+        boolean resolvedAnonymize = anonymize != null ? anonymize : false;
+        
+        LeaderboardRankIndex.Standings standings = getStandings(window, resolvedSubject);
+        
+        // Rank, neighbours and total from one consistent view of the standings
+        List<LeaderboardEntry> entries = new ArrayList<>();
+        long totalUsers;
+        synchronized (standings) {
+            totalUsers = standings.size();
+            int rank = standings.rankOf(userId);
+            if (rank > 0) {
+                int firstRank = Math.max(1, rank - resolvedRadius);
+                List<LeaderboardRankIndex.Standing> around = standings.range(firstRank - 1, rank + resolvedRadius);
+                for (int i = 0; i < around.size(); i++) {
+                    LeaderboardRankIndex.Standing standing = around.get(i);
+                    LeaderboardEntry entry = new LeaderboardEntry(
+                        standing.getUserId(), standing.getTotalMinutes(), standing.getSessionCount());
+                    entry.setRank(firstRank + i);
+                    entries.add(entry);
+                }
+            }
+        }
+        
+        enrichWithUsernames(entries);
+        if (resolvedAnonymize) {
+            entries.stream()
+                .filter(entry -> !entry.getUserId().equals(userId))
+                .forEach(entry -> entry.setUsername(anonymizedUsername(entry.getUserId())));
+        }
+        
+        return new LeaderboardResponse(entries, resolvedPeriod, null, 2 * resolvedRadius + 1, totalUsers);
+    }
+    
+    /**
+     * Get the distribution of study time on a leaderboard and the current user's percentile
+     * Read from the histogram kept with the rank index, in time independent of the number of users
+     * 
+     * @return LeaderboardStatsResponse with p50/p90/p99 of total minutes and a power-of-two histogram
+     * @throws IllegalArgumentException if the period or zone is invalid
+     */
+    public LeaderboardStatsResponse getStats(String userId, String period, String subject, String zone) {
+        String resolvedPeriod = period != null ? period.toLowerCase() : "all";
+        LeaderboardWindow window = LeaderboardWindow.of(resolvedPeriod, LocalDate.now(resolveZone(zone)));
+        String resolvedSubject = subject != null && !subject.trim().isEmpty() ? subject.trim() : null;
+        
+        LeaderboardRankIndex.Standings standings = getStandings(window, resolvedSubject);
+        LogLinearHistogram histogram;
+        LeaderboardRankIndex.Standing mine;
+        synchronized (standings) {
+            histogram = standings.histogram();
+            mine = userId != null ? standings.get(userId) : null;
+        }
+        
+        // Merge the fine buckets into [0, 1), [1, 2), [2, 4), [4, 8), ...
+        List<LeaderboardHistogramBucket> buckets = new ArrayList<>();
+        LeaderboardHistogramBucket current = null;
+        for (int i = 0; i < LogLinearHistogram.BUCKETS; i++) {
+            long users = histogram.countAt(i);
+            if (users == 0) {
+                continue;
+            }
+            long from = Long.highestOneBit(LogLinearHistogram.lowerBound(i));
+            if (current == null || current.getFromMinutes() != from) {
+                long to = from == 0 ? 1 : (from << 1 > 0 ? from << 1 : Long.MAX_VALUE);
+                current = new LeaderboardHistogramBucket(from, to, 0L);
+                buckets.add(current);
+            }
+            current.setUsers(current.getUsers() + users);
+        }
+        
+        return new LeaderboardStatsResponse(
+            resolvedPeriod,
+            resolvedSubject,
+            histogram.count(),
+            histogram.valueAtPercentile(50),
+            histogram.valueAtPercentile(90),
+            histogram.valueAtPercentile(99),
+            mine != null ? mine.getTotalMinutes() : null,
+            mine != null ? histogram.percentileOf(mine.getTotalMinutes()) : null,
+            buckets
         );
+    }
+    
+    /**
+     * Rank index of a (period, subject, zone), built on first use
+     * 
+     * @throws IllegalArgumentException if the period or zone is invalid
+     */
+    LeaderboardRankIndex.Standings getStandings(String period, String subject, String zone) {
+        String resolvedPeriod = period != null ? period.toLowerCase() : "all";
+        LeaderboardWindow window = LeaderboardWindow.of(resolvedPeriod, LocalDate.now(resolveZone(zone)));
+        String resolvedSubject = subject != null && !subject.trim().isEmpty() ? subject.trim() : null;
+        return getStandings(window, resolvedSubject);
+    }
+    
+    /**
+     * Resolve the rank index key a (period, subject, zone) currently maps to, building it if needed
+     * Used by the leaderboard stream to route rank changes to subscribers
+     * 
+     * @throws IllegalArgumentException if the period or zone is invalid
+     */
+    public String resolveChannel(String period, String subject, String zone) {
+        String resolvedPeriod = period != null ? period.toLowerCase() : "all";
+        LeaderboardWindow window = LeaderboardWindow.of(resolvedPeriod, LocalDate.now(resolveZone(zone)));
+        String resolvedSubject = subject != null && !subject.trim().isEmpty() ? subject.trim() : null;
+        getStandings(window, resolvedSubject);
+        return CacheConfig.generateCacheKey(window, resolvedSubject);
+    }
+    
+    /**
+     * Get leaderboard cache statistics (hit/miss rates, load time, evictions)
+     */
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(cacheConfig.getCacheStats());
+        stats.put("rankIndex", rankIndex.getStats());
+        stats.put("cube", cube.getStats());
+        stats.put("userSummaries", userSummaryService.getStats());
+        return stats;
+    }
+    
+    /**
+     * Build the rank index of the unfiltered leaderboards on startup
+     * Other windows and subjects are built on first use
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmRankIndex() {
+        LocalDate today = LocalDate.now(LeaderboardWindow.DEFAULT_ZONE);
+        for (String period : LeaderboardWindow.PERIODS) {
+            try {
+                getStandings(LeaderboardWindow.of(period, today), null);
+            } catch (RuntimeException e) {
+                log.warn("Could not build leaderboard rank index for period {}", period, e);
+            }
+        }
+    }
+    
+    /**
+     * Get the rank index for a window and subject, building it from the rollups on first use
+     */
+    private LeaderboardRankIndex.Standings getStandings(LeaderboardWindow window, String subject) {
+        return rankIndex.get(CacheConfig.generateCacheKey(window, subject), key -> loadStandings(window, subject));
+    }
+    
+    /**
+     * Totals of every ranked user in a window, unsorted (rank index build path)
+     */
+    private List<LeaderboardEntry> loadStandings(LeaderboardWindow window, String subject) {
+        Optional<List<LeaderboardEntry>> totals = cube.totals(window, subject);
+        if (totals.isPresent()) {
+            return totals.get();
+        }
         
-        List<LeaderboardEntry> entries = results.getMappedResults();
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(buildMatchCriteria(window, subject)),
+            Aggregation.group("userId")
+                .sum("totalMinutes").as("totalMinutes")
+                .sum("sessionCount").as("sessionCount"),
+            Aggregation.project()
+                .and("_id").as("userId")
+                .and("totalMinutes").as("totalMinutes")
+                .and("sessionCount").as("sessionCount")
+        ).withOptions(AggregationOptions.builder().allowDiskUse(true).build());
         
-        // Enrich with usernames
-        enrichWithUsernames(entries, anonymize);
+        return mongoTemplate.aggregate(aggregation, LeaderboardRollup.COLLECTION, LeaderboardEntry.class)
+            .getMappedResults();
+    }
+    
+    /**
+     * Time zone a request's window is resolved in
+     */
+    private ZoneId resolveZone(String zone) {
+        if (zone == null || zone.isBlank()) {
+            return LeaderboardWindow.DEFAULT_ZONE;
+        }
+        try {
+            return ZoneId.of(zone.trim());
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Unknown time zone: " + zone, e);
+        }
+    }
+    
+    /**
+     * Get the cached ranking for a window and subject, computing it on a miss
+     */
+    private LeaderboardRanking getRanking(LeaderboardWindow window, String subject) {
+        String cacheKey = CacheConfig.generateCacheKey(window, subject);
+        return cacheConfig.get(cacheKey, key -> loadRanking(key, window, subject));
+    }
+    
+    /**
+     * Compute the ranking behind a cache key produced by CacheConfig.generateCacheKey
+     * Used to refresh rankings restored from a snapshot, which carry no window or subject
+     */
+    public LeaderboardRanking loadRanking(String cacheKey) {
+        int separator = cacheKey.indexOf('|');
+        String subject = cacheKey.substring(separator + 1);
+        return loadRanking(
+            cacheKey,
+            LeaderboardWindow.fromKey(cacheKey.substring(0, separator)),
+            "all".equals(subject) ? null : subject
+        );
+    }
+    
+    /**
+     * Compute the top RANKING_DEPTH users from the rollups (cache miss path)
+     */
+    private LeaderboardRanking loadRanking(String cacheKey, LeaderboardWindow window, String subject) {
+        log.debug("Cache miss for key: {}", cacheKey);
         
-        // Add ranks
-        addRanks(entries, page, limit);
+        LeaderboardPageResult result = cube.top(window, subject, null, RANKING_DEPTH)
+            .orElseGet(() -> aggregatePage(window, subject, RANKING_DEPTH, 1, null));
+        List<LeaderboardEntry> entries = result.getEntries();
         
-        // Count total users (for pagination info)
-        Long totalUsers = countTotalUsers(startDate, subject);
+        // Resolve real usernames once; anonymized views are derived when slicing
+        enrichWithUsernames(entries);
         
-        LeaderboardResponse response = new LeaderboardResponse(entries, period, page, limit, totalUsers);
+        return new LeaderboardRanking(entries, result.getTotalUsers(), userIdDictionary);
+    }
+    
+    /**
+     * Compute the rankings of several subjects of one window with a single aggregation
+     * and cache each of them (batch requests)
+     * 
+     * Users are grouped per (subject, user) in one pass; $setWindowFields then numbers
+     * them within each subject and counts each subject's users, and only the top
+     * RANKING_DEPTH rows per subject are returned
+     */
+    private void loadRankings(LeaderboardWindow window, List<String> subjects) {
+        // Versions read before aggregating, so rankings racing with a write are not cached
+        Map<String, Long> versions = new HashMap<>();
+        for (String subject : subjects) {
+            String key = CacheConfig.generateCacheKey(window, subject);
+            versions.put(subject, cacheConfig.currentVersion(key));
+        }
         
-        // Cache the response
-        cacheConfig.put(cacheKey, response);
-        log.debug("Cached response for key: {}", cacheKey);
+        Criteria criteria = buildMatchCriteria(window, null).and("subject").in(subjects);
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(criteria),
+            Aggregation.group("subject", "userId")
+                .sum("totalMinutes").as("totalMinutes")
+                .sum("sessionCount").as("sessionCount"),
+            SetWindowFieldsOperation.builder()
+                .partitionByField("_id.subject")
+                .sortBy(Sort.by(Sort.Direction.DESC, "totalMinutes").and(Sort.by(Sort.Direction.ASC, "_id.userId")))
+                .output(DocumentOperators.documentNumber()).as("position")
+                .output(AccumulatorOperators.Sum.sumOf(LiteralOperators.Literal.asLiteral(1))).as("subjectUsers")
+                .build(),
+            Aggregation.match(Criteria.where("position").lte(RANKING_DEPTH)),
+            Aggregation.sort(Sort.by("_id.subject", "position")),
+            Aggregation.project()
+                .and("_id.userId").as("userId")
+                .and("_id.subject").as("subject")
+                .and("totalMinutes").as("totalMinutes")
+                .and("sessionCount").as("sessionCount")
+                .and("subjectUsers").as("subjectUsers")
+                .and(ArithmeticOperators.Divide.valueOf("totalMinutes")
+                    .divideBy("sessionCount")).as("avgMinutesPerSession")
+        ).withOptions(AggregationOptions.builder().allowDiskUse(true).build());
         
-        return response;
+        List<Document> rows = mongoTemplate.aggregate(aggregation, LeaderboardRollup.COLLECTION, Document.class)
+            .getMappedResults();
+        
+        Map<String, List<LeaderboardEntry>> entriesBySubject = new HashMap<>();
+        Map<String, Long> usersBySubject = new HashMap<>();
+        List<LeaderboardEntry> all = new ArrayList<>(rows.size());
+        for (Document row : rows) {
+            LeaderboardEntry entry = new LeaderboardEntry(
+                row.getString("userId"),
+                null,
+                ((Number) row.get("totalMinutes")).longValue(),
+                ((Number) row.get("sessionCount")).longValue(),
+                ((Number) row.get("avgMinutesPerSession")).doubleValue(),
+                null
+            );
+            entriesBySubject.computeIfAbsent(row.getString("subject"), k -> new ArrayList<>()).add(entry);
+            usersBySubject.put(row.getString("subject"), ((Number) row.get("subjectUsers")).longValue());
+            all.add(entry);
+        }
+        
+        // One username lookup for every subject
+        enrichWithUsernames(all);
+        
+        for (String subject : subjects) {
+            List<LeaderboardEntry> entries = entriesBySubject.getOrDefault(subject, new ArrayList<>());
+            String key = CacheConfig.generateCacheKey(window, subject);
+            cacheConfig.put(
+                key,
+                new LeaderboardRanking(entries, usersBySubject.getOrDefault(subject, 0L), userIdDictionary),
+                k -> loadRanking(k, window, subject),
+                versions.get(subject)
+            );
+        }
     }
     
     /**
-     * Build MongoDB aggregation pipeline for leaderboard
-     * Optimized with indexed fields: userId, date, subject
+     * Compute a single page directly (pages beyond the cached ranking depth)
+     * With a cursor the page resumes after it by a range match instead of $skip
      */
-    private Aggregation buildLeaderboardAggregation(Date startDate, String subject, Integer limit, Integer page) {
-        List<AggregationOperation> operations = new ArrayList<>();
+    private List<LeaderboardEntry> loadPage(
+            LeaderboardWindow window, String subject, int limit, int page, LeaderboardCursor after, boolean anonymize) {
+        List<LeaderboardEntry> entries = loadPageEntries(window, subject, limit, page, after);
+        enrichWithUsernames(entries);
+        if (after != null) {
+            for (int i = 0; i < entries.size(); i++) {
+                entries.get(i).setRank(after.getRank() + 1 + i);
+            }
+        } else {
+            addRanks(entries, page, limit);
+        }
+        if (anonymize) {
+            entries.forEach(entry -> entry.setUsername(anonymizedUsername(entry.getUserId())));
+        }
+        return entries;
+    }
+    
+    /**
+     * Entries of one page, selected from the cube (top page * limit, or top limit after the cursor)
+     * or aggregated in MongoDB
+     */
+    private List<LeaderboardEntry> loadPageEntries(
+            LeaderboardWindow window, String subject, int limit, int page, LeaderboardCursor after) {
+        int depth = after != null ? limit : (int) Math.min((long) page * limit, Integer.MAX_VALUE);
+        Optional<LeaderboardPageResult> result = cube.top(window, subject, after, depth);
+        if (result.isEmpty()) {
+            return aggregatePage(window, subject, limit, page, after).getEntries();
+        }
+        List<LeaderboardEntry> entries = result.get().getEntries();
+        int fromIndex = Math.min(depth - limit, entries.size());
+        return new ArrayList<>(entries.subList(fromIndex, entries.size()));
+    }
+    
+    /**
+     * Position of the first ranked entry that sorts after the cursor
+     * Binary search over the ranking order (totalMinutes desc, userId asc)
+     */
+    private int indexAfter(LeaderboardRanking ranked, LeaderboardCursor after) {
+        int low = 0;
+        int high = ranked.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Long.compare(after.getTotalMinutes(), ranked.getTotalMinutes(mid));
+            if (cmp == 0) {
+                cmp = ranked.getUserId(mid).compareTo(after.getUserId());
+            }
+            // cmp <= 0: entry is at or before the cursor
+            if (cmp <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Aggregate one page and the total count from the rollups in MongoDB,
+     * in one pipeline or split across userId partitions (leaderboard.aggregation.partitions)
+     */
+    LeaderboardPageResult aggregatePage(
+            LeaderboardWindow window, String subject, int limit, int page, LeaderboardCursor after) {
+        int partitions = Math.max(1, Math.min(aggregationPartitions, MAX_PARTITIONS));
+        if (partitions == 1) {
+            return runPageAggregation(buildLeaderboardAggregation(window, subject, limit, page, after, null));
+        }
+        return aggregatePartitioned(window, subject, limit, page, after, partitions);
+    }
+    
+    /**
+     * Run the page aggregation concurrently over each userId partition and merge the results
+     * 
+     * A user's buckets all fall in one partition, so each partition groups complete totals;
+     * it returns its own top page * limit rows (or top limit rows after the cursor),
+     * which hold every row of the global page that comes from it
+     */
+    private LeaderboardPageResult aggregatePartitioned(
+            LeaderboardWindow window, String subject, int limit, int page, LeaderboardCursor after, int partitions) {
+        int depth = after != null ? limit : (int) Math.min((long) page * limit, Integer.MAX_VALUE);
+        List<CompletableFuture<LeaderboardPageResult>> futures = new ArrayList<>(partitions);
+        for (int partition = 0; partition < partitions; partition++) {
+            Criteria criteria = buildPartitionCriteria(partition, partitions);
+            futures.add(CompletableFuture.supplyAsync(() -> runPageAggregation(
+                buildLeaderboardAggregation(window, subject, depth, 1, after, criteria)), partitionExecutor));
+        }
         
-        // Stage 1: Match by date range and/or subject if specified
-        // Also filter out entries without userId
-        Criteria criteria = Criteria.where("userId").ne(null).exists(true);
-        if (startDate != null) {
-            criteria = criteria.and("date").gte(startDate);
+        List<List<LeaderboardEntry>> partitionEntries = new ArrayList<>(partitions);
+        long totalUsers = 0;
+        try {
+            for (CompletableFuture<LeaderboardPageResult> future : futures) {
+                LeaderboardPageResult result = future.join();
+                partitionEntries.add(result.getEntries());
+                totalUsers += result.getTotalUsers();
+            }
+        } catch (CompletionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
         }
-        if (subject != null) {
-            criteria = criteria.and("subject").is(subject);
+        int skip = after != null ? 0 : depth - limit;
+        return new LeaderboardPageResult(mergeRanked(partitionEntries, skip, limit), totalUsers);
+    }
+    
+    /**
+     * K-way merge of ranked lists into one page of the ranking order (totalMinutes desc, userId asc)
+     * Only skip + limit rows are taken from the heads of the lists
+     */
+    static List<LeaderboardEntry> mergeRanked(List<List<LeaderboardEntry>> ranked, int skip, int limit) {
+        // Heads as {list, position}
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, ranked.size()),
+            (a, b) -> RANKING_ORDER.compare(ranked.get(a[0]).get(a[1]), ranked.get(b[0]).get(b[1])));
+        for (int i = 0; i < ranked.size(); i++) {
+            if (!ranked.get(i).isEmpty()) {
+                heads.add(new int[] { i, 0 });
+            }
+        }
+        List<LeaderboardEntry> merged = new ArrayList<>(Math.min(limit, 1024));
+        int taken = 0;
+        while (!heads.isEmpty() && merged.size() < limit) {
+            int[] head = heads.poll();
+            List<LeaderboardEntry> list = ranked.get(head[0]);
+            if (taken++ >= skip) {
+                merged.add(list.get(head[1]));
+            }
+            if (++head[1] < list.size()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+    
+    /**
+     * Rollup buckets in the partition's share of the stored userBucket values
+     * A range over an indexed field, so each partition reads only its own buckets
+     * through the (userBucket, day, subject) index
+     */
+    static Criteria buildPartitionCriteria(int partition, int partitions) {
+        int from = partition * LeaderboardRollup.USER_BUCKETS / partitions;
+        int to = (partition + 1) * LeaderboardRollup.USER_BUCKETS / partitions;
+        return Criteria.where("userBucket").gte(from).lt(to);
+    }
+    
+    /**
+     * Run a page aggregation built by buildLeaderboardAggregation
+     */
+    private LeaderboardPageResult runPageAggregation(Aggregation aggregation) {
+        AggregationResults<LeaderboardPageResult> results = mongoTemplate.aggregate(
+            aggregation,
+            LeaderboardRollup.COLLECTION,
+            LeaderboardPageResult.class
+        );
+        
+        LeaderboardPageResult result = results.getUniqueMappedResult();
+        List<LeaderboardEntry> entries = result != null && result.getEntries() != null
+            ? new ArrayList<>(result.getEntries())
+            : new ArrayList<>();
+        Long totalUsers = result != null && result.getTotalUsers() != null ? result.getTotalUsers() : 0L;
+        return new LeaderboardPageResult(entries, totalUsers);
+    }
+    
+    /**
+     * Build the entries of a slice of a ranking for a response, anonymizing usernames if requested
+     * Only the rows returned are decoded into LeaderboardEntry objects
+     */
+    private List<LeaderboardEntry> slice(LeaderboardRanking ranked, int fromIndex, int limit, boolean anonymize) {
+        int toIndex = Math.min(fromIndex + limit, ranked.size());
+        List<LeaderboardEntry> page = new ArrayList<>(Math.max(0, toIndex - fromIndex));
+        for (int i = fromIndex; i < toIndex; i++) {
+            LeaderboardEntry entry = ranked.getEntry(i);
+            if (anonymize) {
+                entry.setUsername(anonymizedUsername(entry.getUserId()));
+            }
+            page.add(entry);
         }
-        operations.add(Aggregation.match(criteria));
+        return page;
+    }
+    
+    /**
+     * Evict cached leaderboards affected by a study log write
+     * Runs after LeaderboardRollupService has applied the write to the rollups
+     */
+    @EventListener
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onStudyLogChanged(StudyLogChangedEvent event) {
+        invalidateAffectedWindows(event.getPrevious());
+        invalidateAffectedWindows(event.getCurrent());
+    }
+    
+    /**
+     * Invalidate every cached window that contains the log's date
+     */
+    private void invalidateAffectedWindows(StudyLog studyLog) {
+        if (studyLog == null) {
+            return;
+        }
+        String subject = studyLog.getSubject() != null ? studyLog.getSubject().trim() : null;
+        cacheConfig.invalidate(studyLog.getDate(), subject);
+    }
+    
+    /**
+     * Build MongoDB aggregation pipeline for leaderboard
+     * Runs over day buckets, optimized with the (day, subject) rollup index
+     * 
+     * The match and group stages run once; a $facet then produces both the
+     * requested page and the distinct-user count from the same grouped documents
+     * 
+     * Rows are ordered by totalMinutes desc with userId asc as tiebreak, so a page
+     * can resume after a cursor with a range match instead of skipping earlier rows
+     */
+    Aggregation buildLeaderboardAggregation(
+            LeaderboardWindow window, String subject, Integer limit, Integer page, LeaderboardCursor after,
+            Criteria partition) {
+        List<AggregationOperation> operations = new ArrayList<>();
+        
+        // Stage 1: Match by date range and/or subject if specified, and the userId partition if any
+        Criteria match = buildMatchCriteria(window, subject);
+        operations.add(Aggregation.match(partition != null ? new Criteria().andOperator(match, partition) : match));
         
-        // Stage 2: Group by userId and calculate totals
+        // Stage 2: Group day buckets by userId and calculate totals
         operations.add(Aggregation.group("userId")
-            .sum("duration").as("totalMinutes")
-            .count().as("sessionCount")
+            .sum("totalMinutes").as("totalMinutes")
+            .sum("sessionCount").as("sessionCount")
         );
         
-        // Stage 3: Project to calculate average and rename _id to userId
-        operations.add(Aggregation.project()
+        // Stage 3: Page branch - position (cursor range or skip), sort, limit, then project only the page rows
+        List<AggregationOperation> pageOperations = new ArrayList<>();
+        if (after != null) {
+            pageOperations.add(Aggregation.match(new Criteria().orOperator(
+                Criteria.where("totalMinutes").lt(after.getTotalMinutes()),
+                Criteria.where("totalMinutes").is(after.getTotalMinutes()).and("_id").gt(after.getUserId())
+            )));
+        }
+        pageOperations.add(Aggregation.sort(Sort.by(Sort.Direction.DESC, "totalMinutes")
+            .and(Sort.by(Sort.Direction.ASC, "_id"))));
+        long skip = after != null ? 0 : (page - 1L) * limit;
+        if (skip > 0) {
+            pageOperations.add(Aggregation.skip(skip));
+        }
+        pageOperations.add(Aggregation.limit(limit));
+        pageOperations.add(Aggregation.project()
             .and("_id").as("userId")
             .and("totalMinutes").as("totalMinutes")
             .and("sessionCount").as("sessionCount")
@@ -136,48 +852,46 @@ public class LeaderboardService {
                 .divideBy("sessionCount")).as("avgMinutesPerSession")
         );
         
-        // Stage 4: Sort by totalMinutes descending
-        operations.add(Aggregation.sort(Sort.Direction.DESC, "totalMinutes"));
-        
-        // Stage 5: Pagination - skip
-        int skip = (page - 1) * limit;
-        if (skip > 0) {
-            operations.add(Aggregation.skip((long) skip));
-        }
+        // Stage 4: $facet with the page branch and a count branch over the same groups
+        operations.add(Aggregation.facet(pageOperations.toArray(new AggregationOperation[0])).as("entries")
+            .and(Aggregation.count().as("count")).as("total")
+        );
         
-        // Stage 6: Limit results
-        operations.add(Aggregation.limit(limit));
+        // Stage 5: Flatten the count branch ([{count: n}] or [] when nobody matched)
+        operations.add(Aggregation.project("entries")
+            .and(ArrayOperators.ArrayElemAt.arrayOf("total.count").elementAt(0)).as("totalUsers")
+        );
         
         return Aggregation.newAggregation(operations);
     }
     
     /**
-     * Get start date based on period filter
+     * Rollup buckets of a window and optional subject
+     * Also filters out buckets without userId
      */
-    private Date getStartDateForPeriod(String period) {
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime startDateTime;
-        
-        switch (period) {
-            case "week":
-                startDateTime = now.minusWeeks(1);
-                break;
-            case "month":
-                startDateTime = now.minusMonths(1);
-                break;
-            case "all":
-            default:
-                return null; // No date filter
+    Criteria buildMatchCriteria(LeaderboardWindow window, String subject) {
+        Criteria criteria = Criteria.where("userId").ne(null).exists(true);
+        if (window.getStart() != null) {
+            criteria = criteria.and("day").gte(toStartOfDay(window.getStart())).lt(toStartOfDay(window.getEnd()));
         }
-        
-        return Date.from(startDateTime.atZone(ZoneId.systemDefault()).toInstant());
+        if (subject != null) {
+            criteria = criteria.and("subject").is(subject);
+        }
+        // Buckets emptied by deletes linger until the next rollup reconcile
+        return criteria.and("sessionCount").gt(0);
     }
     
     /**
-     * Enrich leaderboard entries with usernames from User collection
-     * Supports anonymization for privacy
+     * Day bucket value of a date as stored by Spring Data (midnight in the JVM zone)
      */
-    private void enrichWithUsernames(List<LeaderboardEntry> entries, Boolean anonymize) {
+    static Date toStartOfDay(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+    
+    /**
+     * Enrich leaderboard entries with usernames (cached id/username summaries)
+     */
+    private void enrichWithUsernames(List<LeaderboardEntry> entries) {
         if (entries.isEmpty()) {
             return;
         }
@@ -187,28 +901,26 @@ public class LeaderboardService {
             .map(LeaderboardEntry::getUserId)
             .collect(Collectors.toList());
         
-        // Fetch users in batch
-        List<User> users = userRepository.findAllById(userIds);
-        
-        // Create userId -> username map
-        Map<String, String> userIdToUsername = users.stream()
-            .collect(Collectors.toMap(
-                User::getId,
-                user -> user.getUsername() != null ? user.getUsername() : "User#" + user.getId().substring(0, 8),
-                (existing, replacement) -> existing
-            ));
+        Map<String, String> usernames = resolveUsernames(userIds);
+        entries.forEach(entry -> entry.setUsername(usernames.get(entry.getUserId())));
+    }
+    
+    /**
+     * Display names for user IDs, with placeholders for missing users
+     */
+    Map<String, String> resolveUsernames(Collection<String> userIds) {
+        // Cached summaries; only ids never seen before are queried, in one batch
+        Map<String, String> userIdToUsername = new HashMap<>();
+        userSummaryService.findAll(userIds).forEach((id, summary) -> userIdToUsername.put(
+            id, summary.getUsername() != null ? summary.getUsername() : "User#" + id.substring(0, Math.min(8, id.length()))));
         
-        // Enrich entries with anonymization support
-        entries.forEach(entry -> {
+        // Resolve every requested ID
+        Map<String, String> usernames = new HashMap<>();
+        userIds.forEach(userId -> {
             String username;
-            String userId = entry.getUserId();
             
             if (userId == null || userId.isEmpty()) {
                 username = "Unknown";
-            } else if (anonymize) {
-                // Anonymize: User_1234 format
-                int startIndex = Math.max(0, userId.length() - 4);
-                username = "User_" + userId.substring(startIndex);
             } else {
                 username = userIdToUsername.get(userId);
                 if (username == null) {
@@ -216,54 +928,29 @@ public class LeaderboardService {
                     username = "Anonymous#" + userId.substring(0, endIndex);
                 }
             }
-            entry.setUsername(username);
+            usernames.put(userId, username);
         });
+        return usernames;
     }
     
     /**
-     * Add rank numbers to entries
+     * Anonymized display name for privacy: User_1234 format
      */
-    private void addRanks(List<LeaderboardEntry> entries, Integer page, Integer limit) {
-        int startRank = (page - 1) * limit + 1;
-        for (int i = 0; i < entries.size(); i++) {
-            entries.get(i).setRank(startRank + i);
+    static String anonymizedUsername(String userId) {
+        if (userId == null || userId.isEmpty()) {
+            return "Unknown";
         }
+        int startIndex = Math.max(0, userId.length() - 4);
+        return "User_" + userId.substring(startIndex);
     }
     
     /**
-     * Count total users with study logs in the period and subject
+     * Add rank numbers to entries
      */
-    private Long countTotalUsers(Date startDate, String subject) {
-        List<AggregationOperation> operations = new ArrayList<>();
-        
-        // Match by date and/or subject if specified
-        // Also filter out entries without userId
-        Criteria criteria = Criteria.where("userId").ne(null).exists(true);
-        if (startDate != null) {
-            criteria = criteria.and("date").gte(startDate);
-        }
-        if (subject != null) {
-            criteria = criteria.and("subject").is(subject);
+    private void addRanks(List<LeaderboardEntry> entries, Integer page, Integer limit) {
+        int startRank = (int) Math.min((page - 1L) * limit + 1, Integer.MAX_VALUE);
+        for (int i = 0; i < entries.size(); i++) {
+            entries.get(i).setRank(startRank + i);
         }
-        operations.add(Aggregation.match(criteria));
-        
-        // Group by userId
-        operations.add(Aggregation.group("userId"));
-        
-        // Count groups
-        operations.add(Aggregation.count().as("count"));
-        
-        Aggregation aggregation = Aggregation.newAggregation(operations);
-        
-        @SuppressWarnings("unchecked")
-        AggregationResults<Map<String, Object>> results = 
-            (AggregationResults<Map<String, Object>>) (AggregationResults<?>) mongoTemplate.aggregate(
-                aggregation,
-                "study_logs",
-                Map.class
-            );
-        
-        Map<String, Object> result = results.getUniqueMappedResult();
-        return result != null ? ((Number) result.get("count")).longValue() : 0L;
     }
 }
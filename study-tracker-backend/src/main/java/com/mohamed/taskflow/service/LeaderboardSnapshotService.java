@@ -0,0 +1,249 @@
+package com.mohamed.taskflow.service;
+
+import com.mohamed.taskflow.config.CacheConfig;
+import com.mohamed.taskflow.dto.LeaderboardEntry;
+import com.mohamed.taskflow.dto.LeaderboardRanking;
+import com.mohamed.taskflow.dto.LeaderboardWindow;
+import com.mohamed.taskflow.util.UserIdDictionary;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Keeps the cached leaderboard rankings in a local snapshot file across restarts
+ * 
+ * - Every SNAPSHOT_INTERVAL_MILLIS and on shutdown, the completed rankings in
+ *   CacheConfig are written to the file (temp file + rename, so a crash never leaves
+ *   a half-written snapshot behind)
+ * - On startup the file is read back and each ranking whose window can still be current
+ *   is restored into the cache, served stale-but-valid while a background refresh
+ *   recomputes it
+ * 
+ * File format (length-prefixed binary, big-endian via DataOutputStream):
+ * magic, format version, written-at millis, ranking count, then per ranking its key,
+ * total users and entry count followed by the entries, and finally a CRC32 of everything
+ * before it. The checksum is verified before anything is decoded, and counts are checked
+ * against the bytes left; a file failing any check is logged and ignored, never failing startup
+ * 
+ * Note: Snapshots are per instance; each instance restores only what it cached itself
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LeaderboardSnapshotService {
+    
+    /**
+     * Rankings are written this often
+     */
+    public static final long SNAPSHOT_INTERVAL_MILLIS = 5 * 60 * 1000;
+    
+    static final int MAGIC = 0x4C42534E; // "LBSN"
+    static final int FORMAT_VERSION = 1;
+    
+    // Fewest bytes a ranking (empty key, totals, entry count) and an entry (empty ids, no username) take
+    private static final int MIN_RANKING_BYTES = 2 + 8 + 4;
+    private static final int MIN_ENTRY_BYTES = 2 + 1 + 8 + 8 + 8 + 4;
+    
+    // Size of the trailing CRC32
+    private static final int CHECKSUM_BYTES = 8;
+    
+    private final CacheConfig cacheConfig;
+    private final LeaderboardService leaderboardService;
+    private final UserIdDictionary userIdDictionary;
+    
+    @Value("${leaderboard.snapshot.path:leaderboard-snapshot.bin}")
+    private String snapshotPath;
+    
+    /**
+     * Restore the last snapshot before other startup work hits the leaderboard
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void restoreSnapshot() {
+        Path path = Paths.get(snapshotPath);
+        if (!Files.isReadable(path)) {
+            return;
+        }
+        
+        // A bad snapshot must not fail startup: anything thrown while decoding skips it
+        Map<String, LeaderboardRanking> rankings;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            rankings = read(in, userIdDictionary);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable leaderboard snapshot {}", path, e);
+            return;
+        }
+        
+        // Rolling windows move daily; a window ending before today (UTC) is no zone's current one
+        LocalDate today = LocalDate.now(LeaderboardWindow.DEFAULT_ZONE);
+        int restored = 0;
+        for (Map.Entry<String, LeaderboardRanking> ranking : rankings.entrySet()) {
+            String key = ranking.getKey();
+            LeaderboardWindow window;
+            try {
+                window = LeaderboardWindow.fromKey(key.substring(0, key.indexOf('|')));
+            } catch (RuntimeException e) {
+                log.warn("Skipping leaderboard snapshot ranking with malformed key {}", key);
+                continue;
+            }
+            if (window.getEnd() != null && window.getEnd().isBefore(today)) {
+                continue;
+            }
+            if (cacheConfig.restore(key, ranking.getValue(), leaderboardService::loadRanking)) {
+                restored++;
+            }
+        }
+        log.info("Restored {} of {} leaderboard rankings from snapshot {}", restored, rankings.size(), path);
+    }
+    
+    /**
+     * Write the cached rankings to the snapshot file
+     */
+    @Scheduled(fixedDelay = SNAPSHOT_INTERVAL_MILLIS, initialDelay = SNAPSHOT_INTERVAL_MILLIS)
+    @PreDestroy
+    public synchronized void writeSnapshot() {
+        Map<String, LeaderboardRanking> rankings = cacheConfig.snapshot();
+        if (rankings.isEmpty()) {
+            return;
+        }
+        
+        Path path = Paths.get(snapshotPath).toAbsolutePath();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                write(rankings, out);
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            log.debug("Wrote {} leaderboard rankings to snapshot {}", rankings.size(), path);
+        } catch (IOException e) {
+            log.warn("Could not write leaderboard snapshot {}", path, e);
+        }
+    }
+    
+    /**
+     * Encode rankings in the snapshot format
+     */
+    static void write(Map<String, LeaderboardRanking> rankings, OutputStream target) throws IOException {
+        CheckedOutputStream checked = new CheckedOutputStream(target, new CRC32());
+        DataOutputStream out = new DataOutputStream(checked);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(System.currentTimeMillis());
+        out.writeInt(rankings.size());
+        for (Map.Entry<String, LeaderboardRanking> ranking : rankings.entrySet()) {
+            out.writeUTF(ranking.getKey());
+            out.writeLong(ranking.getValue().getTotalUsers());
+            out.writeInt(ranking.getValue().size());
+            for (int j = 0; j < ranking.getValue().size(); j++) {
+                LeaderboardEntry entry = ranking.getValue().getEntry(j);
+                out.writeUTF(entry.getUserId());
+                out.writeBoolean(entry.getUsername() != null);
+                if (entry.getUsername() != null) {
+                    out.writeUTF(entry.getUsername());
+                }
+                out.writeLong(entry.getTotalMinutes() != null ? entry.getTotalMinutes() : 0L);
+                out.writeLong(entry.getSessionCount() != null ? entry.getSessionCount() : 0L);
+                out.writeDouble(entry.getAvgMinutesPerSession() != null ? entry.getAvgMinutesPerSession() : 0.0);
+                out.writeInt(entry.getRank() != null ? entry.getRank() : 0);
+            }
+        }
+        out.flush();
+        // Checksum of everything above, written outside the checked stream
+        new DataOutputStream(target).writeLong(checked.getChecksum().getValue());
+        target.flush();
+    }
+    
+    /**
+     * Decode rankings written by write()
+     * The whole snapshot is read and its checksum verified first, so nothing is decoded
+     * or allocated from bytes that were not written by write()
+     * 
+     * @throws IOException if the data is truncated, from another format, fails its checksum
+     *                     or holds a count larger than the bytes left could encode
+     */
+    static Map<String, LeaderboardRanking> read(InputStream source, UserIdDictionary dictionary) throws IOException {
+        byte[] bytes = source.readAllBytes();
+        if (bytes.length < CHECKSUM_BYTES) {
+            throw new IOException("Leaderboard snapshot is truncated");
+        }
+        int length = bytes.length - CHECKSUM_BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        long written = new DataInputStream(new ByteArrayInputStream(bytes, length, CHECKSUM_BYTES)).readLong();
+        if (written != crc.getValue()) {
+            throw new IOException("Leaderboard snapshot checksum mismatch");
+        }
+        
+        // available() of a byte array stream is exactly the bytes left
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, length));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a leaderboard snapshot");
+        }
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported leaderboard snapshot version " + version);
+        }
+        in.readLong(); // written-at, informational
+        
+        int rankingCount = checkCount(in.readInt(), in.available(), MIN_RANKING_BYTES);
+        Map<String, LeaderboardRanking> rankings = new LinkedHashMap<>();
+        for (int i = 0; i < rankingCount; i++) {
+            String key = in.readUTF();
+            long totalUsers = in.readLong();
+            int entryCount = checkCount(in.readInt(), in.available(), MIN_ENTRY_BYTES);
+            List<LeaderboardEntry> entries = new ArrayList<>(entryCount);
+            for (int j = 0; j < entryCount; j++) {
+                String userId = in.readUTF();
+                String username = in.readBoolean() ? in.readUTF() : null;
+                entries.add(new LeaderboardEntry(
+                    userId,
+                    username,
+                    in.readLong(),
+                    in.readLong(),
+                    in.readDouble(),
+                    in.readInt()
+                ));
+            }
+            rankings.put(key, new LeaderboardRanking(entries, totalUsers, dictionary));
+        }
+        if (in.available() > 0) {
+            throw new IOException("Unexpected bytes after the last leaderboard snapshot ranking");
+        }
+        return rankings;
+    }
+    
+    /**
+     * A decoded count, if the bytes left can hold that many items of at least minBytes each
+     */
+    private static int checkCount(int count, int bytesLeft, int minBytes) throws IOException {
+        if (count < 0 || (long) count * minBytes > bytesLeft) {
+            throw new IOException("Invalid count " + count + " in leaderboard snapshot");
+        }
+        return count;
+    }
+}
@@ -0,0 +1,257 @@
+package com.mohamed.taskflow.service;
+
+import com.mohamed.taskflow.dto.LeaderboardDeltaBatch;
+import com.mohamed.taskflow.dto.LeaderboardRankDelta;
+import com.mohamed.taskflow.event.LeaderboardRankChangedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Pushes leaderboard rank changes to Server-Sent Events subscribers
+ * 
+ * - Subscribers pick a (period, subject, zone) channel, resolved to its rank index key
+ *   on every flush so rolling windows follow the day boundary
+ * - Rank changes from LeaderboardRankIndex are collected per key and merged per user
+ * - Every BATCH_WINDOW_MILLIS one batch per key is built (one username lookup)
+ *   and fanned out to that key's subscribers
+ * - Flushes run on their own scheduler thread, so long scheduled jobs (cube reload,
+ *   rank index reconcile, rollup rebuild) never hold a batch back
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LeaderboardStreamService {
+    
+    /**
+     * Changes are collected for this long before being pushed
+     */
+    public static final long BATCH_WINDOW_MILLIS = 2000;
+    
+    /**
+     * Open streams are closed after 30 minutes; clients reconnect
+     */
+    public static final long EMITTER_TIMEOUT_MILLIS = 30 * 60 * 1000;
+    
+    public static final String DELTA_EVENT = "rank-delta";
+    
+    private final LeaderboardService leaderboardService;
+    
+    /**
+     * One open stream and the channel it follows
+     */
+    static class Subscription {
+        private final SseEmitter emitter;
+        private final String period;
+        private final String subject;
+        private final String zone;
+        private final boolean anonymize;
+        
+        Subscription(SseEmitter emitter, String period, String subject, String zone, boolean anonymize) {
+            this.emitter = emitter;
+            this.period = period;
+            this.subject = subject;
+            this.zone = zone;
+            this.anonymize = anonymize;
+        }
+    }
+    
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * Pending changes: rank index key -> userId -> merged change since the last flush
+     */
+    private Map<String, Map<String, LeaderboardRankChangedEvent>> pending = new HashMap<>();
+    
+    /**
+     * Ranked user count per key as of its latest pending change
+     */
+    private Map<String, Long> pendingTotals = new HashMap<>();
+    
+    private final ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "leaderboard-stream-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    @PostConstruct
+    public void startFlushing() {
+        flushScheduler.scheduleWithFixedDelay(() -> {
+            // An exception would cancel the schedule
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.warn("Leaderboard stream flush failed", e);
+            }
+        }, BATCH_WINDOW_MILLIS, BATCH_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void shutdownFlushScheduler() {
+        flushScheduler.shutdownNow();
+    }
+    
+    /**
+     * Open a stream for a leaderboard channel
+     * 
+     * @throws IllegalArgumentException if the period or zone is invalid
+     */
+    public SseEmitter subscribe(String period, String subject, String zone, Boolean anonymize) {
+        String resolvedPeriod = period != null ? period.toLowerCase() : "all";
+        // Validates the channel and makes sure its standings exist so changes are tracked
+        leaderboardService.resolveChannel(resolvedPeriod, subject, zone);
+        
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MILLIS);
+        Subscription subscription = new Subscription(
+            emitter, resolvedPeriod, subject, zone, anonymize != null ? anonymize : false);
+        emitter.onCompletion(() -> subscriptions.remove(subscription));
+        emitter.onTimeout(() -> subscriptions.remove(subscription));
+        emitter.onError(e -> subscriptions.remove(subscription));
+        subscriptions.add(subscription);
+        return emitter;
+    }
+    
+    /**
+     * Collect a rank change; several changes of one user in a batch keep the first
+     * previous position and the latest current one
+     */
+    @EventListener
+    public synchronized void onRankChanged(LeaderboardRankChangedEvent event) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        pending.computeIfAbsent(event.getKey(), k -> new HashMap<>())
+            .merge(event.getUserId(), event, (first, latest) -> new LeaderboardRankChangedEvent(
+                latest.getKey(), latest.getUserId(),
+                first.getPreviousRank(), first.getPreviousMinutes(),
+                latest.getRank(), latest.getTotalMinutes(), latest.getSessionCount(), latest.getTotalUsers()));
+        pendingTotals.put(event.getKey(), event.getTotalUsers());
+    }
+    
+    /**
+     * Push the changes collected since the last run to their subscribers
+     */
+    public void flush() {
+        Map<String, Map<String, LeaderboardRankChangedEvent>> batch;
+        Map<String, Long> totals;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            totals = pendingTotals;
+            pending = new HashMap<>();
+            pendingTotals = new HashMap<>();
+        }
+        
+        // Group subscribers by the key their channel resolves to today
+        Map<String, List<Subscription>> subscribersByKey = new HashMap<>();
+        for (Subscription subscription : subscriptions) {
+            try {
+                String key = leaderboardService.resolveChannel(subscription.period, subscription.subject, subscription.zone);
+                subscribersByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(subscription);
+            } catch (RuntimeException e) {
+                log.warn("Could not resolve leaderboard stream channel", e);
+            }
+        }
+        
+        batch.forEach((key, changes) -> {
+            List<Subscription> subscribers = subscribersByKey.get(key);
+            if (subscribers == null) {
+                return;
+            }
+            List<LeaderboardRankDelta> deltas = toDeltas(changes.values());
+            if (deltas.isEmpty()) {
+                return;
+            }
+            long totalUsers = totals.getOrDefault(key, 0L);
+            for (Subscription subscription : subscribers) {
+                LeaderboardDeltaBatch payload = new LeaderboardDeltaBatch(
+                    subscription.period,
+                    subscription.subject,
+                    subscription.anonymize ? anonymize(deltas) : deltas,
+                    totalUsers
+                );
+                send(subscription, payload);
+            }
+        });
+    }
+    
+    /**
+     * Net changes with usernames, ordered by new rank (unranked last); no-op moves dropped
+     */
+    private List<LeaderboardRankDelta> toDeltas(Collection<LeaderboardRankChangedEvent> changes) {
+        List<LeaderboardRankChangedEvent> moved = changes.stream()
+            .filter(change -> change.getPreviousRank() != change.getRank()
+                || change.getPreviousMinutes() != change.getTotalMinutes())
+            .collect(Collectors.toList());
+        if (moved.isEmpty()) {
+            return List.of();
+        }
+        
+        Map<String, String> usernames = leaderboardService.resolveUsernames(
+            moved.stream().map(LeaderboardRankChangedEvent::getUserId).collect(Collectors.toList()));
+        
+        List<LeaderboardRankDelta> deltas = new ArrayList<>(moved.size());
+        for (LeaderboardRankChangedEvent change : moved) {
+            deltas.add(new LeaderboardRankDelta(
+                change.getUserId(),
+                usernames.get(change.getUserId()),
+                change.getPreviousRank(),
+                change.getRank(),
+                change.getPreviousMinutes(),
+                change.getTotalMinutes(),
+                change.getTotalMinutes() - change.getPreviousMinutes(),
+                change.getSessionCount()
+            ));
+        }
+        deltas.sort(Comparator.comparingInt(delta -> delta.getRank() == 0 ? Integer.MAX_VALUE : delta.getRank()));
+        return deltas;
+    }
+    
+    private List<LeaderboardRankDelta> anonymize(List<LeaderboardRankDelta> deltas) {
+        List<LeaderboardRankDelta> anonymized = new ArrayList<>(deltas.size());
+        for (LeaderboardRankDelta delta : deltas) {
+            anonymized.add(new LeaderboardRankDelta(
+                delta.getUserId(),
+                LeaderboardService.anonymizedUsername(delta.getUserId()),
+                delta.getPreviousRank(),
+                delta.getRank(),
+                delta.getPreviousMinutes(),
+                delta.getTotalMinutes(),
+                delta.getMinutesDelta(),
+                delta.getSessionCount()
+            ));
+        }
+        return anonymized;
+    }
+    
+    void send(Subscription subscription, LeaderboardDeltaBatch payload) {
+        try {
+            subscription.emitter.send(SseEmitter.event().name(DELTA_EVENT).data(payload));
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; the emitter callbacks may not fire for a broken connection
+            subscriptions.remove(subscription);
+            subscription.emitter.completeWithError(e);
+        }
+    }
+    
+    /**
+     * Number of open streams
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+}
@@ -0,0 +1,109 @@
+package com.mohamed.taskflow.service;
+
+import com.mohamed.taskflow.util.LogLinearHistogram;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded executor for BCrypt work (login checks, password encoding)
+ * 
+ * BCrypt is deliberately slow; run on request threads, a burst of logins takes every
+ * Tomcat thread and cheap requests starve. Here it runs on a fixed pool with a
+ * bounded queue, and work that does not fit is rejected so the caller can answer 429
+ * 
+ * Queue wait and run time of each task are kept in histograms (microseconds)
+ */
+@Service
+public class PasswordHashingService {
+    
+    private final ThreadPoolExecutor executor;
+    
+    private final LogLinearHistogram waitMicros = new LogLinearHistogram();
+    private final LogLinearHistogram runMicros = new LogLinearHistogram();
+    private final AtomicLong rejected = new AtomicLong();
+    
+    /**
+     * @param threads Hashing threads; 0 for one per available processor
+     * @param queueCapacity Tasks waiting for a thread before new ones are rejected
+     */
+    public PasswordHashingService(
+            @Value("${auth.hashing.threads:0}") int threads,
+            @Value("${auth.hashing.queue-capacity:64}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(
+            poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+            runnable -> {
+                Thread thread = new Thread(runnable, "password-hashing");
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+    
+    /**
+     * Run a task on the hashing pool
+     * 
+     * @throws RejectedExecutionException if every thread is busy and the queue is full
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        long submitted = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                long started = System.nanoTime();
+                try {
+                    return task.get();
+                } finally {
+                    record(started - submitted, System.nanoTime() - started);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw e;
+        }
+    }
+    
+    public int getThreads() {
+        return executor.getMaximumPoolSize();
+    }
+    
+    private synchronized void record(long waitNanos, long runNanos) {
+        waitMicros.add(TimeUnit.NANOSECONDS.toMicros(waitNanos));
+        runMicros.add(TimeUnit.NANOSECONDS.toMicros(runNanos));
+    }
+    
+    /**
+     * Pool size, queue depth, rejections and latency percentiles
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", getThreads());
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("queueCapacity", executor.getQueue().size() + executor.getQueue().remainingCapacity());
+        stats.put("completed", runMicros.count());
+        stats.put("rejected", rejected.get());
+        stats.put("waitP50Micros", waitMicros.valueAtPercentile(50));
+        stats.put("waitP99Micros", waitMicros.valueAtPercentile(99));
+        stats.put("runP50Micros", runMicros.valueAtPercentile(50));
+        stats.put("runP99Micros", runMicros.valueAtPercentile(99));
+        return stats;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
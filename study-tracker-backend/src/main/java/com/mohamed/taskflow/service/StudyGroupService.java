@@ -0,0 +1,131 @@
+package com.mohamed.taskflow.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mohamed.taskflow.exception.ResourceNotFoundException;
+import com.mohamed.taskflow.model.StudyGroup;
+import com.mohamed.taskflow.repository.StudyGroupRepository;
+import com.mohamed.taskflow.repository.UserRepository;
+import com.mohamed.taskflow.util.UserIdDictionary;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Study groups (classes) and their membership bitmaps
+ *
+ * A group's bitmap is a BitSet of its members' UserIdDictionary ids, built from the
+ * member ids; bitmaps are cached per group and replaced locally on every membership
+ * change (other instances pick changes up when their cached copy expires)
+ *
+ * Membership changes are single $addToSet/$pull updates with the access check in the
+ * query, so concurrent adds and removes on a group do not overwrite each other
+ */
+@Service
+@RequiredArgsConstructor
+public class StudyGroupService {
+
+    /**
+     * Cached membership bitmaps are re-read after this long
+     */
+    public static final long MEMBERSHIP_TTL_MILLIS = 60 * 1000;
+
+    private final StudyGroupRepository studyGroupRepository;
+    private final UserRepository userRepository;
+    private final UserIdDictionary userIdDictionary;
+    private final MongoTemplate mongoTemplate;
+
+    private final Cache<String, BitSet> memberships = Caffeine.newBuilder()
+        .maximumSize(10_000)
+        .expireAfterWrite(Duration.ofMillis(MEMBERSHIP_TTL_MILLIS))
+        .build();
+
+    /**
+     * Create a group owned by the user, with the owner as first member
+     */
+    public StudyGroup create(String name, String ownerId) {
+        StudyGroup group = new StudyGroup();
+        group.setName(name.trim());
+        group.setOwnerId(ownerId);
+        group.getMemberIds().add(ownerId);
+        return studyGroupRepository.save(group);
+    }
+
+    public List<StudyGroup> findForMember(String userId) {
+        return studyGroupRepository.findByMemberIdsContaining(userId);
+    }
+
+    /**
+     * Get a group the user belongs to
+     *
+     * @throws ResourceNotFoundException if the group does not exist or the user is not a member
+     */
+    public StudyGroup getForMember(String groupId, String userId) {
+        return studyGroupRepository.findById(groupId)
+            .filter(group -> group.getMemberIds().contains(userId))
+            .orElseThrow(() -> new ResourceNotFoundException("Group not found or access denied"));
+    }
+
+    /**
+     * Add a user to a group (owner only)
+     *
+     * @throws ResourceNotFoundException if the group or user does not exist or the caller is not the owner
+     */
+    public StudyGroup addMember(String groupId, String memberId, String ownerId) {
+        if (!userRepository.existsById(memberId)) {
+            throw new ResourceNotFoundException("User not found");
+        }
+        Criteria criteria = Criteria.where("_id").is(groupId).and("ownerId").is(ownerId);
+        return updateMembership(criteria, new Update().addToSet("memberIds", memberId));
+    }
+
+    /**
+     * Remove a user from a group (owner, or the member leaving); the owner cannot leave
+     *
+     * @throws ResourceNotFoundException if the group does not exist or the caller may not remove the member
+     */
+    public StudyGroup removeMember(String groupId, String memberId, String userId) {
+        // A member may leave unless they own the group; the owner may remove anyone else
+        Criteria criteria = memberId.equals(userId)
+            ? Criteria.where("_id").is(groupId).and("ownerId").ne(memberId)
+            : Criteria.where("_id").is(groupId).and("ownerId").is(userId);
+        return updateMembership(criteria, new Update().pull("memberIds", memberId));
+    }
+
+    /**
+     * Membership bitmap of a group, by UserIdDictionary id (callers must not modify it)
+     */
+    public BitSet getMembers(StudyGroup group) {
+        return memberships.get(group.getId(), id -> bitmapOf(group));
+    }
+
+    /**
+     * Apply a membership update to the group matching the criteria, and cache the bitmap
+     * of the group as updated
+     */
+    private StudyGroup updateMembership(Criteria criteria, Update update) {
+        StudyGroup updated = mongoTemplate.findAndModify(
+            new Query(criteria), update, FindAndModifyOptions.options().returnNew(true), StudyGroup.class);
+        if (updated == null) {
+            throw new ResourceNotFoundException("Group not found or access denied");
+        }
+        memberships.put(updated.getId(), bitmapOf(updated));
+        return updated;
+    }
+
+    private BitSet bitmapOf(StudyGroup group) {
+        BitSet members = new BitSet();
+        for (String memberId : group.getMemberIds()) {
+            members.set(userIdDictionary.encode(memberId));
+        }
+        return members;
+    }
+}
@@ -1,10 +1,13 @@
 package com.mohamed.taskflow.service;
 
+import com.mohamed.taskflow.event.StudyLogChangedEvent;
 import com.mohamed.taskflow.model.StudyLog;
 import com.mohamed.taskflow.repository.StudyLogRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
@@ -14,6 +17,7 @@ import java.util.Optional;
 public class StudyLogService {
     
     private final StudyLogRepository studyLogRepository;
+    private final ApplicationEventPublisher eventPublisher;
     
     // User-specific methods
     public List<StudyLog> findAllByUserId(String userId) {
@@ -27,7 +31,10 @@ public class StudyLogService {
     
     public StudyLog saveForUser(StudyLog studyLog, String userId) {
         studyLog.setUserId(userId);
-        return studyLogRepository.save(studyLog);
+        studyLog.setUpdatedAt(Instant.now());
+        StudyLog saved = studyLogRepository.save(studyLog);
+        eventPublisher.publishEvent(new StudyLogChangedEvent(userId, null, saved));
+        return saved;
     }
     
     public StudyLog updateForUser(String id, StudyLog studyLog, String userId) {
@@ -36,7 +43,10 @@ public class StudyLogService {
                 .map(existingLog -> {
                     studyLog.setId(id);
                     studyLog.setUserId(userId);
-                    return studyLogRepository.save(studyLog);
+                    studyLog.setUpdatedAt(Instant.now());
+                    StudyLog saved = studyLogRepository.save(studyLog);
+                    eventPublisher.publishEvent(new StudyLogChangedEvent(userId, existingLog, saved));
+                    return saved;
                 })
                 .orElseThrow(() -> new RuntimeException("Study log not found or access denied"));
     }
@@ -45,7 +55,10 @@ public class StudyLogService {
         studyLogRepository.findById(id)
                 .filter(log -> log.getUserId().equals(userId))
                 .ifPresentOrElse(
-                        log -> studyLogRepository.deleteById(id),
+                        log -> {
+                            studyLogRepository.deleteById(id);
+                            eventPublisher.publishEvent(new StudyLogChangedEvent(userId, log, null));
+                        },
                         () -> { throw new RuntimeException("Study log not found or access denied"); }
                 );
     }
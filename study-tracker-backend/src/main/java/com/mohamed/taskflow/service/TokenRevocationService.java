@@ -0,0 +1,179 @@
+package com.mohamed.taskflow.service;
+
+import com.mohamed.taskflow.model.TokenRevocation;
+import com.mohamed.taskflow.repository.TokenRevocationRepository;
+import com.mohamed.taskflow.util.CountingBloomFilter;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Revoked JWTs, checked on every authenticated request without a MongoDB read
+ * 
+ * Revocations are written to token_revocations and held in memory on every instance:
+ * counting Bloom filters in front of exact maps. The common case (token not revoked)
+ * is answered by the filter alone; its rare false positives fall through to the maps.
+ * Each instance polls for revocations written by the others every POLL_INTERVAL_MILLIS,
+ * and drops entries (filter counters included) once the tokens they cover have expired.
+ * The poll has its own scheduler thread, so long leaderboard jobs on the shared
+ * scheduler cannot delay a logout or revoke-all reaching the other instances
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TokenRevocationService {
+    
+    public static final long POLL_INTERVAL_MILLIS = 10 * 1000;
+    
+    // Re-read window covering clock skew between instances; applying a revocation twice is harmless
+    private static final long POLL_OVERLAP_MILLIS = 60 * 1000;
+    
+    // 512k one-byte counters per filter, ~1% false positives at 50k revocations
+    private static final int FILTER_COUNTERS = 1 << 19;
+    private static final int FILTER_HASHES = 4;
+    
+    private final TokenRevocationRepository revocationRepository;
+    
+    @Value("${jwt.expiration}")
+    private Long tokenLifetime;
+    
+    private final CountingBloomFilter tokenFilter = new CountingBloomFilter(FILTER_COUNTERS, FILTER_HASHES);
+    private final CountingBloomFilter userFilter = new CountingBloomFilter(FILTER_COUNTERS, FILTER_HASHES);
+    
+    // Revoked token id -> expiry of the token
+    private final Map<String, Instant> revokedTokens = new ConcurrentHashMap<>();
+    
+    // User id -> latest revoke-all of the user
+    private final Map<String, TokenRevocation> revokedUsers = new ConcurrentHashMap<>();
+    
+    private volatile Instant lastPoll = Instant.EPOCH;
+    
+    private final ScheduledExecutorService pollScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "token-revocation-poll");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /**
+     * Whether a token was revoked, on its own or by a revoke-all of its user
+     * 
+     * @param issuedAt iat of the token; JWT times are whole seconds, so a token issued
+     *                 in the same second as a revoke-all counts as revoked
+     */
+    public boolean isRevoked(String tokenId, String userId, Date issuedAt) {
+        if (tokenId != null && tokenFilter.mightContain(tokenId) && revokedTokens.containsKey(tokenId)) {
+            return true;
+        }
+        if (userId != null && userFilter.mightContain(userId)) {
+            TokenRevocation revocation = revokedUsers.get(userId);
+            return revocation != null
+                && (issuedAt == null || issuedAt.getTime() / 1000 <= revocation.getRevokedAt().getEpochSecond());
+        }
+        return false;
+    }
+    
+    /**
+     * Revoke one token, until it expires
+     */
+    public void revokeToken(String tokenId, String userId, Date expiresAt) {
+        Instant expiry = expiresAt != null ? expiresAt.toInstant() : Instant.now().plusMillis(tokenLifetime);
+        TokenRevocation revocation = new TokenRevocation(null, tokenId, userId, Instant.now(), expiry);
+        apply(revocationRepository.save(revocation));
+    }
+    
+    /**
+     * Revoke every token of a user issued up to now
+     */
+    public void revokeAllForUser(String userId) {
+        Instant now = Instant.now();
+        TokenRevocation revocation = new TokenRevocation(null, null, userId, now, now.plusMillis(tokenLifetime));
+        apply(revocationRepository.save(revocation));
+        log.info("Revoked all tokens of user {}", userId);
+    }
+    
+    /**
+     * Load revocations on startup, then poll for those written by other instances
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        poll();
+        pollScheduler.scheduleWithFixedDelay(() -> {
+            // An exception would cancel the schedule
+            try {
+                poll();
+            } catch (RuntimeException e) {
+                log.warn("Token revocation poll failed", e);
+            }
+        }, POLL_INTERVAL_MILLIS, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void shutdownPollScheduler() {
+        pollScheduler.shutdownNow();
+    }
+    
+    /**
+     * Pick up revocations written since the last poll and drop expired ones
+     */
+    public void poll() {
+        Instant now = Instant.now();
+        Instant since = lastPoll.equals(Instant.EPOCH) ? Instant.EPOCH : lastPoll.minusMillis(POLL_OVERLAP_MILLIS);
+        for (TokenRevocation revocation : revocationRepository.findByRevokedAtAfter(since)) {
+            apply(revocation);
+        }
+        lastPoll = now;
+        purgeExpired(now);
+    }
+    
+    synchronized void apply(TokenRevocation revocation) {
+        if (revocation.getExpiresAt() == null || !revocation.getExpiresAt().isAfter(Instant.now())) {
+            return;
+        }
+        if (revocation.getTokenId() != null) {
+            if (revokedTokens.putIfAbsent(revocation.getTokenId(), revocation.getExpiresAt()) == null) {
+                tokenFilter.add(revocation.getTokenId());
+            }
+        } else if (revocation.getUserId() != null) {
+            TokenRevocation previous = revokedUsers.get(revocation.getUserId());
+            if (previous == null) {
+                revokedUsers.put(revocation.getUserId(), revocation);
+                userFilter.add(revocation.getUserId());
+            } else if (revocation.getRevokedAt().isAfter(previous.getRevokedAt())) {
+                revokedUsers.put(revocation.getUserId(), revocation);
+            }
+        }
+    }
+    
+    synchronized void purgeExpired(Instant now) {
+        revokedTokens.entrySet().removeIf(entry -> {
+            boolean expired = !entry.getValue().isAfter(now);
+            if (expired) {
+                tokenFilter.remove(entry.getKey());
+            }
+            return expired;
+        });
+        revokedUsers.entrySet().removeIf(entry -> {
+            boolean expired = !entry.getValue().getExpiresAt().isAfter(now);
+            if (expired) {
+                userFilter.remove(entry.getKey());
+            }
+            return expired;
+        });
+    }
+    
+    public int size() {
+        return revokedTokens.size() + revokedUsers.size();
+    }
+}
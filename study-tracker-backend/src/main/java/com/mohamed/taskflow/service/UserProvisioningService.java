@@ -0,0 +1,289 @@
+package com.mohamed.taskflow.service;
+
+import com.mohamed.taskflow.dto.BulkUserResponse;
+import com.mohamed.taskflow.dto.BulkUserResult;
+import com.mohamed.taskflow.dto.RegisterRequest;
+import com.mohamed.taskflow.model.User;
+import com.mongodb.bulk.BulkWriteError;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk creation of users (e.g. a whole class or school at once)
+ * 
+ * Unlike register, rows are not pre-checked for taken usernames or emails:
+ * passwords are hashed in parallel, all valid rows go to MongoDB in one unordered
+ * insert, and the unique indexes on username and email reject duplicates, which are
+ * reported per row from the bulk write errors
+ * 
+ * Bulk hashing has its own pool, kept below the processor count, rather than
+ * PasswordHashingService's: a 5000-row request would otherwise hold every login
+ * thread for its whole run and logins would get 429 until it finished
+ */
+@Service
+@Slf4j
+public class UserProvisioningService {
+    
+    /**
+     * Maximum rows of one bulk request
+     */
+    public static final int MAX_BULK_USERS = 5000;
+    
+    private static final int DUPLICATE_KEY = 11000;
+    
+    private static final List<String> CSV_COLUMNS = List.of("username", "email", "password");
+    
+    private final MongoTemplate mongoTemplate;
+    private final PasswordEncoder passwordEncoder;
+    private final Validator validator;
+    private final ThreadPoolExecutor hashingExecutor;
+    
+    /**
+     * @param hashingThreads Bulk hashing threads; 0 for half the available processors.
+     *                       Capped one below the processor count in any case
+     */
+    public UserProvisioningService(
+            MongoTemplate mongoTemplate,
+            PasswordEncoder passwordEncoder,
+            Validator validator,
+            @Value("${auth.provisioning.hashing-threads:0}") int hashingThreads) {
+        this.mongoTemplate = mongoTemplate;
+        this.passwordEncoder = passwordEncoder;
+        this.validator = validator;
+        int poolSize = bulkHashingThreads(hashingThreads, Runtime.getRuntime().availableProcessors());
+        // Room for one more request's tasks behind the running one; further requests are rejected
+        this.hashingExecutor = new ThreadPoolExecutor(
+            poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(poolSize),
+            runnable -> {
+                Thread thread = new Thread(runnable, "bulk-password-hashing");
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+    
+    /**
+     * Bulk hashing pool size: the configured threads (0 = half the processors),
+     * at least 1 and below the processor count so logins keep a core
+     */
+    static int bulkHashingThreads(int configured, int processors) {
+        int threads = configured > 0 ? configured : processors / 2;
+        return Math.max(1, Math.min(threads, processors - 1));
+    }
+    
+    /**
+     * Create the users of a CSV document with a username,email,password header (any column order)
+     * 
+     * @throws IllegalArgumentException if the CSV is malformed, or has no rows or too many
+     * @throws RejectedExecutionException if other bulk requests already fill the hashing pool
+     */
+    public BulkUserResponse createUsersFromCsv(String csv) {
+        return createUsers(parseCsv(csv));
+    }
+    
+    /**
+     * Create users, reporting the outcome of each row
+     * 
+     * @throws IllegalArgumentException if there are no rows or too many
+     * @throws RejectedExecutionException if other bulk requests already fill the hashing pool
+     */
+    public BulkUserResponse createUsers(List<RegisterRequest> rows) {
+        if (rows == null || rows.isEmpty() || rows.size() > MAX_BULK_USERS) {
+            throw new IllegalArgumentException("A bulk request holds 1 to " + MAX_BULK_USERS + " users");
+        }
+        BulkUserResult[] results = new BulkUserResult[rows.size()];
+        
+        // Rows passing the RegisterRequest constraints, by position in the insert
+        List<Integer> valid = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            RegisterRequest row = rows.get(i) != null ? rows.get(i) : new RegisterRequest();
+            Set<ConstraintViolation<RegisterRequest>> violations = validator.validate(row);
+            if (violations.isEmpty()) {
+                valid.add(i);
+            } else {
+                String error = violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+                results[i] = new BulkUserResult(i + 1, row.getUsername(), null, BulkUserResult.INVALID, error);
+            }
+        }
+        
+        String[] hashes = hashPasswords(rows, valid);
+        List<User> users = new ArrayList<>(valid.size());
+        for (int j = 0; j < valid.size(); j++) {
+            users.add(newUser(rows.get(valid.get(j)), hashes[j]));
+        }
+        
+        if (!users.isEmpty()) {
+            try {
+                mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class).insert(users).execute();
+            } catch (BulkOperationException e) {
+                for (BulkWriteError error : e.getErrors()) {
+                    int i = valid.get(error.getIndex());
+                    results[i] = failure(i, rows.get(i), error);
+                }
+            }
+        }
+        
+        int created = 0;
+        for (int j = 0; j < valid.size(); j++) {
+            int i = valid.get(j);
+            if (results[i] == null) {
+                results[i] = new BulkUserResult(
+                    i + 1, rows.get(i).getUsername(), users.get(j).getId(), BulkUserResult.CREATED, null);
+                created++;
+            }
+        }
+        log.info("Bulk user request: {} of {} users created", created, rows.size());
+        return new BulkUserResponse(created, rows.size() - created, Arrays.asList(results));
+    }
+    
+    /**
+     * BCrypt the passwords of the valid rows, split into one task per bulk hashing thread
+     */
+    private String[] hashPasswords(List<RegisterRequest> rows, List<Integer> valid) {
+        String[] hashes = new String[valid.size()];
+        int tasks = Math.min(hashingExecutor.getMaximumPoolSize(), valid.size());
+        List<CompletableFuture<Void>> futures = new ArrayList<>(tasks);
+        try {
+            for (int t = 0; t < tasks; t++) {
+                int first = t;
+                futures.add(CompletableFuture.runAsync(() -> {
+                    for (int j = first; j < hashes.length; j += tasks) {
+                        hashes[j] = passwordEncoder.encode(rows.get(valid.get(j)).getPassword());
+                    }
+                }, hashingExecutor));
+            }
+        } catch (RejectedExecutionException e) {
+            // Tasks already queued for this request are dropped before they start
+            futures.forEach(future -> future.cancel(false));
+            throw e;
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+        }
+        return hashes;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        hashingExecutor.shutdownNow();
+    }
+    
+    /**
+     * Same defaults as register; the id is assigned here so it can be reported per row
+     */
+    private User newUser(RegisterRequest row, String passwordHash) {
+        User user = new User();
+        user.setId(new ObjectId().toHexString());
+        user.setUsername(row.getUsername());
+        user.setEmail(row.getEmail());
+        user.setPassword(passwordHash);
+        user.setRoles(new HashSet<>(Set.of("USER")));
+        user.setCreatedAt(LocalDateTime.now());
+        user.setEnabled(true);
+        return user;
+    }
+    
+    private BulkUserResult failure(int i, RegisterRequest row, BulkWriteError error) {
+        if (error.getCode() != DUPLICATE_KEY) {
+            return new BulkUserResult(i + 1, row.getUsername(), null, BulkUserResult.FAILED, error.getMessage());
+        }
+        // E11000 messages name the violated index: "... index: email dup key ..." or "... index: username ..."
+        String message = error.getMessage() != null && error.getMessage().contains("index: email")
+            ? "Email is already in use"
+            : "Username is already taken";
+        return new BulkUserResult(i + 1, row.getUsername(), null, BulkUserResult.DUPLICATE, message);
+    }
+    
+    /**
+     * Rows of a CSV document; fields may be double-quoted, with "" for a quote inside them
+     */
+    static List<RegisterRequest> parseCsv(String csv) {
+        if (csv == null || csv.isBlank()) {
+            throw new IllegalArgumentException("CSV is empty");
+        }
+        // Spreadsheet exports may start with a byte order mark
+        String[] lines = csv.replaceFirst("^\uFEFF", "").split("\r?\n");
+        List<String> header = parseCsvLine(lines[0]).stream()
+            .map(column -> column.trim().toLowerCase(Locale.ROOT))
+            .collect(Collectors.toList());
+        int[] positions = new int[CSV_COLUMNS.size()];
+        for (int c = 0; c < CSV_COLUMNS.size(); c++) {
+            positions[c] = header.indexOf(CSV_COLUMNS.get(c));
+            if (positions[c] < 0) {
+                throw new IllegalArgumentException("CSV header must name the columns " + String.join(",", CSV_COLUMNS));
+            }
+        }
+        
+        List<RegisterRequest> rows = new ArrayList<>();
+        for (int l = 1; l < lines.length; l++) {
+            if (lines[l].isBlank()) {
+                continue;
+            }
+            List<String> fields = parseCsvLine(lines[l]);
+            if (fields.size() != header.size()) {
+                throw new IllegalArgumentException("CSV line " + (l + 1) + " has " + fields.size()
+                    + " fields, expected " + header.size());
+            }
+            rows.add(new RegisterRequest(
+                fields.get(positions[0]).trim(), fields.get(positions[1]).trim(), fields.get(positions[2])));
+        }
+        return rows;
+    }
+    
+    private static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (ch == '"') {
+                    quoted = false;
+                } else {
+                    field.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(ch);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quote in CSV line: " + line);
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
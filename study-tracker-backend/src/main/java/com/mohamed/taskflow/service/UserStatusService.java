@@ -0,0 +1,70 @@
+package com.mohamed.taskflow.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mohamed.taskflow.dto.UserStatus;
+import com.mohamed.taskflow.model.User;
+import com.mohamed.taskflow.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Short-lived cache of whether a user may still authenticate (exists and is enabled)
+ * and of their current roles
+ * 
+ * JWT requests are authenticated from the token's claims; this check is what keeps
+ * a disabled or deleted user's tokens from working, and a demoted user's tokens from
+ * keeping their old roles, until they expire.
+ * A user changed on another instance is picked up within STATUS_TTL_MILLIS
+ */
+@Service
+@RequiredArgsConstructor
+public class UserStatusService extends AbstractMongoEventListener<User> {
+    
+    public static final long MAX_STATUSES = 100_000;
+    
+    public static final long STATUS_TTL_MILLIS = 30 * 1000;
+    
+    private final UserRepository userRepository;
+    
+    private final Cache<String, Optional<UserStatus>> active = Caffeine.newBuilder()
+        .maximumSize(MAX_STATUSES)
+        .expireAfterWrite(Duration.ofMillis(STATUS_TTL_MILLIS))
+        .build();
+    
+    /**
+     * Status of the user if they exist and are enabled, loaded at most once per STATUS_TTL_MILLIS
+     */
+    public Optional<UserStatus> findActive(String userId) {
+        if (userId == null) {
+            return Optional.empty();
+        }
+        return active.get(userId, id -> userRepository.findStatusById(id)
+            .filter(UserStatus::isEnabled));
+    }
+    
+    public void evict(String userId) {
+        active.invalidate(userId);
+    }
+    
+    @Override
+    public void onAfterSave(AfterSaveEvent<User> event) {
+        if (event.getSource().getId() != null) {
+            evict(event.getSource().getId());
+        }
+    }
+    
+    /**
+     * Deletes carry only their query, so every status is dropped
+     */
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<User> event) {
+        active.invalidateAll();
+    }
+}
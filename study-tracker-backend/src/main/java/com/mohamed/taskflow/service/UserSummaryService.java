@@ -0,0 +1,108 @@
+package com.mohamed.taskflow.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.mohamed.taskflow.dto.UserSummary;
+import com.mohamed.taskflow.model.User;
+import com.mohamed.taskflow.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Cached id -> username lookups for leaderboard enrichment
+ * 
+ * - Loads the UserSummary projection (id, username), never full User documents
+ * - Users missing from the collection are cached too, so repeated lookups of
+ *   deleted users do not reach MongoDB either
+ * - Entries are evicted when a user is saved or deleted through Spring Data on this
+ *   instance; changes made elsewhere are picked up when the entry expires
+ */
+@Service
+@RequiredArgsConstructor
+public class UserSummaryService extends AbstractMongoEventListener<User> {
+    
+    public static final long MAX_SUMMARIES = 100_000;
+    
+    public static final long SUMMARY_TTL_MILLIS = 60 * 60 * 1000;
+    
+    // Cached for ids without a user
+    private static final UserSummary MISSING = new UserSummary(null, null);
+    
+    private final UserRepository userRepository;
+    
+    private final Cache<String, UserSummary> summaries = Caffeine.newBuilder()
+        .maximumSize(MAX_SUMMARIES)
+        .expireAfterWrite(Duration.ofMillis(SUMMARY_TTL_MILLIS))
+        .recordStats()
+        .build();
+    
+    /**
+     * Summaries of the given users, loading the uncached ones in one query
+     * 
+     * @return summaries by user id; ids without a user are left out
+     */
+    public Map<String, UserSummary> findAll(Collection<String> userIds) {
+        Set<String> ids = new HashSet<>();
+        for (String userId : userIds) {
+            if (userId != null && !userId.isEmpty()) {
+                ids.add(userId);
+            }
+        }
+        Map<String, UserSummary> found = new HashMap<>();
+        summaries.getAll(ids, this::load).forEach((userId, summary) -> {
+            if (summary != MISSING) {
+                found.put(userId, summary);
+            }
+        });
+        return found;
+    }
+    
+    private Map<String, UserSummary> load(Set<? extends String> userIds) {
+        Map<String, UserSummary> loaded = new HashMap<>();
+        for (UserSummary summary : userRepository.findSummariesByIdIn(new ArrayList<>(userIds))) {
+            loaded.put(summary.getId(), summary);
+        }
+        for (String userId : userIds) {
+            loaded.putIfAbsent(userId, MISSING);
+        }
+        return loaded;
+    }
+    
+    public void evict(String userId) {
+        summaries.invalidate(userId);
+    }
+    
+    @Override
+    public void onAfterSave(AfterSaveEvent<User> event) {
+        if (event.getSource().getId() != null) {
+            evict(event.getSource().getId());
+        }
+    }
+    
+    /**
+     * Deletes carry only their query, so every summary is dropped
+     */
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<User> event) {
+        summaries.invalidateAll();
+    }
+    
+    /**
+     * Size and hit rate of the summary cache
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = summaries.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", summaries.estimatedSize());
+        result.put("hitRate", stats.hitRate());
+        result.put("loadCount", stats.loadCount());
+        return result;
+    }
+}
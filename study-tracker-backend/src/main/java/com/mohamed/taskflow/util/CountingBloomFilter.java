@@ -0,0 +1,96 @@
+package com.mohamed.taskflow.util;
+
+/**
+ * Counting Bloom filter over strings
+ * 
+ * mightContain never misses a key that was added and not removed; it answers true
+ * for other keys at a small false-positive rate, so callers confirm hits against an
+ * exact set. Counters instead of bits let keys be removed again; a counter that
+ * reaches 255 sticks there (it can no longer be decremented safely)
+ * 
+ * Not thread-safe for writers; callers synchronize add and remove. mightContain may
+ * run concurrently with them and then answers for the state before or after the write
+ */
+public class CountingBloomFilter {
+    
+    private static final int MAX_COUNT = 0xFF;
+    
+    private final byte[] counters;
+    private final int mask;
+    private final int hashes;
+    
+    /**
+     * @param counters Number of counters, rounded up to a power of two
+     * @param hashes Number of counters set per key
+     */
+    public CountingBloomFilter(int counters, int hashes) {
+        if (counters < 1 || hashes < 1) {
+            throw new IllegalArgumentException("counters and hashes must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(1, counters - 1)) << 1;
+        this.counters = new byte[size];
+        this.mask = size - 1;
+        this.hashes = hashes;
+    }
+    
+    public void add(String key) {
+        long hash = hash64(key);
+        for (int i = 0; i < hashes; i++) {
+            int index = index(hash, i);
+            int count = counters[index] & MAX_COUNT;
+            if (count < MAX_COUNT) {
+                counters[index] = (byte) (count + 1);
+            }
+        }
+    }
+    
+    /**
+     * Remove a key previously added; removing a key that was not added corrupts the filter
+     */
+    public void remove(String key) {
+        long hash = hash64(key);
+        for (int i = 0; i < hashes; i++) {
+            int index = index(hash, i);
+            int count = counters[index] & MAX_COUNT;
+            if (count > 0 && count < MAX_COUNT) {
+                counters[index] = (byte) (count - 1);
+            }
+        }
+    }
+    
+    public boolean mightContain(String key) {
+        long hash = hash64(key);
+        for (int i = 0; i < hashes; i++) {
+            if (counters[index(hash, i)] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Counter of the i-th hash (double hashing: h1 + i * h2)
+     */
+    private int index(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return (h1 + i * h2) & mask;
+    }
+    
+    /**
+     * FNV-1a over the chars, then a murmur3 finalizer to spread the bits
+     */
+    static long hash64(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
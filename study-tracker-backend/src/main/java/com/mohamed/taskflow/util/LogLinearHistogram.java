@@ -0,0 +1,139 @@
+package com.mohamed.taskflow.util;
+
+import java.util.Arrays;
+
+/**
+ * Log-linear histogram of non-negative values (HdrHistogram-style buckets)
+ * Values below 16 get one bucket each; above that every power of two is split into
+ * 8 buckets, so a bucket is never wider than 1/8 of its lower bound
+ * 
+ * Counts are added and removed incrementally, histograms merge by adding counts,
+ * and percentiles walk the fixed set of buckets: cost does not grow with the number of values
+ * 
+ * Not thread-safe; callers synchronize
+ */
+public class LogLinearHistogram {
+    
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    
+    // Values below this have a bucket of their own
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+    private static final int LINEAR_EXPONENT = SUB_BUCKET_BITS + 1;
+    
+    /**
+     * Buckets needed to cover every positive long
+     */
+    public static final int BUCKETS = LINEAR_LIMIT + (Long.SIZE - 1 - LINEAR_EXPONENT) * SUB_BUCKETS;
+    
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    
+    public long count() {
+        return total;
+    }
+    
+    public void add(long value) {
+        counts[bucketOf(value)]++;
+        total++;
+    }
+    
+    public void remove(long value) {
+        counts[bucketOf(value)]--;
+        total--;
+    }
+    
+    public void clear() {
+        Arrays.fill(counts, 0);
+        total = 0;
+    }
+    
+    /**
+     * Add every count of another histogram to this one
+     */
+    public void merge(LogLinearHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+    }
+    
+    public LogLinearHistogram copy() {
+        LogLinearHistogram copy = new LogLinearHistogram();
+        copy.merge(this);
+        return copy;
+    }
+    
+    /**
+     * Estimated value at a percentile (0-100): middle of the bucket holding it, 0 when empty
+     */
+    public long valueAtPercentile(double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return lowerBound(i) + (upperBound(i) - lowerBound(i) - 1) / 2;
+            }
+        }
+        return lowerBound(BUCKETS - 1);
+    }
+    
+    /**
+     * Percentage of values below a value, counting half of its own bucket (0 when empty)
+     */
+    public double percentileOf(long value) {
+        if (total == 0) {
+            return 0;
+        }
+        int bucket = bucketOf(value);
+        long below = 0;
+        for (int i = 0; i < bucket; i++) {
+            below += counts[i];
+        }
+        return 100.0 * (below + counts[bucket] / 2.0) / total;
+    }
+    
+    public long countAt(int bucket) {
+        return counts[bucket];
+    }
+    
+    /**
+     * Smallest value of a bucket
+     */
+    public static long lowerBound(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int exponent = LINEAR_EXPONENT + (bucket - LINEAR_LIMIT) / SUB_BUCKETS;
+        long subBucket = SUB_BUCKETS + (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+        return subBucket << (exponent - SUB_BUCKET_BITS);
+    }
+    
+    /**
+     * Smallest value of the next bucket (exclusive bound; Long.MAX_VALUE for the last one)
+     */
+    public static long upperBound(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket + 1;
+        }
+        int exponent = LINEAR_EXPONENT + (bucket - LINEAR_LIMIT) / SUB_BUCKETS;
+        long upper = lowerBound(bucket) + (1L << (exponent - SUB_BUCKET_BITS));
+        return upper > 0 ? upper : Long.MAX_VALUE;
+    }
+    
+    /**
+     * Bucket of a value; negative values count as 0
+     */
+    static int bucketOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) Math.max(0, value);
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - LINEAR_EXPONENT) * SUB_BUCKETS + subBucket;
+    }
+}
@@ -0,0 +1,181 @@
+package com.mohamed.taskflow.util;
+
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sorted set with O(log n) rank and positional lookup (randomized treap)
+ * Each node keeps the size of its subtree, so the number of elements before
+ * a value and the element at an index are found in one descent
+ * 
+ * Not thread-safe; callers synchronize
+ */
+public class OrderStatisticTree<T> {
+    
+    private static final class Node<T> {
+        private final T value;
+        private final int priority = ThreadLocalRandom.current().nextInt();
+        private Node<T> left;
+        private Node<T> right;
+        private int size = 1;
+        
+        private Node(T value) {
+            this.value = value;
+        }
+    }
+    
+    private final Comparator<? super T> comparator;
+    private Node<T> root;
+    
+    public OrderStatisticTree(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+    
+    public int size() {
+        return size(root);
+    }
+    
+    /**
+     * Insert a value; returns false if an equal value is already present
+     */
+    public boolean add(T value) {
+        if (contains(value)) {
+            return false;
+        }
+        Node<T>[] parts = split(root, value);
+        root = merge(merge(parts[0], new Node<>(value)), parts[1]);
+        return true;
+    }
+    
+    /**
+     * Remove a value; returns false if it was not present
+     */
+    public boolean remove(T value) {
+        int before = size();
+        root = remove(root, value);
+        return size() != before;
+    }
+    
+    public boolean contains(T value) {
+        Node<T> node = root;
+        while (node != null) {
+            int cmp = comparator.compare(value, node.value);
+            if (cmp == 0) {
+                return true;
+            }
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return false;
+    }
+    
+    /**
+     * Number of elements ordered strictly before the value (0-based index if present)
+     */
+    public int indexOf(T value) {
+        int index = 0;
+        Node<T> node = root;
+        while (node != null) {
+            if (comparator.compare(value, node.value) <= 0) {
+                node = node.left;
+            } else {
+                index += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return index;
+    }
+    
+    /**
+     * Element at a 0-based position in sort order
+     * 
+     * @throws IndexOutOfBoundsException if index is outside [0, size)
+     */
+    public T get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size());
+        }
+        Node<T> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.value;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+    
+    public void clear() {
+        root = null;
+    }
+    
+    private Node<T> remove(Node<T> node, T value) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = comparator.compare(value, node.value);
+        if (cmp == 0) {
+            return merge(node.left, node.right);
+        }
+        if (cmp < 0) {
+            node.left = remove(node.left, value);
+        } else {
+            node.right = remove(node.right, value);
+        }
+        update(node);
+        return node;
+    }
+    
+    /**
+     * Split into values ordered before the key and values at or after it
+     */
+    @SuppressWarnings("unchecked")
+    private Node<T>[] split(Node<T> node, T key) {
+        if (node == null) {
+            return new Node[] {null, null};
+        }
+        if (comparator.compare(node.value, key) < 0) {
+            Node<T>[] parts = split(node.right, key);
+            node.right = parts[0];
+            update(node);
+            parts[0] = node;
+            return parts;
+        }
+        Node<T>[] parts = split(node.left, key);
+        node.left = parts[1];
+        update(node);
+        parts[1] = node;
+        return parts;
+    }
+    
+    /**
+     * Join two treaps where every value of the left one orders before the right one
+     */
+    private Node<T> merge(Node<T> left, Node<T> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+    
+    private void update(Node<T> node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+    
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+}
@@ -0,0 +1,81 @@
+package com.mohamed.taskflow.util;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary between user ids and dense ints (0, 1, 2, ...), one per application
+ * 
+ * Leaderboard structures store the int and decode it when a response is built,
+ * so each 24-character ObjectId string is held once however many cached rankings,
+ * standings and cube cells refer to the user. Group membership bitmaps and the group
+ * totals arrays are indexed by the same ids
+ * 
+ * Ids are assigned on first use and never reused, so they are only meaningful inside
+ * this instance and must not be persisted. Structures scanned per request (the cube)
+ * keep their own dense index rather than sizing arrays by the dictionary
+ */
+@Component
+public class UserIdDictionary {
+    
+    /**
+     * Id of a null user id
+     */
+    public static final int NONE = -1;
+    
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] userIds = new String[1024];
+    private int size;
+    
+    /**
+     * Id of a user id, assigning the next one on first use
+     */
+    public int encode(String userId) {
+        if (userId == null) {
+            return NONE;
+        }
+        Integer id = ids.get(userId);
+        return id != null ? id : assign(userId);
+    }
+    
+    /**
+     * User id of an id returned by encode
+     */
+    public String decode(int id) {
+        String[] current = userIds;
+        return id < 0 || id >= current.length ? null : current[id];
+    }
+    
+    /**
+     * The dictionary's instance of a user id, shared by every structure holding it
+     */
+    public String canonical(String userId) {
+        return decode(encode(userId));
+    }
+    
+    /**
+     * Number of ids assigned; every id is below it
+     */
+    public synchronized int size() {
+        return size;
+    }
+    
+    private synchronized int assign(String userId) {
+        Integer existing = ids.get(userId);
+        if (existing != null) {
+            return existing;
+        }
+        String[] current = userIds;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[size] = userId;
+        // Published before the id can be read from the map
+        userIds = current;
+        ids.put(userId, size);
+        return size++;
+    }
+}
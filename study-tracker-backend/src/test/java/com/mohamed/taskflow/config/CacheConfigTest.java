@@ -0,0 +1,92 @@
+package com.mohamed.taskflow.config;
+
+import com.mohamed.taskflow.dto.LeaderboardRanking;
+import com.mohamed.taskflow.dto.LeaderboardWindow;
+import com.mohamed.taskflow.util.UserIdDictionary;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CacheConfig background refresh and snapshot restore
+ */
+class CacheConfigTest {
+    
+    private final CacheConfig cacheConfig = new CacheConfig();
+    private final UserIdDictionary dictionary = new UserIdDictionary();
+    
+    @Test
+    void testRefreshHotEntries_ServesOldValueUntilRefreshed() throws Exception {
+        // Arrange - a loader that returns a new ranking on every call
+        AtomicInteger loads = new AtomicInteger();
+        Function<String, LeaderboardRanking> loader = key ->
+            new LeaderboardRanking(new ArrayList<>(), loads.incrementAndGet(), dictionary);
+        String key = CacheConfig.generateCacheKey(LeaderboardWindow.of("week", LocalDate.now()), null);
+        
+        LeaderboardRanking original = cacheConfig.get(key, loader);
+        for (int i = 0; i < CacheConfig.HOT_ACCESS_THRESHOLD; i++) {
+            assertSame(original, cacheConfig.get(key, loader));
+        }
+        
+        // Act - scheduler runs as the hot entry nears expiry
+        cacheConfig.refreshHotEntries(System.currentTimeMillis() + CacheConfig.CACHE_TTL_MILLIS);
+        
+        // Assert - recomputed in the background and swapped in without a miss
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Long.valueOf(1L).equals(cacheConfig.getCacheStats().get("backgroundRefreshCount"))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        LeaderboardRanking refreshed = cacheConfig.getIfPresent(key);
+        assertNotSame(original, refreshed);
+        assertEquals(2L, refreshed.getTotalUsers());
+        assertEquals(1L, cacheConfig.getCacheStats().get("backgroundRefreshCount"));
+        assertEquals(1L, cacheConfig.getCacheStats().get("missCount"));
+    }
+    
+    @Test
+    void testRefreshHotEntries_SkipsColdEntries() {
+        // Arrange - loaded once, never read again
+        AtomicInteger loads = new AtomicInteger();
+        String key = CacheConfig.generateCacheKey(LeaderboardWindow.of("week", LocalDate.now()), null);
+        cacheConfig.get(key, k -> {
+            loads.incrementAndGet();
+            return new LeaderboardRanking(new ArrayList<>(), 0L, dictionary);
+        });
+        
+        // Act
+        cacheConfig.refreshHotEntries(System.currentTimeMillis() + CacheConfig.CACHE_TTL_MILLIS);
+        
+        // Assert
+        assertEquals(1, loads.get());
+        assertEquals(0L, cacheConfig.getCacheStats().get("backgroundRefreshCount"));
+    }
+    
+    @Test
+    void testRestore_ServesSnapshotUntilRefreshed() throws Exception {
+        // Arrange
+        LeaderboardRanking restored = new LeaderboardRanking(new ArrayList<>(), 1L, dictionary);
+        String key = CacheConfig.generateCacheKey(LeaderboardWindow.of("all", LocalDate.now()), null);
+        
+        // Act - restore, then read right away with a loader that must not be used
+        assertTrue(cacheConfig.restore(key, restored, k -> new LeaderboardRanking(new ArrayList<>(), 2L, dictionary)));
+        LeaderboardRanking served = cacheConfig.get(key, k -> fail("restored key should not miss"));
+        
+        // Assert - snapshot value is served, then replaced by the background refresh
+        assertTrue(served == restored || served.getTotalUsers() == 2L);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Long.valueOf(1L).equals(cacheConfig.getCacheStats().get("backgroundRefreshCount"))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2L, cacheConfig.getIfPresent(key).getTotalUsers());
+        assertEquals(1L, cacheConfig.getCacheStats().get("restoredFromSnapshot"));
+        assertFalse(cacheConfig.restore(key, restored, k -> restored));
+        assertEquals(0L, cacheConfig.getCacheStats().get("missCount"));
+    }
+}
@@ -0,0 +1,55 @@
+package com.mohamed.taskflow.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for LeaderboardWindow period resolution
+ */
+class LeaderboardWindowTest {
+    
+    // A Wednesday
+    private final LocalDate today = LocalDate.of(2025, 3, 12);
+    
+    @Test
+    void testOf_AlignsPeriodsToDayBoundaries() {
+        assertWindow("2025-03-06", "2025-03-13", LeaderboardWindow.of("week", today));
+        assertWindow("2025-02-13", "2025-03-13", LeaderboardWindow.of("month", today));
+        assertWindow("2025-03-10", "2025-03-17", LeaderboardWindow.of("this-week", today));
+        assertWindow("2025-03-01", "2025-04-01", LeaderboardWindow.of("this-month", today));
+        
+        LeaderboardWindow all = LeaderboardWindow.of("all", today);
+        assertNull(all.getStart());
+        assertTrue(all.contains(LocalDate.of(1999, 1, 1)));
+    }
+    
+    @Test
+    void testContains_StartInclusiveEndExclusive() {
+        LeaderboardWindow window = LeaderboardWindow.of("this-week", today);
+        
+        assertTrue(window.contains(LocalDate.of(2025, 3, 10)));
+        assertTrue(window.contains(LocalDate.of(2025, 3, 16)));
+        assertFalse(window.contains(LocalDate.of(2025, 3, 9)));
+        assertFalse(window.contains(LocalDate.of(2025, 3, 17)));
+    }
+    
+    @Test
+    void testKey_RoundTrips() {
+        LeaderboardWindow window = LeaderboardWindow.of("month", today);
+        
+        LeaderboardWindow parsed = LeaderboardWindow.fromKey(window.key());
+        
+        assertEquals(window.getStart(), parsed.getStart());
+        assertEquals(window.getEnd(), parsed.getEnd());
+        assertEquals("all", LeaderboardWindow.of("all", today).key());
+        assertThrows(IllegalArgumentException.class, () -> LeaderboardWindow.of("year", today));
+    }
+    
+    private void assertWindow(String start, String end, LeaderboardWindow window) {
+        assertEquals(LocalDate.parse(start), window.getStart());
+        assertEquals(LocalDate.parse(end), window.getEnd());
+    }
+}
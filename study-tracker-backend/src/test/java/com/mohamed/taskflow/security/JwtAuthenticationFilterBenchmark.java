@@ -0,0 +1,113 @@
+package com.mohamed.taskflow.security;
+
+import com.mohamed.taskflow.dto.UserStatus;
+import com.mohamed.taskflow.model.User;
+import com.mohamed.taskflow.repository.TokenRevocationRepository;
+import com.mohamed.taskflow.service.TokenRevocationService;
+import com.mohamed.taskflow.service.UserStatusService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Per-request cost of JWT verification in the filter: the previous pipeline
+ * (key decoded and parser built per call, four parses per request) against the
+ * single cached verification
+ * 
+ * Not picked up by a plain mvn test; run with:
+ * 
+ *   mvn test -Dtest=JwtAuthenticationFilterBenchmark
+ * 
+ * Optional: -Dbenchmark.iterations (200000)
+ */
+class JwtAuthenticationFilterBenchmark {
+    
+    private static final String SECRET =
+        "YXNkZmFzZGZhc2RmYXNkZmFzZGZhc2RmYXNkZmFzZGZhc2RmYXNkZmFzZGZhc2RmYXNkZmFzZGZhc2RmYXNkZmFzZGY=";
+    
+    // Defeats dead-code elimination of the measured calls
+    private long sink;
+    
+    @Test
+    void compareVerificationPipelines() throws Exception {
+        int iterations = Integer.getInteger("benchmark.iterations", 200_000);
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 60 * 60 * 1000L);
+        User user = new User();
+        user.setId("user1");
+        user.setUsername("alice");
+        user.setRoles(Set.of("USER"));
+        String token = jwtUtil.generateToken(user);
+        
+        UserStatusService userStatusService = mock(UserStatusService.class);
+        when(userStatusService.findActive("user1")).thenReturn(Optional.of(new UserStatus("user1", true, Set.of("USER"))));
+        TokenRevocationService revocationService = new TokenRevocationService(mock(TokenRevocationRepository.class));
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(
+            jwtUtil, mock(CustomUserDetailsService.class), userStatusService, revocationService);
+        Claims claims = jwtUtil.verify(token);
+        String tokenId = claims.getId();
+        Date issuedAt = claims.getIssuedAt();
+        
+        report("before: 4 parses, key+parser per call", iterations, () -> previousPipeline(token));
+        report("after: 1 parse, cache bypassed", iterations, () -> sink += jwtUtil.parse(token).size());
+        report("after: cached verification", iterations, () -> sink += jwtUtil.verify(token).size());
+        report("revocation check, not revoked", iterations,
+            () -> sink += revocationService.isRevoked(tokenId, "user1", issuedAt) ? 1 : 0);
+        report("after: full filter, cached", iterations, () -> {
+            SecurityContextHolder.clearContext();
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/study-logs");
+            request.addHeader("Authorization", "Bearer " + token);
+            filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+            sink += SecurityContextHolder.getContext().getAuthentication().hashCode();
+        });
+        SecurityContextHolder.clearContext();
+        
+        assertEquals(jwtUtil.parse(token).getSubject(), jwtUtil.verify(token).getSubject());
+    }
+    
+    /**
+     * The verification the filter did per request before: extractUsername twice, then
+     * validateToken's extractUsername and extractExpiration, each decoding the key and building a parser
+     */
+    private void previousPipeline(String token) {
+        for (int i = 0; i < 4; i++) {
+            Claims claims = Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET)))
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+            sink += claims.getExpiration().after(new Date()) ? claims.getSubject().length() : 0;
+        }
+    }
+    
+    private void report(String name, int iterations, Step step) throws Exception {
+        // Warm-up, so JIT compilation is not measured
+        for (int i = 0; i < Math.max(1, iterations / 10); i++) {
+            step.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            step.run();
+        }
+        double nanosPerOp = (System.nanoTime() - start) / (double) iterations;
+        System.out.printf("%-42s %10.0f ns/request%n", name, nanosPerOp);
+    }
+    
+    @FunctionalInterface
+    private interface Step {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,179 @@
+package com.mohamed.taskflow.security;
+
+import com.mohamed.taskflow.dto.UserStatus;
+import com.mohamed.taskflow.model.User;
+import com.mohamed.taskflow.service.TokenRevocationService;
+import com.mohamed.taskflow.service.UserStatusService;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for JWT authentication from token claims
+ */
+@ExtendWith(MockitoExtension.class)
+class JwtAuthenticationFilterTest {
+    
+    private static final String SECRET =
+        "YXNkZmFzZGZhc2RmYXNkZmFzZGZhc2RmYXNkZmFzZGZhc2RmYXNkZmFzZGZhc2RmYXNkZmFzZGZhc2RmYXNkZmFzZGY=";
+    
+    @Mock
+    private CustomUserDetailsService userDetailsService;
+    
+    @Mock
+    private UserStatusService userStatusService;
+    
+    @Mock
+    private TokenRevocationService revocationService;
+    
+    private JwtUtil jwtUtil;
+    private JwtAuthenticationFilter filter;
+    private String token;
+    
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil(SECRET, 60_000L);
+        filter = new JwtAuthenticationFilter(jwtUtil, userDetailsService, userStatusService, revocationService);
+        
+        User user = new User();
+        user.setId("user1");
+        user.setUsername("alice");
+        user.setRoles(Set.of("USER"));
+        token = jwtUtil.generateToken(user);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+    
+    @Test
+    void testDoFilter_PrincipalBuiltFromClaimsWithoutUserLookup() throws Exception {
+        // Arrange
+        when(userStatusService.findActive("user1")).thenReturn(active("USER"));
+        
+        // Act
+        filter.doFilter(bearer(token), new MockHttpServletResponse(), new MockFilterChain());
+        
+        // Assert
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertNotNull(authentication);
+        AuthenticatedUser principal = (AuthenticatedUser) authentication.getPrincipal();
+        assertEquals("user1", principal.getId());
+        assertEquals("alice", principal.getUsername());
+        assertEquals("ROLE_USER", authentication.getAuthorities().iterator().next().getAuthority());
+        verifyNoInteractions(userDetailsService);
+    }
+    
+    @Test
+    void testDoFilter_RepeatedTokenVerifiedOnce() throws Exception {
+        // Arrange
+        JwtUtil spiedJwtUtil = spy(jwtUtil);
+        filter = new JwtAuthenticationFilter(spiedJwtUtil, userDetailsService, userStatusService, revocationService);
+        when(userStatusService.findActive("user1")).thenReturn(active("USER"));
+        
+        // Act
+        for (int i = 0; i < 3; i++) {
+            SecurityContextHolder.clearContext();
+            filter.doFilter(bearer(token), new MockHttpServletResponse(), new MockFilterChain());
+        }
+        
+        // Assert - signature checked on the first request only
+        verify(spiedJwtUtil, times(1)).parse(token);
+        assertNotNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+    
+    @Test
+    void testDoFilter_DisabledUserNotAuthenticated() throws Exception {
+        // Arrange
+        when(userStatusService.findActive("user1")).thenReturn(Optional.empty());
+        
+        // Act
+        filter.doFilter(bearer(token), new MockHttpServletResponse(), new MockFilterChain());
+        
+        // Assert
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+    
+    @Test
+    void testDoFilter_AuthoritiesFromCurrentRolesNotTokenClaim() throws Exception {
+        // Arrange - token issued while the user was an admin, since demoted
+        User admin = new User();
+        admin.setId("user1");
+        admin.setUsername("alice");
+        admin.setRoles(Set.of("USER", "ADMIN"));
+        String adminToken = jwtUtil.generateToken(admin);
+        when(userStatusService.findActive("user1")).thenReturn(active("USER"));
+        
+        // Act
+        filter.doFilter(bearer(adminToken), new MockHttpServletResponse(), new MockFilterChain());
+        
+        // Assert
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertEquals(1, authentication.getAuthorities().size());
+        assertEquals("ROLE_USER", authentication.getAuthorities().iterator().next().getAuthority());
+        assertEquals(Set.of("USER"), ((AuthenticatedUser) authentication.getPrincipal()).getRoles());
+    }
+    
+    @Test
+    void testDoFilter_RevokedTokenNotAuthenticated() throws Exception {
+        // Arrange
+        String tokenId = jwtUtil.verify(token).getId();
+        when(revocationService.isRevoked(eq(tokenId), eq("user1"), any())).thenReturn(true);
+        
+        // Act
+        filter.doFilter(bearer(token), new MockHttpServletResponse(), new MockFilterChain());
+        
+        // Assert
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verifyNoInteractions(userStatusService);
+    }
+    
+    @Test
+    void testDoFilter_TokenWithoutUserIdClaimLoadsPrincipal() throws Exception {
+        // Arrange - token issued before the user id claim
+        String legacyToken = Jwts.builder()
+            .subject("alice")
+            .expiration(new Date(System.currentTimeMillis() + 60_000))
+            .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET)))
+            .compact();
+        when(userDetailsService.loadPrincipal("alice")).thenReturn(new AuthenticatedUser("user1", "alice", Set.of("USER")));
+        when(userStatusService.findActive(anyString())).thenReturn(active("USER"));
+        
+        // Act
+        filter.doFilter(bearer(legacyToken), new MockHttpServletResponse(), new MockFilterChain());
+        
+        // Assert
+        AuthenticatedUser principal = (AuthenticatedUser) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        assertEquals("user1", principal.getId());
+    }
+    
+    private Optional<UserStatus> active(String... roles) {
+        return Optional.of(new UserStatus("user1", true, Set.of(roles)));
+    }
+    
+    private MockHttpServletRequest bearer(String jwt) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/study-logs");
+        request.addHeader("Authorization", "Bearer " + jwt);
+        return request;
+    }
+}
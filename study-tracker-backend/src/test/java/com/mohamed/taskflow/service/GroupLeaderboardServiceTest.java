@@ -0,0 +1,151 @@
+package com.mohamed.taskflow.service;
+
+import com.mohamed.taskflow.dto.LeaderboardEntry;
+import com.mohamed.taskflow.dto.LeaderboardResponse;
+import com.mohamed.taskflow.exception.ResourceNotFoundException;
+import com.mohamed.taskflow.model.StudyGroup;
+import com.mohamed.taskflow.util.UserIdDictionary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for GroupLeaderboardService bitmap ranking
+ */
+@ExtendWith(MockitoExtension.class)
+class GroupLeaderboardServiceTest {
+    
+    @Mock
+    private LeaderboardService leaderboardService;
+    
+    @Mock
+    private StudyGroupService studyGroupService;
+    
+    @Spy
+    private UserIdDictionary userIdDictionary = new UserIdDictionary();
+    
+    @InjectMocks
+    private GroupLeaderboardService groupLeaderboardService;
+    
+    private LeaderboardRankIndex.Standings standings;
+    private StudyGroup group;
+    
+    @BeforeEach
+    void setUp() {
+        // Global standings: user3 (300), user1 (200), user2 (100), outsider (500)
+        standings = new LeaderboardRankIndex.Standings(key -> List.of(), userIdDictionary);
+        standings.apply("all|all", "user1", 200L, 2L);
+        standings.apply("all|all", "user2", 100L, 1L);
+        standings.apply("all|all", "user3", 300L, 3L);
+        standings.apply("all|all", "outsider", 500L, 5L);
+        
+        
+        // Group of user1, user2 and user4 (no study time)
+        group = new StudyGroup();
+        group.setId("group1");
+        BitSet members = new BitSet();
+        members.set(userIdDictionary.encode("user1"));
+        members.set(userIdDictionary.encode("user2"));
+        members.set(userIdDictionary.encode("user4"));
+        lenient().when(studyGroupService.getForMember("group1", "user1")).thenReturn(group);
+        lenient().when(studyGroupService.getMembers(group)).thenReturn(members);
+        lenient().when(leaderboardService.getStandings(anyString(), any(), any())).thenReturn(standings);
+    }
+    
+    @Test
+    void testGetGroupLeaderboard_RanksMembersWithStudyTimeOnly() {
+        // Arrange
+        when(leaderboardService.resolveUsernames(anyCollection()))
+            .thenReturn(Map.of("user1", "alice", "user2", "bob"));
+        
+        // Act
+        LeaderboardResponse response = groupLeaderboardService.getGroupLeaderboard(
+            "group1", "user1", "all", null, 10, 1, false, null);
+        
+        // Assert - user3 and outsider are not members, user4 has no study time
+        assertEquals(2L, response.getTotalUsers());
+        assertEquals(2, response.getLeaderboard().size());
+        assertEquals("user1", response.getLeaderboard().get(0).getUserId());
+        assertEquals("alice", response.getLeaderboard().get(0).getUsername());
+        assertEquals(1, response.getLeaderboard().get(0).getRank());
+        assertEquals("user2", response.getLeaderboard().get(1).getUserId());
+        assertEquals(100L, response.getLeaderboard().get(1).getTotalMinutes());
+        assertEquals(2, response.getLeaderboard().get(1).getRank());
+    }
+    
+    @Test
+    void testGetGroupLeaderboard_OverflowingPageReturnsEmptyPage() {
+        // Act - (page - 1) * limit does not fit in an int
+        LeaderboardResponse response = groupLeaderboardService.getGroupLeaderboard(
+            "group1", "user1", "all", null, 100, 30_000_000, true, null);
+        
+        // Assert
+        assertTrue(response.getLeaderboard().isEmpty());
+        assertEquals(2L, response.getTotalUsers());
+    }
+    
+    @Test
+    void testGetGroupLeaderboard_NonMemberIsRejected() {
+        // Arrange
+        when(studyGroupService.getForMember("group1", "user3"))
+            .thenThrow(new ResourceNotFoundException("Group not found or access denied"));
+        
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> groupLeaderboardService.getGroupLeaderboard(
+            "group1", "user3", "all", null, 10, 1, false, null));
+        verifyNoInteractions(leaderboardService);
+    }
+    
+    @Test
+    void testGetTotals_PatchedInPlaceUntilStandingsReload() {
+        // Act - user2 moves up, user1's sessions are deleted
+        GroupLeaderboardService.UserTotals first = groupLeaderboardService.getTotals(standings);
+        standings.apply("all|all", "user2", 250L, 1L);
+        standings.apply("all|all", "user1", -200L, -2L);
+        GroupLeaderboardService.UserTotals second = groupLeaderboardService.getTotals(standings);
+        LeaderboardResponse response = groupLeaderboardService.getGroupLeaderboard(
+            "group1", "user1", "all", null, 10, 1, true, null);
+        standings.reload(List.of(new LeaderboardEntry("user1", null, 50L, 1L, 50.0, 0)));
+        GroupLeaderboardService.UserTotals third = groupLeaderboardService.getTotals(standings);
+        
+        // Assert
+        assertSame(first, second);
+        assertEquals(1L, response.getTotalUsers());
+        assertEquals("user2", response.getLeaderboard().get(0).getUserId());
+        assertEquals(350L, response.getLeaderboard().get(0).getTotalMinutes());
+        assertNotEquals("bob", response.getLeaderboard().get(0).getUsername());
+        assertNotSame(second, third);
+    }
+    
+    @Test
+    void testGetTotals_RebuiltWhenChangesOutgrowJournal() {
+        // Arrange
+        GroupLeaderboardService.UserTotals first = groupLeaderboardService.getTotals(standings);
+        for (int i = 0; i <= LeaderboardRankIndex.JOURNAL_SIZE; i++) {
+            standings.apply("all|all", "user2", 1L, 0L);
+        }
+        
+        // Act
+        GroupLeaderboardService.UserTotals second = groupLeaderboardService.getTotals(standings);
+        
+        // Assert
+        assertNotSame(first, second);
+        List<LeaderboardRankIndex.Standing> ranked = second.rankedMembers(
+            studyGroupService.getMembers(group), userIdDictionary);
+        assertEquals(2, ranked.size());
+        long user2Minutes = 100L + LeaderboardRankIndex.JOURNAL_SIZE + 1;
+        assertTrue(ranked.stream().anyMatch(standing -> standing.getTotalMinutes() == user2Minutes));
+    }
+}
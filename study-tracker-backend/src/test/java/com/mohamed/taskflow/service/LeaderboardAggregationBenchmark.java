@@ -0,0 +1,201 @@
+package com.mohamed.taskflow.service;
+
+import com.mohamed.taskflow.config.CacheConfig;
+import com.mohamed.taskflow.dto.LeaderboardEntry;
+import com.mohamed.taskflow.dto.LeaderboardPageResult;
+import com.mohamed.taskflow.dto.LeaderboardWindow;
+import com.mohamed.taskflow.model.LeaderboardRollup;
+import com.mohamed.taskflow.util.UserIdDictionary;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Single-pipeline vs partitioned leaderboard aggregation over synthetic rollups
+ * 
+ * Reports wall time and the rollup documents examined (explain executionStats, summed over
+ * the partitions), so a partitioning that reads the collection once per partition shows up
+ * even when parallelism hides it in the timings
+ * 
+ * Needs a MongoDB server and is skipped unless benchmark.mongodb.uri is set; not picked up
+ * by a plain mvn test. Seeds a throwaway database, which is dropped afterwards:
+ * 
+ *   mvn test -Dtest=LeaderboardAggregationBenchmark -Dbenchmark.mongodb.uri=mongodb://localhost:27017
+ * 
+ * Optional: -Dbenchmark.users (50000), -Dbenchmark.bucketsPerUser (10), -Dbenchmark.iterations (10)
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfSystemProperty(named = "benchmark.mongodb.uri", matches = ".+")
+class LeaderboardAggregationBenchmark {
+    
+    private static final String DATABASE = "taskflow_leaderboard_benchmark";
+    private static final List<String> SUBJECTS = List.of("math", "physics", "history");
+    private static final int[] PARTITIONS = { 1, 2, 4, 8 };
+    private static final int WARMUP_ITERATIONS = 3;
+    
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private LeaderboardService leaderboardService;
+    private LocalDate today;
+    
+    @BeforeAll
+    void seed() {
+        client = MongoClients.create(System.getProperty("benchmark.mongodb.uri"));
+        mongoTemplate = new MongoTemplate(client, DATABASE);
+        mongoTemplate.getDb().drop();
+        // Only the aggregation path is exercised
+        leaderboardService = new LeaderboardService(mongoTemplate, null, new CacheConfig(), null, null, new UserIdDictionary());
+        today = LocalDate.now();
+        
+        int users = Integer.getInteger("benchmark.users", 50_000);
+        int bucketsPerUser = Integer.getInteger("benchmark.bucketsPerUser", 10);
+        Random random = new Random(42);
+        List<Document> batch = new ArrayList<>();
+        for (int u = 0; u < users; u++) {
+            String userId = new ObjectId().toHexString();
+            for (int b = 0; b < bucketsPerUser; b++) {
+                String subject = SUBJECTS.get(random.nextInt(SUBJECTS.size()));
+                // Distinct days, so bucket keys never collide
+                LocalDate day = today.minusDays(b * 6L + random.nextInt(6));
+                Document key = new Document("userId", userId).append("subject", subject)
+                    .append("day", LeaderboardService.toStartOfDay(day));
+                batch.add(new Document("_id", key)
+                    .append("userId", userId)
+                    .append("subject", subject)
+                    .append("day", LeaderboardService.toStartOfDay(day))
+                    .append("totalMinutes", 5L + random.nextInt(240))
+                    .append("sessionCount", 1L + random.nextInt(4))
+                    .append("userBucket", LeaderboardRollup.userBucketOf(userId)));
+                if (batch.size() == 10_000) {
+                    mongoTemplate.getCollection(LeaderboardRollup.COLLECTION).insertMany(batch);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            mongoTemplate.getCollection(LeaderboardRollup.COLLECTION).insertMany(batch);
+        }
+        mongoTemplate.getCollection(LeaderboardRollup.COLLECTION)
+            .createIndex(new Document("day", 1).append("subject", 1));
+        mongoTemplate.getCollection(LeaderboardRollup.COLLECTION)
+            .createIndex(new Document("userBucket", 1).append("day", 1).append("subject", 1));
+        System.out.printf("Seeded %d users, %d rollup buckets%n", users, (long) users * bucketsPerUser);
+    }
+    
+    @AfterAll
+    void drop() {
+        if (mongoTemplate != null) {
+            mongoTemplate.getDb().drop();
+        }
+        if (client != null) {
+            client.close();
+        }
+        if (leaderboardService != null) {
+            leaderboardService.shutdownBatchExecutor();
+        }
+    }
+    
+    @Test
+    void compareSingleAndPartitionedPipelines() {
+        int iterations = Integer.getInteger("benchmark.iterations", 10);
+        for (String period : List.of("all", "month")) {
+            for (String subject : Arrays.asList(null, "math")) {
+                LeaderboardWindow window = LeaderboardWindow.of(period, today);
+                LeaderboardPageResult expected = null;
+                for (int partitions : PARTITIONS) {
+                    ReflectionTestUtils.setField(leaderboardService, "aggregationPartitions", partitions);
+                    
+                    // Same ranking whatever the partitioning
+                    LeaderboardPageResult result = aggregate(window, subject);
+                    if (expected == null) {
+                        expected = result;
+                    } else {
+                        assertEquals(expected.getTotalUsers(), result.getTotalUsers());
+                        assertEquals(userIds(expected), userIds(result));
+                    }
+                    
+                    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                        aggregate(window, subject);
+                    }
+                    long[] millis = new long[iterations];
+                    for (int i = 0; i < iterations; i++) {
+                        long start = System.nanoTime();
+                        aggregate(window, subject);
+                        millis[i] = (System.nanoTime() - start) / 1_000_000;
+                    }
+                    Arrays.sort(millis);
+                    System.out.printf("period=%-5s subject=%-7s partitions=%d  median=%d ms  p90=%d ms  docsExamined=%d  users=%d%n",
+                        period, subject, partitions, millis[iterations / 2],
+                        millis[Math.min(iterations - 1, (int) Math.ceil(iterations * 0.9) - 1)],
+                        docsExamined(window, subject, partitions), result.getTotalUsers());
+                }
+            }
+        }
+    }
+    
+    /**
+     * The aggregation behind a cached ranking: top RANKING_DEPTH users and the count
+     */
+    private LeaderboardPageResult aggregate(LeaderboardWindow window, String subject) {
+        return leaderboardService.aggregatePage(window, subject, LeaderboardService.RANKING_DEPTH, 1, null);
+    }
+    
+    /**
+     * Rollup documents the aggregation reads, over every partition's pipeline
+     */
+    private long docsExamined(LeaderboardWindow window, String subject, int partitions) {
+        long examined = 0;
+        for (int partition = 0; partition < partitions; partition++) {
+            Aggregation aggregation = leaderboardService.buildLeaderboardAggregation(
+                window, subject, LeaderboardService.RANKING_DEPTH, 1, null,
+                partitions > 1 ? LeaderboardService.buildPartitionCriteria(partition, partitions) : null);
+            Document explain = mongoTemplate.getDb().runCommand(new Document("explain", new Document("aggregate", LeaderboardRollup.COLLECTION)
+                    .append("pipeline", aggregation.toPipeline(Aggregation.DEFAULT_CONTEXT))
+                    .append("cursor", new Document()))
+                .append("verbosity", "executionStats"));
+            examined += sumField(explain, "totalDocsExamined");
+        }
+        return examined;
+    }
+    
+    /**
+     * Sum of a numeric field wherever it appears in an explain document (its position
+     * differs between server versions and sharded deployments)
+     */
+    private static long sumField(Object value, String field) {
+        long sum = 0;
+        if (value instanceof Document document) {
+            for (var entry : document.entrySet()) {
+                sum += field.equals(entry.getKey()) && entry.getValue() instanceof Number number
+                    ? number.longValue()
+                    : sumField(entry.getValue(), field);
+            }
+        } else if (value instanceof List<?> list) {
+            for (Object element : list) {
+                sum += sumField(element, field);
+            }
+        }
+        return sum;
+    }
+    
+    private List<String> userIds(LeaderboardPageResult result) {
+        return result.getEntries().stream().map(LeaderboardEntry::getUserId).toList();
+    }
+}
@@ -0,0 +1,145 @@
+package com.mohamed.taskflow.service;
+
+import com.mohamed.taskflow.dto.LeaderboardCursor;
+import com.mohamed.taskflow.dto.LeaderboardEntry;
+import com.mohamed.taskflow.dto.LeaderboardPageResult;
+import com.mohamed.taskflow.dto.LeaderboardWindow;
+import com.mohamed.taskflow.event.StudyLogChangedEvent;
+import com.mohamed.taskflow.model.LeaderboardRollup;
+import com.mohamed.taskflow.model.StudyLog;
+import com.mohamed.taskflow.util.UserIdDictionary;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for LeaderboardCube scans and top-K selection
+ */
+@ExtendWith(MockitoExtension.class)
+class LeaderboardCubeTest {
+    
+    private static final LocalDate TODAY = LocalDate.of(2025, 3, 15);
+    
+    @Mock
+    private MongoTemplate mongoTemplate;
+    
+    @Spy
+    private UserIdDictionary userIdDictionary = new UserIdDictionary();
+    
+    @InjectMocks
+    private LeaderboardCube cube;
+    
+    private static LeaderboardRollup rollup(String userId, String subject, LocalDate day, long minutes, long sessions) {
+        return new LeaderboardRollup(new LeaderboardRollup.Key(userId, subject, day),
+            userId, subject, day, minutes, sessions, null, LeaderboardRollup.userBucketOf(userId));
+    }
+    
+    private void loadRollups(LeaderboardRollup... rollups) {
+        when(mongoTemplate.stream(any(Query.class), eq(LeaderboardRollup.class)))
+            .thenAnswer(invocation -> List.of(rollups).stream());
+        cube.load();
+    }
+    
+    private static List<String> userIds(List<LeaderboardEntry> entries) {
+        return entries.stream().map(LeaderboardEntry::getUserId).collect(Collectors.toList());
+    }
+    
+    @Test
+    void testTop_SumsWindowAndSubjectInRankingOrder() {
+        // Arrange - user4's only bucket was emptied by a delete, user5 studied outside the week
+        loadRollups(
+            rollup("user1", "Physics", TODAY, 60L, 1L),
+            rollup("user1", "Mathematics", TODAY.minusDays(1), 60L, 2L),
+            rollup("user2", "Physics", TODAY.minusDays(2), 120L, 2L),
+            rollup("user3", "Physics", TODAY, 90L, 1L),
+            rollup("user4", "Physics", TODAY, 0L, 0L),
+            rollup("user5", "Physics", TODAY.minusDays(30), 500L, 5L)
+        );
+        LeaderboardWindow week = LeaderboardWindow.of("week", TODAY);
+        
+        // Act
+        LeaderboardPageResult all = cube.top(week, null, null, 10).orElseThrow();
+        LeaderboardPageResult physics = cube.top(week, "Physics", null, 2).orElseThrow();
+        
+        // Assert - user1 and user2 tie on 120 minutes overall
+        assertEquals(List.of("user1", "user2", "user3"), userIds(all.getEntries()));
+        assertEquals(3L, all.getTotalUsers());
+        assertEquals(3L, all.getEntries().get(0).getSessionCount());
+        assertEquals(40.0, all.getEntries().get(0).getAvgMinutesPerSession());
+        assertEquals(List.of("user2", "user3"), userIds(physics.getEntries()));
+        assertEquals(3L, physics.getTotalUsers());
+        assertEquals(4, cube.totals(LeaderboardWindow.of("all", TODAY), null).orElseThrow().size());
+    }
+    
+    @Test
+    void testTop_ResumesAfterCursor() {
+        // Arrange
+        loadRollups(
+            rollup("user1", "Physics", TODAY, 300L, 3L),
+            rollup("user2", "Physics", TODAY, 200L, 2L),
+            rollup("user3", "Physics", TODAY, 200L, 2L),
+            rollup("user4", "Physics", TODAY, 100L, 1L)
+        );
+        
+        // Act
+        LeaderboardPageResult result = cube.top(
+            LeaderboardWindow.of("all", TODAY), null, new LeaderboardCursor(200L, "user2", 2), 2).orElseThrow();
+        
+        // Assert
+        assertEquals(List.of("user3", "user4"), userIds(result.getEntries()));
+        assertEquals(4L, result.getTotalUsers());
+    }
+    
+    @Test
+    void testLoad_IndexesOnlyUsersWithRollups() {
+        // Arrange - the dictionary already holds users from rankings the cube never saw
+        for (int i = 0; i < 1000; i++) {
+            userIdDictionary.encode("stale" + i);
+        }
+        
+        // Act
+        loadRollups(
+            rollup("user1", "Physics", TODAY, 100L, 1L),
+            rollup("user2", "Physics", TODAY, 50L, 1L)
+        );
+        
+        // Assert - scans are sized by the cube's two users, and return the shared id instances
+        assertEquals(2, cube.getStats().get("users"));
+        LeaderboardPageResult result = cube.top(LeaderboardWindow.of("all", TODAY), null, null, 10).orElseThrow();
+        assertSame(userIdDictionary.canonical("user1"), result.getEntries().get(0).getUserId());
+    }
+    
+    @Test
+    void testOnStudyLogChanged_KeepsCubeCurrent() {
+        // Arrange
+        assertTrue(cube.top(LeaderboardWindow.of("all", TODAY), null, null, 10).isEmpty());
+        loadRollups(rollup("user1", "Physics", TODAY, 100L, 1L));
+        StudyLog previous = StudyLog.builder()
+            .userId("user1").subject("Physics").date(TODAY).duration(100).build();
+        StudyLog current = StudyLog.builder()
+            .userId("user1").subject("Chemistry").date(TODAY).duration(45).build();
+        
+        // Act - the log moves to another subject
+        cube.onStudyLogChanged(new StudyLogChangedEvent("user1", previous, current));
+        
+        // Assert
+        LeaderboardWindow all = LeaderboardWindow.of("all", TODAY);
+        assertTrue(cube.top(all, "Physics", null, 10).orElseThrow().getEntries().isEmpty());
+        LeaderboardPageResult chemistry = cube.top(all, "Chemistry", null, 10).orElseThrow();
+        assertEquals(45L, chemistry.getEntries().get(0).getTotalMinutes());
+        assertEquals(1L, cube.top(all, null, null, 10).orElseThrow().getTotalUsers());
+    }
+}
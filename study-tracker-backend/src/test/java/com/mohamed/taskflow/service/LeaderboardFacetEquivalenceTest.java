@@ -0,0 +1,164 @@
+package com.mohamed.taskflow.service;
+
+import com.mohamed.taskflow.config.CacheConfig;
+import com.mohamed.taskflow.dto.LeaderboardEntry;
+import com.mohamed.taskflow.dto.LeaderboardPageResult;
+import com.mohamed.taskflow.dto.LeaderboardWindow;
+import com.mohamed.taskflow.model.LeaderboardRollup;
+import com.mohamed.taskflow.util.UserIdDictionary;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The single $facet aggregation against the two-pass pipeline it replaced (a page query,
+ * then countTotalUsers), run over the same seeded rollups
+ * 
+ * Needs a MongoDB server and is skipped unless test.mongodb.uri is set. Seeds a throwaway
+ * database, which is dropped afterwards:
+ * 
+ *   mvn test -Dtest=LeaderboardFacetEquivalenceTest -Dtest.mongodb.uri=mongodb://localhost:27017
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfSystemProperty(named = "test.mongodb.uri", matches = ".+")
+class LeaderboardFacetEquivalenceTest {
+    
+    private static final String DATABASE = "taskflow_leaderboard_facet_equivalence";
+    private static final List<String> SUBJECTS = List.of("math", "physics", "history");
+    
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private LeaderboardService leaderboardService;
+    private LocalDate today;
+    
+    @BeforeAll
+    void seed() {
+        client = MongoClients.create(System.getProperty("test.mongodb.uri"));
+        mongoTemplate = new MongoTemplate(client, DATABASE);
+        mongoTemplate.getDb().drop();
+        // Only the aggregation path is exercised, as a single pipeline
+        leaderboardService = new LeaderboardService(mongoTemplate, null, new CacheConfig(), null, null, new UserIdDictionary());
+        ReflectionTestUtils.setField(leaderboardService, "aggregationPartitions", 1);
+        today = LocalDate.now();
+        
+        // Few distinct minute values, so many users tie and the userId tiebreak decides the order
+        Random random = new Random(7);
+        List<Document> buckets = new ArrayList<>();
+        for (int u = 0; u < 300; u++) {
+            String userId = new ObjectId().toHexString();
+            for (int b = 0; b < 1 + random.nextInt(4); b++) {
+                String subject = SUBJECTS.get(random.nextInt(SUBJECTS.size()));
+                LocalDate day = today.minusDays(b * 20L + random.nextInt(20));
+                Document key = new Document("userId", userId).append("subject", subject)
+                    .append("day", LeaderboardService.toStartOfDay(day));
+                buckets.add(new Document("_id", key)
+                    .append("userId", userId)
+                    .append("subject", subject)
+                    .append("day", LeaderboardService.toStartOfDay(day))
+                    .append("totalMinutes", 30L * (1 + random.nextInt(4)))
+                    // Emptied buckets (sessionCount 0) are excluded by both paths
+                    .append("sessionCount", (long) random.nextInt(3))
+                    .append("userBucket", LeaderboardRollup.userBucketOf(userId)));
+            }
+        }
+        mongoTemplate.getCollection(LeaderboardRollup.COLLECTION).insertMany(buckets);
+    }
+    
+    @AfterAll
+    void drop() {
+        if (mongoTemplate != null) {
+            mongoTemplate.getDb().drop();
+        }
+        if (client != null) {
+            client.close();
+        }
+        if (leaderboardService != null) {
+            leaderboardService.shutdownBatchExecutor();
+        }
+    }
+    
+    @ParameterizedTest
+    @CsvSource({
+        "all, , 10, 1",
+        "all, , 7, 3",
+        "all, math, 25, 2",
+        "month, , 10, 1",
+        "week, physics, 5, 2",
+        "all, , 10, 1000",
+        // No bucket matches: the facet's count branch is [] rather than [{count: n}]
+        "all, chemistry, 10, 1"
+    })
+    void testAggregatePage_FacetMatchesTwoPassPipeline(String period, String subject, int limit, int page) {
+        // Arrange
+        LeaderboardWindow window = LeaderboardWindow.of(period, today);
+        
+        // Act
+        LeaderboardPageResult facet = leaderboardService.aggregatePage(window, subject, limit, page, null);
+        List<LeaderboardEntry> twoPassEntries = twoPassPage(window, subject, limit, page);
+        long twoPassTotal = countTotalUsers(window, subject);
+        
+        // Assert
+        assertEquals(twoPassEntries, facet.getEntries());
+        assertEquals(twoPassTotal, facet.getTotalUsers());
+    }
+    
+    /**
+     * The page query of the two-pass path: match, group, project, sort, skip, limit
+     * Sorted with the same userId tiebreak as the facet, so tied pages are comparable
+     */
+    private List<LeaderboardEntry> twoPassPage(LeaderboardWindow window, String subject, int limit, int page) {
+        List<AggregationOperation> operations = new ArrayList<>();
+        operations.add(Aggregation.match(leaderboardService.buildMatchCriteria(window, subject)));
+        operations.add(Aggregation.group("userId")
+            .sum("totalMinutes").as("totalMinutes")
+            .sum("sessionCount").as("sessionCount"));
+        operations.add(Aggregation.project()
+            .and("_id").as("userId")
+            .and("totalMinutes").as("totalMinutes")
+            .and("sessionCount").as("sessionCount")
+            .and(ArithmeticOperators.Divide.valueOf("totalMinutes")
+                .divideBy("sessionCount")).as("avgMinutesPerSession"));
+        operations.add(Aggregation.sort(Sort.by(Sort.Direction.DESC, "totalMinutes")
+            .and(Sort.by(Sort.Direction.ASC, "userId"))));
+        long skip = (page - 1L) * limit;
+        if (skip > 0) {
+            operations.add(Aggregation.skip(skip));
+        }
+        operations.add(Aggregation.limit(limit));
+        return mongoTemplate.aggregate(Aggregation.newAggregation(operations),
+            LeaderboardRollup.COLLECTION, LeaderboardEntry.class).getMappedResults();
+    }
+    
+    /**
+     * countTotalUsers of the two-pass path: distinct users matching the window and subject
+     */
+    private long countTotalUsers(LeaderboardWindow window, String subject) {
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(leaderboardService.buildMatchCriteria(window, subject)),
+            Aggregation.group("userId"),
+            Aggregation.count().as("count"));
+        Document result = mongoTemplate.aggregate(aggregation, LeaderboardRollup.COLLECTION, Document.class)
+            .getUniqueMappedResult();
+        return result != null ? result.get("count", Number.class).longValue() : 0L;
+    }
+}
@@ -0,0 +1,140 @@
+package com.mohamed.taskflow.service;
+
+import com.mohamed.taskflow.dto.LeaderboardHistoryPoint;
+import com.mohamed.taskflow.dto.LeaderboardHistoryResponse;
+import com.mohamed.taskflow.model.LeaderboardHistory;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for LeaderboardHistoryService archiving and trend decoding
+ */
+@ExtendWith(MockitoExtension.class)
+class LeaderboardHistoryServiceTest {
+    
+    @Mock
+    private MongoTemplate mongoTemplate;
+    
+    @Mock
+    private BulkOperations bulkOperations;
+    
+    @InjectMocks
+    private LeaderboardHistoryService historyService;
+    
+    private static Document total(String userId, String subject, long minutes, long sessions) {
+        return new Document("_id", new Document("userId", userId).append("subject", subject))
+            .append("totalMinutes", minutes)
+            .append("sessionCount", sessions);
+    }
+    
+    private static LeaderboardHistory history(String userId, String subject, String month,
+                                              List<Integer> days, List<Integer> ranks,
+                                              List<Long> minutes, List<Long> totals) {
+        LocalDate lastDay = LocalDate.parse(month + "-01").withDayOfMonth(days.get(days.size() - 1));
+        int lastRank = ranks.stream().mapToInt(Integer::intValue).sum();
+        long lastMinutes = minutes.stream().mapToLong(Long::longValue).sum();
+        long lastTotal = totals.stream().mapToLong(Long::longValue).sum();
+        return new LeaderboardHistory(LeaderboardHistory.idOf(userId, subject, lastDay), userId, subject, month,
+            new ArrayList<>(days), new ArrayList<>(ranks), new ArrayList<>(minutes), new ArrayList<>(totals),
+            lastDay, lastRank, lastMinutes, lastTotal);
+    }
+    
+    private static boolean isAllSubjectsQuery(Query query) {
+        return LeaderboardHistoryService.ALL_SUBJECTS.equals(query.getQueryObject().get("subject"));
+    }
+    
+    @Test
+    void testArchiveDay_AppendsDeltasAndStartsNewDocuments() {
+        // Arrange - user1 leads overall; user2 already has a point on the 14th (rank 1, 90 min of 1 user)
+        LocalDate day = LocalDate.of(2025, 3, 15);
+        when(mongoTemplate.aggregate(any(Aggregation.class), anyString(), eq(Document.class)))
+            .thenReturn(new AggregationResults<>(List.of(
+                total("user1", "Physics", 100L, 2L),
+                total("user1", "Mathematics", 50L, 1L),
+                total("user2", "Physics", 120L, 3L)
+            ), new Document()));
+        when(mongoTemplate.find(any(Query.class), eq(LeaderboardHistory.class))).thenAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            return isAllSubjectsQuery(query)
+                ? List.of(history("user2", "all", "2025-03", List.of(14), List.of(1), List.of(90L), List.of(1L)))
+                : List.of();
+        });
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(LeaderboardHistory.class)))
+            .thenReturn(bulkOperations);
+        
+        // Act
+        int appended = historyService.archiveDay(day);
+        
+        // Assert - all: user1 (150) then user2 (120); Physics: user2 then user1; Mathematics: user1
+        assertEquals(5, appended);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations).updateOne(any(Query.class), update.capture());
+        Document push = update.getValue().getUpdateObject().get("$push", Document.class);
+        assertEquals(15, push.get("days"));
+        assertEquals(1, push.get("rankDeltas"));
+        assertEquals(30L, push.get("minuteDeltas"));
+        assertEquals(1L, push.get("totalUserDeltas"));
+        
+        ArgumentCaptor<Object> inserted = ArgumentCaptor.forClass(Object.class);
+        verify(bulkOperations, times(4)).insert(inserted.capture());
+        LeaderboardHistory allUser1 = inserted.getAllValues().stream()
+            .map(LeaderboardHistory.class::cast)
+            .filter(h -> h.getId().equals("user1|all|2025-03"))
+            .findFirst().orElseThrow();
+        assertEquals(List.of(1), allUser1.getRankDeltas());
+        assertEquals(List.of(150L), allUser1.getMinuteDeltas());
+        assertEquals(List.of(2L), allUser1.getTotalUserDeltas());
+        verify(bulkOperations, times(3)).execute();
+    }
+    
+    @Test
+    void testGetHistory_DecodesMonthsAndClipsToRange() {
+        // Arrange - two month documents, ranks 5 -> 4 -> 6 and 3 -> 2
+        when(mongoTemplate.find(any(Query.class), eq(LeaderboardHistory.class))).thenReturn(List.of(
+            history("user1", "all", "2025-01", List.of(29, 30, 31), List.of(5, -1, 2),
+                List.of(100L, 20L, 0L), List.of(10L, 0L, 1L)),
+            history("user1", "all", "2025-02", List.of(1, 2), List.of(3, -1),
+                List.of(200L, 15L), List.of(11L, 0L))
+        ));
+        
+        // Act
+        LeaderboardHistoryResponse response = historyService.getHistory(
+            "user1", null, LocalDate.of(2025, 1, 30), LocalDate.of(2025, 2, 1));
+        
+        // Assert
+        List<LeaderboardHistoryPoint> points = response.getPoints();
+        assertEquals(3, points.size());
+        assertEquals(new LeaderboardHistoryPoint(LocalDate.of(2025, 1, 30), 4, 120L, 10L), points.get(0));
+        assertEquals(new LeaderboardHistoryPoint(LocalDate.of(2025, 1, 31), 6, 120L, 11L), points.get(1));
+        assertEquals(new LeaderboardHistoryPoint(LocalDate.of(2025, 2, 1), 3, 200L, 11L), points.get(2));
+    }
+    
+    @Test
+    void testGetHistory_RejectsReversedOrTooLongRange() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> historyService.getHistory(
+            "user1", null, LocalDate.of(2025, 2, 1), LocalDate.of(2025, 1, 1)));
+        assertThrows(IllegalArgumentException.class, () -> historyService.getHistory(
+            "user1", null, LocalDate.of(2023, 1, 1), LocalDate.of(2025, 1, 1)));
+        verifyNoInteractions(mongoTemplate);
+    }
+}
@@ -1,21 +1,41 @@
 package com.mohamed.taskflow.service;
 
+import com.mohamed.taskflow.dto.LeaderboardBatchResponse;
+import com.mohamed.taskflow.dto.LeaderboardCursor;
 import com.mohamed.taskflow.dto.LeaderboardEntry;
+import com.mohamed.taskflow.dto.LeaderboardHistogramBucket;
+import com.mohamed.taskflow.dto.LeaderboardPageResult;
+import com.mohamed.taskflow.dto.LeaderboardQuery;
+import com.mohamed.taskflow.dto.LeaderboardRanking;
 import com.mohamed.taskflow.dto.LeaderboardResponse;
+import com.mohamed.taskflow.dto.LeaderboardStatsResponse;
+import com.mohamed.taskflow.dto.LeaderboardWindow;
+import com.mohamed.taskflow.dto.UserSummary;
 import com.mohamed.taskflow.config.CacheConfig;
-import com.mohamed.taskflow.model.User;
-import com.mohamed.taskflow.repository.UserRepository;
+import com.mohamed.taskflow.event.StudyLogChangedEvent;
+import com.mohamed.taskflow.model.LeaderboardRollup;
+import com.mohamed.taskflow.model.StudyLog;
+import com.mohamed.taskflow.util.UserIdDictionary;
+import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -31,16 +51,26 @@ class LeaderboardServiceTest {
     private MongoTemplate mongoTemplate;
     
     @Mock
-    private UserRepository userRepository;
+    private UserSummaryService userSummaryService;
     
+    @Spy
+    private CacheConfig cacheConfig = new CacheConfig();
+    
+    @Spy
+    private LeaderboardRankIndex rankIndex = new LeaderboardRankIndex(event -> { }, new UserIdDictionary());
+    
+    @Spy
+    private UserIdDictionary userIdDictionary = new UserIdDictionary();
+    
+    // Not ready: rankings fall back to the MongoDB aggregations
     @Mock
-    private CacheConfig cacheConfig;
+    private LeaderboardCube cube;
     
     @InjectMocks
     private LeaderboardService leaderboardService;
     
     private List<LeaderboardEntry> mockEntries;
-    private List<User> mockUsers;
+    private Map<String, UserSummary> mockUsers;
     
     @BeforeEach
     void setUp() {
@@ -52,33 +82,18 @@ class LeaderboardServiceTest {
         );
         
         // Setup mock users
-        mockUsers = Arrays.asList(
-            createUser("user1", "alice"),
-            createUser("user2", "bob"),
-            createUser("user3", "charlie")
+        mockUsers = Map.of(
+            "user1", new UserSummary("user1", "alice"),
+            "user2", new UserSummary("user2", "bob"),
+            "user3", new UserSummary("user3", "charlie")
         );
     }
     
     @Test
     void testGetLeaderboard_AllPeriod_Success() {
         // Arrange
-        AggregationResults<LeaderboardEntry> mockResults = mock(AggregationResults.class);
-        when(mockResults.getMappedResults()).thenReturn(mockEntries);
-        when(mongoTemplate.aggregate(any(Aggregation.class), eq("study_logs"), eq(LeaderboardEntry.class)))
-            .thenReturn(mockResults);
-        when(userRepository.findAllById(anyList())).thenReturn(mockUsers);
-        
-        // Mock count aggregation
-        @SuppressWarnings("unchecked")
-        AggregationResults<Map<String, Object>> countResults = mock(AggregationResults.class);
-        Map<String, Object> countMap = new HashMap<>();
-        countMap.put("count", 3L);
-        when(countResults.getUniqueMappedResult()).thenReturn(countMap);
-        when(mongoTemplate.aggregate(any(Aggregation.class), eq("study_logs"), eq(Map.class)))
-            .thenReturn((AggregationResults) countResults);
-        
-        // Mock cache miss
-        when(cacheConfig.get(anyString())).thenReturn(null);
+        mockAggregation(mockEntries, 3L);
+        when(userSummaryService.findAll(anyCollection())).thenReturn(mockUsers);
         
         // Act
         LeaderboardResponse response = leaderboardService.getLeaderboard("all", null, 10, 1, false);
@@ -105,22 +120,8 @@ class LeaderboardServiceTest {
     @Test
     void testGetLeaderboard_WeekPeriod_Success() {
         // Arrange
-        AggregationResults<LeaderboardEntry> mockResults = mock(AggregationResults.class);
-        when(mockResults.getMappedResults()).thenReturn(mockEntries);
-        when(mongoTemplate.aggregate(any(Aggregation.class), eq("study_logs"), eq(LeaderboardEntry.class)))
-            .thenReturn(mockResults);
-        when(userRepository.findAllById(anyList())).thenReturn(mockUsers);
-        
-        @SuppressWarnings("unchecked")
-        AggregationResults<Map<String, Object>> countResults = mock(AggregationResults.class);
-        Map<String, Object> countMap = new HashMap<>();
-        countMap.put("count", 3L);
-        when(countResults.getUniqueMappedResult()).thenReturn(countMap);
-        when(mongoTemplate.aggregate(any(Aggregation.class), eq("study_logs"), eq(Map.class)))
-            .thenReturn((AggregationResults) countResults);
-        
-        // Mock cache miss
-        when(cacheConfig.get(anyString())).thenReturn(null);
+        mockAggregation(mockEntries, 3L);
+        when(userSummaryService.findAll(anyCollection())).thenReturn(mockUsers);
         
         // Act
         LeaderboardResponse response = leaderboardService.getLeaderboard("week", null, 10, 1, false);
@@ -134,22 +135,8 @@ class LeaderboardServiceTest {
     @Test
     void testGetLeaderboard_MonthPeriod_Success() {
         // Arrange
-        AggregationResults<LeaderboardEntry> mockResults = mock(AggregationResults.class);
-        when(mockResults.getMappedResults()).thenReturn(mockEntries);
-        when(mongoTemplate.aggregate(any(Aggregation.class), eq("study_logs"), eq(LeaderboardEntry.class)))
-            .thenReturn(mockResults);
-        when(userRepository.findAllById(anyList())).thenReturn(mockUsers);
-        
-        @SuppressWarnings("unchecked")
-        AggregationResults<Map<String, Object>> countResults = mock(AggregationResults.class);
-        Map<String, Object> countMap = new HashMap<>();
-        countMap.put("count", 3L);
-        when(countResults.getUniqueMappedResult()).thenReturn(countMap);
-        when(mongoTemplate.aggregate(any(Aggregation.class), eq("study_logs"), eq(Map.class)))
-            .thenReturn((AggregationResults) countResults);
-        
-        // Mock cache miss
-        when(cacheConfig.get(anyString())).thenReturn(null);
+        mockAggregation(mockEntries, 3L);
+        when(userSummaryService.findAll(anyCollection())).thenReturn(mockUsers);
         
         // Act
         LeaderboardResponse response = leaderboardService.getLeaderboard("month", null, 10, 1, false);
@@ -162,28 +149,17 @@ class LeaderboardServiceTest {
     
     @Test
     void testGetLeaderboard_WithPagination() {
-        // Arrange
-        List<LeaderboardEntry> page2Entries = Arrays.asList(
+        // Arrange - the cached ranking holds all five users
+        List<LeaderboardEntry> rankedEntries = Arrays.asList(
+            new LeaderboardEntry("user1", 600L, 10L),
+            new LeaderboardEntry("user2", 450L, 9L),
+            new LeaderboardEntry("user3", 300L, 5L),
             new LeaderboardEntry("user4", 250L, 4L),
             new LeaderboardEntry("user5", 200L, 3L)
         );
         
-        AggregationResults<LeaderboardEntry> mockResults = mock(AggregationResults.class);
-        when(mockResults.getMappedResults()).thenReturn(page2Entries);
-        when(mongoTemplate.aggregate(any(Aggregation.class), eq("study_logs"), eq(LeaderboardEntry.class)))
-            .thenReturn(mockResults);
-        when(userRepository.findAllById(anyList())).thenReturn(Collections.emptyList());
-        
-        @SuppressWarnings("unchecked")
-        AggregationResults<Map<String, Object>> countResults = mock(AggregationResults.class);
-        Map<String, Object> countMap = new HashMap<>();
-        countMap.put("count", 5L);
-        when(countResults.getUniqueMappedResult()).thenReturn(countMap);
-        when(mongoTemplate.aggregate(any(Aggregation.class), eq("study_logs"), eq(Map.class)))
-            .thenReturn((AggregationResults) countResults);
-        
-        // Mock cache miss
-        when(cacheConfig.get(anyString())).thenReturn(null);
+        mockAggregation(rankedEntries, 5L);
+        when(userSummaryService.findAll(anyCollection())).thenReturn(Map.of());
         
         // Act
         LeaderboardResponse response = leaderboardService.getLeaderboard("all", null, 3, 2, false);
@@ -195,6 +171,8 @@ class LeaderboardServiceTest {
         assertEquals(5L, response.getTotalUsers());
         
         // Verify ranks start from 4 (page 2, limit 3)
+        assertEquals(2, response.getLeaderboard().size());
+        assertEquals("user4", response.getLeaderboard().get(0).getUserId());
         assertEquals(4, response.getLeaderboard().get(0).getRank());
         assertEquals(5, response.getLeaderboard().get(1).getRank());
     }
@@ -202,19 +180,7 @@ class LeaderboardServiceTest {
     @Test
     void testGetLeaderboard_EmptyResults() {
         // Arrange
-        AggregationResults<LeaderboardEntry> mockResults = mock(AggregationResults.class);
-        when(mockResults.getMappedResults()).thenReturn(Collections.emptyList());
-        when(mongoTemplate.aggregate(any(Aggregation.class), eq("study_logs"), eq(LeaderboardEntry.class)))
-            .thenReturn(mockResults);
-        
-        @SuppressWarnings("unchecked")
-        AggregationResults<Map<String, Object>> countResults = mock(AggregationResults.class);
-        when(countResults.getUniqueMappedResult()).thenReturn(null);
-        when(mongoTemplate.aggregate(any(Aggregation.class), eq("study_logs"), eq(Map.class)))
-            .thenReturn((AggregationResults) countResults);
-        
-        // Mock cache miss
-        when(cacheConfig.get(anyString())).thenReturn(null);
+        mockAggregation(new ArrayList<>(), null);
         
         // Act
         LeaderboardResponse response = leaderboardService.getLeaderboard("all", null, 10, 1, false);
@@ -228,22 +194,8 @@ class LeaderboardServiceTest {
     @Test
     void testGetLeaderboard_DefaultParameters() {
         // Arrange
-        AggregationResults<LeaderboardEntry> mockResults = mock(AggregationResults.class);
-        when(mockResults.getMappedResults()).thenReturn(mockEntries);
-        when(mongoTemplate.aggregate(any(Aggregation.class), eq("study_logs"), eq(LeaderboardEntry.class)))
-            .thenReturn(mockResults);
-        when(userRepository.findAllById(anyList())).thenReturn(mockUsers);
-        
-        @SuppressWarnings("unchecked")
-        AggregationResults<Map<String, Object>> countResults = mock(AggregationResults.class);
-        Map<String, Object> countMap = new HashMap<>();
-        countMap.put("count", 3L);
-        when(countResults.getUniqueMappedResult()).thenReturn(countMap);
-        when(mongoTemplate.aggregate(any(Aggregation.class), eq("study_logs"), eq(Map.class)))
-            .thenReturn((AggregationResults) countResults);
-        
-        // Mock cache miss
-        when(cacheConfig.get(anyString())).thenReturn(null);
+        mockAggregation(mockEntries, 3L);
+        when(userSummaryService.findAll(anyCollection())).thenReturn(mockUsers);
         
         // Act - pass nulls to test defaults
         LeaderboardResponse response = leaderboardService.getLeaderboard(null, null, null, null, null);
@@ -258,22 +210,8 @@ class LeaderboardServiceTest {
     @Test
     void testGetLeaderboard_LimitExceedsMax() {
         // Arrange
-        AggregationResults<LeaderboardEntry> mockResults = mock(AggregationResults.class);
-        when(mockResults.getMappedResults()).thenReturn(mockEntries);
-        when(mongoTemplate.aggregate(any(Aggregation.class), eq("study_logs"), eq(LeaderboardEntry.class)))
-            .thenReturn(mockResults);
-        when(userRepository.findAllById(anyList())).thenReturn(mockUsers);
-        
-        @SuppressWarnings("unchecked")
-        AggregationResults<Map<String, Object>> countResults = mock(AggregationResults.class);
-        Map<String, Object> countMap = new HashMap<>();
-        countMap.put("count", 3L);
-        when(countResults.getUniqueMappedResult()).thenReturn(countMap);
-        when(mongoTemplate.aggregate(any(Aggregation.class), eq("study_logs"), eq(Map.class)))
-            .thenReturn((AggregationResults) countResults);
-        
-        // Mock cache miss
-        when(cacheConfig.get(anyString())).thenReturn(null);
+        mockAggregation(mockEntries, 3L);
+        when(userSummaryService.findAll(anyCollection())).thenReturn(mockUsers);
         
         // Act - request limit > 100
         LeaderboardResponse response = leaderboardService.getLeaderboard("all", null, 150, 1, false);
@@ -283,12 +221,544 @@ class LeaderboardServiceTest {
         assertEquals(100, response.getLimit());
     }
     
-    // Helper method
-    private User createUser(String id, String username) {
-        User user = new User();
-        user.setId(id);
-        user.setUsername(username);
-        user.setEmail(username + "@test.com");
-        return user;
+    @Test
+    void testGetLeaderboard_FacetReturnsPageAndCountInOneRoundTrip() {
+        // Arrange
+        mockAggregation(mockEntries, 3L);
+        when(userSummaryService.findAll(anyCollection())).thenReturn(mockUsers);
+        
+        LeaderboardResponse expected = new LeaderboardResponse(
+            Arrays.asList(
+                new LeaderboardEntry("user1", "alice", 600L, 10L, 60.0, 1),
+                new LeaderboardEntry("user2", "bob", 450L, 9L, 50.0, 2),
+                new LeaderboardEntry("user3", "charlie", 300L, 5L, 60.0, 3)
+            ),
+            "all", 1, 10, 3L
+        );
+        
+        // Act
+        LeaderboardResponse response = leaderboardService.getLeaderboard("all", null, 10, 1, false);
+        
+        // Assert - enriched, ranked page and total count from a single round trip
+        assertEquals(expected, response);
+        
+        ArgumentCaptor<Aggregation> captor = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate, times(1)).aggregate(captor.capture(), eq(LeaderboardRollup.COLLECTION), eq(LeaderboardPageResult.class));
+        verifyNoMoreInteractions(mongoTemplate);
+        
+        // $match and $group run once, shared by the page and count branches
+        List<Document> pipeline = captor.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertTrue(pipeline.get(0).containsKey("$match"));
+        assertTrue(pipeline.get(1).containsKey("$group"));
+        Document facet = pipeline.get(2).get("$facet", Document.class);
+        assertNotNull(facet);
+        assertTrue(facet.containsKey("entries"));
+        assertEquals(List.of(new Document("$count", "count")), facet.get("total"));
+    }
+    
+    @Test
+    void testGetLeaderboard_SecondCallServedFromCache() {
+        // Arrange
+        mockAggregation(mockEntries, 3L);
+        when(userSummaryService.findAll(anyCollection())).thenReturn(mockUsers);
+        
+        // Act
+        LeaderboardResponse first = leaderboardService.getLeaderboard("all", null, 10, 1, false);
+        LeaderboardResponse second = leaderboardService.getLeaderboard("all", null, 10, 1, false);
+        
+        // Assert - one aggregation, recorded as one miss (load) and one hit
+        assertEquals(first, second);
+        verify(mongoTemplate, times(1)).aggregate(any(Aggregation.class), anyString(), eq(LeaderboardPageResult.class));
+        cacheConfig.cleanupExpiredEntries(); // apply pending weight updates from the async load
+        Map<String, Object> stats = leaderboardService.getCacheStats();
+        assertEquals(1L, stats.get("hitCount"));
+        assertEquals(1L, stats.get("missCount"));
+        assertEquals(1L, stats.get("loadCount"));
+        assertEquals(4L, stats.get("weight"));
+    }
+    
+    @Test
+    void testGetLeaderboard_ConcurrentMissesRunOneAggregation() throws Exception {
+        // Arrange - the aggregation blocks until every caller has been started
+        int callers = 16;
+        CountDownLatch started = new CountDownLatch(callers);
+        CountDownLatch release = new CountDownLatch(1);
+        
+        @SuppressWarnings("unchecked")
+        AggregationResults<LeaderboardPageResult> mockResults = mock(AggregationResults.class);
+        when(mockResults.getUniqueMappedResult()).thenReturn(new LeaderboardPageResult(mockEntries, 3L));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(LeaderboardRollup.COLLECTION), eq(LeaderboardPageResult.class)))
+            .thenAnswer(invocation -> {
+                release.await(5, TimeUnit.SECONDS);
+                return mockResults;
+            });
+        when(userSummaryService.findAll(anyCollection())).thenReturn(mockUsers);
+        
+        // Act - N parallel requests for the same missing key
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<LeaderboardResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                futures.add(executor.submit(() -> {
+                    started.countDown();
+                    return leaderboardService.getLeaderboard("week", "Mathematics", 10, 1, false);
+                }));
+            }
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            release.countDown();
+            
+            // Assert - every caller got a page of the single computed ranking
+            LeaderboardResponse first = futures.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<LeaderboardResponse> future : futures) {
+                assertEquals(first, future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        verify(mongoTemplate, times(1)).aggregate(any(Aggregation.class), eq(LeaderboardRollup.COLLECTION), eq(LeaderboardPageResult.class));
+        verify(userSummaryService, times(1)).findAll(anyCollection());
+        assertEquals(1L, leaderboardService.getCacheStats().get("loadCount"));
+    }
+    
+    @Test
+    void testGetLeaderboard_PagesAndAnonymizedViewsShareOneRanking() {
+        // Arrange
+        mockAggregation(mockEntries, 3L);
+        when(userSummaryService.findAll(anyCollection())).thenReturn(mockUsers);
+        
+        // Act - different pages, limits and anonymize flags for the same (period, subject)
+        LeaderboardResponse top = leaderboardService.getLeaderboard("all", null, 10, 1, false);
+        LeaderboardResponse second = leaderboardService.getLeaderboard("all", null, 1, 2, false);
+        LeaderboardResponse anonymized = leaderboardService.getLeaderboard("all", null, 2, 1, true);
+        LeaderboardResponse again = leaderboardService.getLeaderboard("all", null, 10, 1, false);
+        
+        // Assert - one aggregation and one username lookup served every view
+        verify(mongoTemplate, times(1)).aggregate(any(Aggregation.class), eq(LeaderboardRollup.COLLECTION), eq(LeaderboardPageResult.class));
+        verify(userSummaryService, times(1)).findAll(anyCollection());
+        assertEquals(1L, leaderboardService.getCacheStats().get("size"));
+        
+        assertEquals(1, second.getLeaderboard().size());
+        assertEquals("bob", second.getLeaderboard().get(0).getUsername());
+        assertEquals(2, second.getLeaderboard().get(0).getRank());
+        
+        assertEquals(2, anonymized.getLeaderboard().size());
+        assertEquals("User_ser1", anonymized.getLeaderboard().get(0).getUsername());
+        assertEquals(1, anonymized.getLeaderboard().get(0).getRank());
+        
+        // Anonymizing a slice never leaks into the cached ranking
+        assertEquals("alice", again.getLeaderboard().get(0).getUsername());
+        assertEquals(top, again);
+    }
+    
+    @Test
+    void testGetLeaderboard_PageBeyondRankingDepthQueriedDirectly() {
+        // Arrange - more users than the cached ranking holds
+        mockAggregation(mockEntries, 5000L);
+        when(userSummaryService.findAll(anyCollection())).thenReturn(mockUsers);
+        int page = LeaderboardService.RANKING_DEPTH / 100 + 1;
+        
+        // Act
+        LeaderboardResponse response = leaderboardService.getLeaderboard("all", null, 100, page, false);
+        
+        // Assert - ranking load plus one direct page query, ranked from the page offset
+        verify(mongoTemplate, times(2)).aggregate(any(Aggregation.class), eq(LeaderboardRollup.COLLECTION), eq(LeaderboardPageResult.class));
+        assertEquals(5000L, response.getTotalUsers());
+        assertEquals(LeaderboardService.RANKING_DEPTH + 1, response.getLeaderboard().get(0).getRank());
+    }
+    
+    @Test
+    void testGetLeaderboard_OverflowingPageReturnsEmptyPage() {
+        // Arrange - (page - 1) * limit does not fit in an int
+        mockAggregation(mockEntries, 5000L);
+        when(userSummaryService.findAll(anyCollection())).thenReturn(mockUsers);
+        
+        // Act
+        LeaderboardResponse response = leaderboardService.getLeaderboard("all", null, 100, 30_000_000, false);
+        
+        // Assert - no direct page query past the last user
+        assertTrue(response.getLeaderboard().isEmpty());
+        assertEquals(5000L, response.getTotalUsers());
+        assertNull(response.getNextCursor());
+        verify(mongoTemplate, times(1)).aggregate(any(Aggregation.class), eq(LeaderboardRollup.COLLECTION), eq(LeaderboardPageResult.class));
+    }
+    
+    @Test
+    void testGetLeaderboard_CursorResumesAfterLastRow() {
+        // Arrange - user2 and user3 tie on minutes, broken by userId
+        List<LeaderboardEntry> rankedEntries = Arrays.asList(
+            new LeaderboardEntry("user1", 600L, 10L),
+            new LeaderboardEntry("user2", 450L, 9L),
+            new LeaderboardEntry("user3", 450L, 5L),
+            new LeaderboardEntry("user4", 250L, 4L)
+        );
+        mockAggregation(rankedEntries, 4L);
+        when(userSummaryService.findAll(anyCollection())).thenReturn(mockUsers);
+        
+        // Act - walk the leaderboard two rows at a time
+        LeaderboardResponse first = leaderboardService.getLeaderboard("all", null, 2, 1, false);
+        LeaderboardResponse second = leaderboardService.getLeaderboard("all", null, 2, null, false, first.getNextCursor(), null);
+        
+        // Assert
+        assertNotNull(first.getNextCursor());
+        assertEquals("user3", second.getLeaderboard().get(0).getUserId());
+        assertEquals(3, second.getLeaderboard().get(0).getRank());
+        assertEquals("user4", second.getLeaderboard().get(1).getUserId());
+        assertNull(second.getPage());
+        assertNull(second.getNextCursor());
+        verify(mongoTemplate, times(1)).aggregate(any(Aggregation.class), eq(LeaderboardRollup.COLLECTION), eq(LeaderboardPageResult.class));
+    }
+    
+    @Test
+    void testGetLeaderboard_CursorBeyondRankingDepthUsesRangeMatch() {
+        // Arrange - cursor past the cached ranking
+        mockAggregation(mockEntries, 5000L);
+        when(userSummaryService.findAll(anyCollection())).thenReturn(mockUsers);
+        String cursor = new LeaderboardCursor(5L, "user9", 2000).encode();
+        
+        // Act
+        LeaderboardResponse response = leaderboardService.getLeaderboard("all", null, 3, null, false, cursor, null);
+        
+        // Assert - direct page resumes by range match, without $skip
+        ArgumentCaptor<Aggregation> captor = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate, times(2)).aggregate(captor.capture(), eq(LeaderboardRollup.COLLECTION), eq(LeaderboardPageResult.class));
+        List<Document> pipeline = captor.getAllValues().get(1).toPipeline(Aggregation.DEFAULT_CONTEXT);
+        List<?> pageStages = pipeline.get(2).get("$facet", Document.class).get("entries", List.class);
+        assertTrue(((Document) pageStages.get(0)).containsKey("$match"));
+        assertTrue(pageStages.stream().noneMatch(stage -> ((Document) stage).containsKey("$skip")));
+        
+        assertEquals(2001, response.getLeaderboard().get(0).getRank());
+        assertNotNull(response.getNextCursor());
+    }
+    
+    @Test
+    void testAggregatePage_PartitionsMergedIntoOnePage() {
+        // Arrange - four partitions, each returning its own top rows and count
+        ReflectionTestUtils.setField(leaderboardService, "aggregationPartitions", 4);
+        List<AggregationResults<LeaderboardPageResult>> partitionResults = new ArrayList<>();
+        for (LeaderboardPageResult result : List.of(
+                new LeaderboardPageResult(List.of(new LeaderboardEntry("u0", 900L, 9L), new LeaderboardEntry("u4", 100L, 1L)), 2L),
+                new LeaderboardPageResult(List.of(new LeaderboardEntry("u1", 500L, 5L), new LeaderboardEntry("u5", 400L, 4L)), 7L),
+                new LeaderboardPageResult(List.of(new LeaderboardEntry("u2", 500L, 5L)), 1L),
+                new LeaderboardPageResult(List.of(), 0L))) {
+            AggregationResults<LeaderboardPageResult> results = mock(AggregationResults.class);
+            when(results.getUniqueMappedResult()).thenReturn(result);
+            partitionResults.add(results);
+        }
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(LeaderboardRollup.COLLECTION), eq(LeaderboardPageResult.class)))
+            .thenReturn(partitionResults.get(0), partitionResults.get(1), partitionResults.get(2), partitionResults.get(3));
+        
+        // Act - second page of 2
+        LeaderboardPageResult page = leaderboardService.aggregatePage(LeaderboardWindow.of("all", LocalDate.now()), null, 2, 2, null);
+        
+        // Assert - one pipeline per partition, each limited to its top 4 and matching its userBucket range
+        ArgumentCaptor<Aggregation> captor = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate, times(4)).aggregate(captor.capture(), eq(LeaderboardRollup.COLLECTION), eq(LeaderboardPageResult.class));
+        Set<String> matches = new HashSet<>();
+        for (Aggregation aggregation : captor.getAllValues()) {
+            List<Document> pipeline = aggregation.toPipeline(Aggregation.DEFAULT_CONTEXT);
+            matches.add(pipeline.get(0).toJson());
+            assertTrue(pipeline.get(0).toJson().contains("\"userBucket\": {\"$gte\""));
+            List<?> pageStages = pipeline.get(2).get("$facet", Document.class).get("entries", List.class);
+            assertTrue(pageStages.contains(new Document("$limit", 4L)) || pageStages.contains(new Document("$limit", 4)));
+        }
+        
+        assertEquals(4, matches.size());
+        
+        // Ranking is u0, u1, u2 (tie broken by userId), u5, u4
+        assertEquals(List.of("u2", "u5"), page.getEntries().stream().map(LeaderboardEntry::getUserId).toList());
+        assertEquals(10L, page.getTotalUsers());
+    }
+    
+    @Test
+    void testBuildPartitionCriteria_RangesCoverEveryUserBucketOnce() {
+        for (int partitions = 1; partitions <= LeaderboardService.MAX_PARTITIONS; partitions++) {
+            // Act
+            int[] owners = new int[LeaderboardRollup.USER_BUCKETS];
+            Arrays.fill(owners, -1);
+            for (int partition = 0; partition < partitions; partition++) {
+                Document range = LeaderboardService.buildPartitionCriteria(partition, partitions)
+                    .getCriteriaObject().get("userBucket", Document.class);
+                for (int bucket = range.getInteger("$gte"); bucket < range.getInteger("$lt"); bucket++) {
+                    assertEquals(-1, owners[bucket]);
+                    owners[bucket] = partition;
+                }
+            }
+            
+            // Assert
+            int expectedPartitions = partitions;
+            assertTrue(Arrays.stream(owners).allMatch(owner -> owner >= 0 && owner < expectedPartitions));
+        }
+    }
+    
+    @Test
+    void testGetLeaderboard_MalformedCursorRejected() {
+        assertThrows(IllegalArgumentException.class,
+            () -> leaderboardService.getLeaderboard("all", null, 10, null, false, "not-a-cursor", null));
+        verifyNoInteractions(mongoTemplate);
+    }
+    
+    @Test
+    void testGetLeaderboard_SameWindowSharedAcrossZoneSpellings() {
+        // Arrange
+        mockAggregation(mockEntries, 3L);
+        when(userSummaryService.findAll(anyCollection())).thenReturn(mockUsers);
+        
+        // Act - "UTC" and "Etc/UTC" resolve to the same day and therefore the same window
+        leaderboardService.getLeaderboard("this-week", null, 10, 1, false, null, "UTC");
+        leaderboardService.getLeaderboard("this-week", null, 10, 1, false, null, "Etc/UTC");
+        
+        // Assert - one aggregation over [Monday, next Monday) in day buckets
+        ArgumentCaptor<Aggregation> captor = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate, times(1)).aggregate(captor.capture(), eq(LeaderboardRollup.COLLECTION), eq(LeaderboardPageResult.class));
+        LocalDate monday = LocalDate.now(ZoneOffset.UTC).with(DayOfWeek.MONDAY);
+        Document day = captor.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT).get(0)
+            .get("$match", Document.class).get("day", Document.class);
+        assertEquals(toStartOfDay(monday), day.get("$gte"));
+        assertEquals(toStartOfDay(monday.plusWeeks(1)), day.get("$lt"));
+    }
+    
+    @Test
+    void testGetLeaderboard_UnknownZoneRejected() {
+        assertThrows(IllegalArgumentException.class,
+            () -> leaderboardService.getLeaderboard("week", null, 10, 1, false, null, "Mars/Olympus"));
+        verifyNoInteractions(mongoTemplate);
+    }
+    
+    @Test
+    void testOnStudyLogChanged_InvalidatesOnlyAffectedWindowsAndSubjects() {
+        // Arrange - cached rankings for several windows and subjects
+        mockAggregation(mockEntries, 3L);
+        when(userSummaryService.findAll(anyCollection())).thenReturn(mockUsers);
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        leaderboardService.getLeaderboard("all", "Physics", 10, 1, false);
+        leaderboardService.getLeaderboard("week", "Physics", 10, 1, false);
+        leaderboardService.getLeaderboard("week", null, 10, 1, false);
+        leaderboardService.getLeaderboard("this-month", "Mathematics", 10, 1, false);
+        leaderboardService.getLeaderboard("all", "Chemistry", 10, 1, false);
+        
+        // A year-old Physics log moved to today's Mathematics
+        StudyLog previous = StudyLog.builder()
+            .userId("user1").subject("Physics").duration(30).date(today.minusYears(1)).build();
+        StudyLog current = StudyLog.builder()
+            .userId("user1").subject("Mathematics").duration(45).date(today).build();
+        
+        // Act
+        leaderboardService.onStudyLogChanged(new StudyLogChangedEvent("user1", previous, current));
+        
+        // Assert - the old date only falls in the unbounded window
+        assertNull(cached("all", "Physics", today));
+        assertNotNull(cached("week", "Physics", today));
+        
+        // The new date falls in every window containing today, for its subject and "all"
+        assertNull(cached("week", null, today));
+        assertNull(cached("this-month", "Mathematics", today));
+        
+        // Other subjects are untouched
+        assertNotNull(cached("all", "Chemistry", today));
+    }
+    
+    @Test
+    void testGetAroundMe_ReturnsNeighboursWithRanks() {
+        // Arrange - five ranked users, unsorted as the standings aggregation returns them
+        mockStandings(Arrays.asList(
+            new LeaderboardEntry("user3", 300L, 5L),
+            new LeaderboardEntry("user1", 600L, 10L),
+            new LeaderboardEntry("user5", 200L, 3L),
+            new LeaderboardEntry("user2", 450L, 9L),
+            new LeaderboardEntry("user4", 250L, 4L)
+        ));
+        when(userSummaryService.findAll(anyCollection())).thenReturn(mockUsers);
+        
+        // Act
+        LeaderboardResponse response = leaderboardService.getAroundMe("user3", "all", null, 1, true, null);
+        
+        // Assert - user3 is third, with one neighbour on each side
+        assertEquals(5L, response.getTotalUsers());
+        assertEquals(3, response.getLeaderboard().size());
+        assertEquals("user2", response.getLeaderboard().get(0).getUserId());
+        assertEquals(2, response.getLeaderboard().get(0).getRank());
+        assertEquals(3, response.getLeaderboard().get(1).getRank());
+        assertEquals(4, response.getLeaderboard().get(2).getRank());
+        
+        // Only other users are anonymized
+        assertEquals("charlie", response.getLeaderboard().get(1).getUsername());
+        assertEquals("User_ser2", response.getLeaderboard().get(0).getUsername());
+    }
+    
+    @Test
+    void testGetMyRank_FollowsWritesWithoutReloading() {
+        // Arrange
+        mockStandings(new ArrayList<>(mockEntries));
+        when(userSummaryService.findAll(anyCollection())).thenReturn(mockUsers);
+        assertEquals(3, leaderboardService.getMyRank("user3", "week", null, null).getLeaderboard().get(0).getRank());
+        
+        // Act - user3 logs 400 minutes today and takes first place
+        StudyLog log = StudyLog.builder()
+            .userId("user3").subject("Mathematics").duration(400).date(LocalDate.now(ZoneOffset.UTC)).build();
+        StudyLogChangedEvent event = new StudyLogChangedEvent("user3", null, log);
+        rankIndex.onStudyLogChanged(event);
+        rankIndex.afterStudyLogChanged(event);
+        LeaderboardResponse response = leaderboardService.getMyRank("user3", "week", null, null);
+        
+        // Assert - applied in place; the standings were aggregated once
+        assertEquals(1, response.getLeaderboard().size());
+        assertEquals(1, response.getLeaderboard().get(0).getRank());
+        assertEquals(700L, response.getLeaderboard().get(0).getTotalMinutes());
+        verify(mongoTemplate, times(1)).aggregate(any(Aggregation.class), eq(LeaderboardRollup.COLLECTION), eq(LeaderboardEntry.class));
+    }
+    
+    @Test
+    void testGetMyRank_UnrankedUserGetsNoEntry() {
+        // Arrange
+        mockStandings(new ArrayList<>(mockEntries));
+        
+        // Act
+        LeaderboardResponse response = leaderboardService.getMyRank("newcomer", "all", null, null);
+        
+        // Assert
+        assertTrue(response.getLeaderboard().isEmpty());
+        assertEquals(3L, response.getTotalUsers());
+    }
+    
+    @Test
+    void testGetStats_PercentilesFollowWrites() {
+        // Arrange - 600, 450 and 300 minutes
+        mockStandings(new ArrayList<>(mockEntries));
+        
+        // Act
+        LeaderboardStatsResponse before = leaderboardService.getStats("user3", "all", null, null);
+        StudyLog log = StudyLog.builder()
+            .userId("user4").subject("Mathematics").duration(5).date(LocalDate.now(ZoneOffset.UTC)).build();
+        rankIndex.onStudyLogChanged(new StudyLogChangedEvent("user4", null, log));
+        LeaderboardStatsResponse after = leaderboardService.getStats("user3", "all", null, null);
+        
+        // Assert - medians are bucket midpoints (448-479 holds 450)
+        assertEquals(3L, before.getTotalUsers());
+        assertEquals(463L, before.getP50());
+        assertEquals(300L, before.getMyMinutes());
+        assertEquals(100.0 / 6, before.getMyPercentile(), 1e-9);
+        assertEquals(4L, after.getTotalUsers());
+        assertEquals(37.5, after.getMyPercentile(), 1e-9);
+        assertEquals(List.of(
+            new LeaderboardHistogramBucket(4L, 8L, 1L),
+            new LeaderboardHistogramBucket(256L, 512L, 2L),
+            new LeaderboardHistogramBucket(512L, 1024L, 1L)
+        ), after.getHistogram());
+    }
+    
+    // Helper methods
+    @SuppressWarnings("unchecked")
+    private void mockStandings(List<LeaderboardEntry> entries) {
+        AggregationResults<LeaderboardEntry> mockResults = mock(AggregationResults.class);
+        when(mockResults.getMappedResults()).thenReturn(entries);
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(LeaderboardRollup.COLLECTION), eq(LeaderboardEntry.class)))
+            .thenReturn(mockResults);
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Test
+    void testGetLeaderboards_GroupsSubjectsOfOneWindowIntoOneAggregation() {
+        // Arrange - two subjects of this week (grouped) and the all-subjects leaderboard (own load)
+        mockAggregation(mockEntries, 3L);
+        when(userSummaryService.findAll(anyCollection())).thenReturn(mockUsers);
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(LeaderboardRollup.COLLECTION), eq(Document.class)))
+            .thenReturn(new AggregationResults<>(List.of(
+                subjectRow("user2", "Mathematics", 200L, 4L, 2L),
+                subjectRow("user1", "Mathematics", 120L, 2L, 2L),
+                subjectRow("user3", "Physics", 90L, 3L, 1L)
+            ), new Document()));
+        List<LeaderboardQuery> queries = List.of(
+            new LeaderboardQuery("week", "Mathematics", 10, 1),
+            new LeaderboardQuery("week", "Physics", 10, 1),
+            new LeaderboardQuery("all", null, 2, 1)
+        );
+        
+        // Act
+        LeaderboardBatchResponse response = leaderboardService.getLeaderboards(queries, false, null);
+        
+        // Assert - answers in query order, subjects from one $setWindowFields aggregation
+        ArgumentCaptor<Aggregation> grouped = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate, times(1)).aggregate(grouped.capture(), eq(LeaderboardRollup.COLLECTION), eq(Document.class));
+        assertTrue(grouped.getValue().toString().contains("$setWindowFields"));
+        verify(mongoTemplate, times(1)).aggregate(any(Aggregation.class), anyString(), eq(LeaderboardPageResult.class));
+        
+        List<LeaderboardResponse> results = response.getResults();
+        assertEquals(3, results.size());
+        assertEquals(List.of("bob", "alice"), results.get(0).getLeaderboard().stream()
+            .map(LeaderboardEntry::getUsername).toList());
+        assertEquals(2L, results.get(0).getTotalUsers());
+        assertEquals(1, results.get(1).getLeaderboard().size());
+        assertEquals("charlie", results.get(1).getLeaderboard().get(0).getUsername());
+        assertEquals(1, results.get(1).getLeaderboard().get(0).getRank());
+        assertEquals(2, results.get(2).getLeaderboard().size());
+        assertEquals(3L, results.get(2).getTotalUsers());
+        
+        // Act again - everything is cached now
+        leaderboardService.getLeaderboards(queries, true, null);
+        verify(mongoTemplate, times(1)).aggregate(any(Aggregation.class), anyString(), eq(Document.class));
+        verify(mongoTemplate, times(1)).aggregate(any(Aggregation.class), anyString(), eq(LeaderboardPageResult.class));
+    }
+    
+    @Test
+    void testGetLeaderboards_FailedQueryReportsErrorWithoutFailingBatch() {
+        // Arrange - the Mathematics ranking cannot be loaded
+        mockAggregation(mockEntries, 3L);
+        when(userSummaryService.findAll(anyCollection())).thenReturn(mockUsers);
+        when(mongoTemplate.aggregate(argThat((Aggregation aggregation) -> aggregation.toString().contains("Mathematics")),
+                eq(LeaderboardRollup.COLLECTION), eq(LeaderboardPageResult.class)))
+            .thenThrow(new IllegalStateException("MongoDB unavailable"));
+        List<LeaderboardQuery> queries = List.of(
+            new LeaderboardQuery("all", null, 10, 1),
+            new LeaderboardQuery("week", "Mathematics", 10, 1)
+        );
+        
+        // Act
+        LeaderboardBatchResponse response = leaderboardService.getLeaderboards(queries, false, null);
+        
+        // Assert
+        assertEquals(3, response.getResults().get(0).getLeaderboard().size());
+        assertNull(response.getResults().get(1));
+        assertNull(response.getErrors().get(0));
+        assertNotNull(response.getErrors().get(1));
+    }
+    
+    @Test
+    void testGetLeaderboards_RejectsEmptyOrOversizedBatch() {
+        // Arrange
+        List<LeaderboardQuery> tooMany = Collections.nCopies(
+            LeaderboardService.MAX_BATCH_QUERIES + 1, new LeaderboardQuery("all", null, 10, 1));
+        
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> leaderboardService.getLeaderboards(List.of(), false, null));
+        assertThrows(IllegalArgumentException.class, () -> leaderboardService.getLeaderboards(tooMany, false, null));
+        assertThrows(IllegalArgumentException.class, () -> leaderboardService.getLeaderboards(
+            List.of(new LeaderboardQuery("year", null, 10, 1)), false, null));
+        verifyNoInteractions(mongoTemplate);
+    }
+    
+    private Document subjectRow(String userId, String subject, long minutes, long sessions, long subjectUsers) {
+        return new Document("userId", userId)
+            .append("subject", subject)
+            .append("totalMinutes", minutes)
+            .append("sessionCount", sessions)
+            .append("subjectUsers", subjectUsers)
+            .append("avgMinutesPerSession", (double) minutes / sessions);
+    }
+    
+    private void mockAggregation(List<LeaderboardEntry> entries, Long totalUsers) {
+        AggregationResults<LeaderboardPageResult> mockResults = mock(AggregationResults.class);
+        when(mockResults.getUniqueMappedResult()).thenReturn(new LeaderboardPageResult(entries, totalUsers));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(LeaderboardRollup.COLLECTION), eq(LeaderboardPageResult.class)))
+            .thenReturn(mockResults);
+    }
+    
+    private LeaderboardRanking cached(String period, String subject, LocalDate today) {
+        return cacheConfig.getIfPresent(CacheConfig.generateCacheKey(LeaderboardWindow.of(period, today), subject));
+    }
+    
+    private Date toStartOfDay(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
     }
 }
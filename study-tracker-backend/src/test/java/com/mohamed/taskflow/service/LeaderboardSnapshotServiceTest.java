@@ -0,0 +1,175 @@
+package com.mohamed.taskflow.service;
+
+import com.mohamed.taskflow.config.CacheConfig;
+import com.mohamed.taskflow.dto.LeaderboardEntry;
+import com.mohamed.taskflow.dto.LeaderboardRanking;
+import com.mohamed.taskflow.dto.LeaderboardWindow;
+import com.mohamed.taskflow.util.UserIdDictionary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for LeaderboardSnapshotService file format and restore
+ */
+@ExtendWith(MockitoExtension.class)
+class LeaderboardSnapshotServiceTest {
+    
+    @Mock
+    private CacheConfig cacheConfig;
+    
+    @Mock
+    private LeaderboardService leaderboardService;
+    
+    @TempDir
+    Path tempDir;
+    
+    private final UserIdDictionary dictionary = new UserIdDictionary();
+    
+    private LeaderboardSnapshotService snapshotService;
+    
+    @BeforeEach
+    void setUp() {
+        snapshotService = new LeaderboardSnapshotService(cacheConfig, leaderboardService, dictionary);
+        ReflectionTestUtils.setField(snapshotService, "snapshotPath", tempDir.resolve("snapshot.bin").toString());
+    }
+    
+    @Test
+    void testWriteAndRead_RoundTripsRankings() throws IOException {
+        // Arrange
+        Map<String, LeaderboardRanking> rankings = new LinkedHashMap<>();
+        rankings.put("all|all", new LeaderboardRanking(List.of(
+            new LeaderboardEntry("user1", "alice", 300L, 4L, 75.0, 1),
+            new LeaderboardEntry("user2", null, 120L, 3L, 40.0, 2)
+        ), 2L, dictionary));
+        rankings.put("all|Physics", new LeaderboardRanking(List.of(), 0L, dictionary));
+        
+        // Act
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LeaderboardSnapshotService.write(rankings, out);
+        Map<String, LeaderboardRanking> read = LeaderboardSnapshotService.read(new ByteArrayInputStream(out.toByteArray()), dictionary);
+        
+        // Assert
+        assertEquals(List.of("all|all", "all|Physics"), List.copyOf(read.keySet()));
+        assertEquals(2L, read.get("all|all").getTotalUsers());
+        assertEquals(rankings.get("all|all").getEntries(), read.get("all|all").getEntries());
+        assertTrue(read.get("all|Physics").getEntries().isEmpty());
+    }
+    
+    @Test
+    void testRead_RejectsCorruptedSnapshot() throws IOException {
+        // Arrange - flip one byte of a username
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LeaderboardSnapshotService.write(Map.of("all|all", new LeaderboardRanking(List.of(
+            new LeaderboardEntry("user1", "alice", 300L, 4L, 75.0, 1)
+        ), 1L, dictionary)), out);
+        byte[] bytes = out.toByteArray();
+        bytes[bytes.length - 30] ^= 0x01;
+        
+        // Act & Assert
+        assertThrows(IOException.class, () -> LeaderboardSnapshotService.read(new ByteArrayInputStream(bytes), dictionary));
+    }
+    
+    @Test
+    void testRead_RejectsCountsBeyondRemainingBytesBeforeAllocating() throws IOException {
+        for (int entryCount : new int[] { -1, Integer.MAX_VALUE }) {
+            // Arrange - a well-formed checksum over a ranking claiming an impossible entry count
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(body);
+            out.writeInt(LeaderboardSnapshotService.MAGIC);
+            out.writeInt(LeaderboardSnapshotService.FORMAT_VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(1);
+            out.writeUTF("all|all");
+            out.writeLong(1L);
+            out.writeInt(entryCount);
+            byte[] bytes = withChecksum(body.toByteArray());
+            
+            // Act & Assert
+            assertThrows(IOException.class, () -> LeaderboardSnapshotService.read(new ByteArrayInputStream(bytes), dictionary));
+        }
+    }
+    
+    @Test
+    void testRestoreSnapshot_SkipsMalformedKeys() {
+        // Arrange - keys without a window separator or with an unparseable date
+        String allTime = CacheConfig.generateCacheKey(LeaderboardWindow.of("all", LocalDate.now()), null);
+        Map<String, LeaderboardRanking> rankings = new LinkedHashMap<>();
+        for (String key : List.of("no-separator", "2024-13-01..2024-13-07|all", allTime)) {
+            rankings.put(key, new LeaderboardRanking(List.of(), 0L, dictionary));
+        }
+        when(cacheConfig.snapshot()).thenReturn(rankings);
+        when(cacheConfig.restore(anyString(), any(), any())).thenReturn(true);
+        snapshotService.writeSnapshot();
+        
+        // Act
+        assertDoesNotThrow(() -> snapshotService.restoreSnapshot());
+        
+        // Assert
+        verify(cacheConfig).restore(eq(allTime), any(), any());
+        verify(cacheConfig, times(1)).restore(anyString(), any(), any());
+    }
+    
+    @Test
+    void testRestoreSnapshot_GarbageFileIgnored() throws IOException {
+        // Arrange
+        Files.write(tempDir.resolve("snapshot.bin"), new byte[] { 0x4C, 0x42, 0x53 });
+        
+        // Act & Assert
+        assertDoesNotThrow(() -> snapshotService.restoreSnapshot());
+        verifyNoInteractions(cacheConfig);
+    }
+    
+    @Test
+    void testRestoreSnapshot_RestoresOnlyWindowsThatCanStillBeCurrent() {
+        // Arrange - a snapshot holding all-time, this week's and a long-gone week's rankings
+        LocalDate today = LocalDate.now(LeaderboardWindow.DEFAULT_ZONE);
+        String allTime = CacheConfig.generateCacheKey(LeaderboardWindow.of("all", today), null);
+        String thisWeek = CacheConfig.generateCacheKey(LeaderboardWindow.of("week", today), "Physics");
+        String oldWeek = CacheConfig.generateCacheKey(LeaderboardWindow.of("week", today.minusDays(10)), null);
+        Map<String, LeaderboardRanking> rankings = new LinkedHashMap<>();
+        for (String key : List.of(allTime, thisWeek, oldWeek)) {
+            rankings.put(key, new LeaderboardRanking(List.of(), 0L, dictionary));
+        }
+        when(cacheConfig.snapshot()).thenReturn(rankings);
+        when(cacheConfig.restore(anyString(), any(), any())).thenReturn(true);
+        snapshotService.writeSnapshot();
+        
+        // Act
+        snapshotService.restoreSnapshot();
+        
+        // Assert
+        verify(cacheConfig).restore(eq(allTime), any(), any());
+        verify(cacheConfig).restore(eq(thisWeek), any(), any());
+        verify(cacheConfig, never()).restore(eq(oldWeek), any(), any());
+    }
+    
+    private static byte[] withChecksum(byte[] body) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(body);
+        new DataOutputStream(out).writeLong(crc.getValue());
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,82 @@
+package com.mohamed.taskflow.service;
+
+import com.mohamed.taskflow.dto.LeaderboardDeltaBatch;
+import com.mohamed.taskflow.dto.LeaderboardRankDelta;
+import com.mohamed.taskflow.event.LeaderboardRankChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for LeaderboardStreamService batching and fan-out
+ */
+@ExtendWith(MockitoExtension.class)
+class LeaderboardStreamServiceTest {
+    
+    @Mock
+    private LeaderboardService leaderboardService;
+    
+    private LeaderboardStreamService streamService;
+    
+    @BeforeEach
+    void setUp() {
+        streamService = spy(new LeaderboardStreamService(leaderboardService));
+    }
+    
+    @Test
+    void testFlush_MergesChangesPerUserAndRoutesByChannel() {
+        // Arrange - one subscriber on the weekly channel, one on a Physics channel
+        when(leaderboardService.resolveChannel("week", null, null)).thenReturn("week-key");
+        when(leaderboardService.resolveChannel("all", "Physics", null)).thenReturn("physics-key");
+        when(leaderboardService.resolveUsernames(anyList())).thenReturn(Map.of("user1", "alice"));
+        streamService.subscribe("week", null, null, false);
+        streamService.subscribe("all", "Physics", null, false);
+        
+        // Two writes by user1 within one batch window, and a change nobody follows
+        streamService.onRankChanged(new LeaderboardRankChangedEvent("week-key", "user1", 7, 100L, 5, 145L, 3L, 20L));
+        streamService.onRankChanged(new LeaderboardRankChangedEvent("week-key", "user1", 5, 145L, 4, 160L, 4L, 20L));
+        streamService.onRankChanged(new LeaderboardRankChangedEvent("other-key", "user2", 0, 0L, 21, 30L, 1L, 21L));
+        
+        // Act
+        streamService.flush();
+        
+        // Assert - one batch, to the weekly subscriber only, with the net move
+        ArgumentCaptor<LeaderboardDeltaBatch> captor = ArgumentCaptor.forClass(LeaderboardDeltaBatch.class);
+        verify(streamService, times(1)).send(any(), captor.capture());
+        LeaderboardDeltaBatch batch = captor.getValue();
+        assertEquals("week", batch.getPeriod());
+        assertEquals(20L, batch.getTotalUsers());
+        
+        List<LeaderboardRankDelta> deltas = batch.getDeltas();
+        assertEquals(1, deltas.size());
+        assertEquals("alice", deltas.get(0).getUsername());
+        assertEquals(7, deltas.get(0).getPreviousRank());
+        assertEquals(4, deltas.get(0).getRank());
+        assertEquals(60L, deltas.get(0).getMinutesDelta());
+        assertEquals(4L, deltas.get(0).getSessionCount());
+    }
+    
+    @Test
+    void testFlush_NothingPendingSendsNothing() {
+        // Arrange
+        when(leaderboardService.resolveChannel("week", null, null)).thenReturn("week-key");
+        streamService.subscribe("week", null, null, false);
+        
+        // Act
+        streamService.flush();
+        
+        // Assert
+        verify(streamService, never()).send(any(), any());
+        verify(leaderboardService, never()).resolveUsernames(anyList());
+    }
+}
@@ -0,0 +1,64 @@
+package com.mohamed.taskflow.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PasswordHashingService admission control
+ */
+class PasswordHashingServiceTest {
+    
+    private final PasswordHashingService hashingService = new PasswordHashingService(1, 1);
+    
+    @AfterEach
+    void tearDown() {
+        hashingService.shutdown();
+    }
+    
+    @Test
+    void testSubmit_RejectsWhenThreadsAndQueueAreFull() throws Exception {
+        // Arrange - one thread busy, one task queued
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> running = hashingService.submit(() -> {
+            awaitQuietly(release);
+            return "first";
+        });
+        CompletableFuture<String> queued = hashingService.submit(() -> "second");
+        
+        // Act & Assert
+        assertThrows(RejectedExecutionException.class, () -> hashingService.submit(() -> "third"));
+        assertEquals(1L, hashingService.getStats().get("rejected"));
+        
+        release.countDown();
+        assertEquals("first", running.get(5, TimeUnit.SECONDS));
+        assertEquals("second", queued.get(5, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    void testGetStats_RecordsCompletedTasks() throws Exception {
+        // Act
+        hashingService.submit(() -> "done").get(5, TimeUnit.SECONDS);
+        
+        // Assert - recorded before the future completes
+        Map<String, Object> stats = hashingService.getStats();
+        assertEquals(1L, stats.get("completed"));
+        assertEquals(1, stats.get("threads"));
+        assertEquals(1, stats.get("queueCapacity"));
+    }
+    
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
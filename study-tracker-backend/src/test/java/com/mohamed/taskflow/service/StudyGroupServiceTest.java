@@ -0,0 +1,93 @@
+package com.mohamed.taskflow.service;
+
+import com.mohamed.taskflow.exception.ResourceNotFoundException;
+import com.mohamed.taskflow.model.StudyGroup;
+import com.mohamed.taskflow.repository.UserRepository;
+import com.mohamed.taskflow.util.UserIdDictionary;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.BitSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for StudyGroupService membership updates
+ */
+@ExtendWith(MockitoExtension.class)
+class StudyGroupServiceTest {
+    
+    @Mock
+    private UserRepository userRepository;
+    
+    @Mock
+    private MongoTemplate mongoTemplate;
+    
+    @Spy
+    private UserIdDictionary userIdDictionary = new UserIdDictionary();
+    
+    @InjectMocks
+    private StudyGroupService studyGroupService;
+    
+    @Test
+    void testAddMember_AddsToSetAtomicallyAndCachesReturnedMembers() {
+        // Arrange - user3 was added concurrently, so only the returned document has it
+        StudyGroup updated = group("owner", "user2", "user3");
+        when(userRepository.existsById("user2")).thenReturn(true);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class),
+            any(FindAndModifyOptions.class), eq(StudyGroup.class))).thenReturn(updated);
+        
+        // Act
+        StudyGroup result = studyGroupService.addMember("group1", "user2", "owner");
+        BitSet members = studyGroupService.getMembers(group("owner"));
+        
+        // Assert
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).findAndModify(query.capture(), update.capture(),
+            any(FindAndModifyOptions.class), eq(StudyGroup.class));
+        assertEquals(new Document("_id", "group1").append("ownerId", "owner"), query.getValue().getQueryObject());
+        assertEquals(new Document("$addToSet", new Document("memberIds", "user2")), update.getValue().getUpdateObject());
+        assertSame(updated, result);
+        assertEquals(3, members.cardinality());
+        assertTrue(members.get(userIdDictionary.encode("user3")));
+    }
+    
+    @Test
+    void testRemoveMember_OwnerCannotLeave() {
+        // Arrange - the query excludes groups the leaving member owns, so nothing matches
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class),
+            any(FindAndModifyOptions.class), eq(StudyGroup.class))).thenReturn(null);
+        
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class,
+            () -> studyGroupService.removeMember("group1", "owner", "owner"));
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findAndModify(query.capture(), any(Update.class),
+            any(FindAndModifyOptions.class), eq(StudyGroup.class));
+        assertEquals(new Document("_id", "group1").append("ownerId", new Document("$ne", "owner")),
+            query.getValue().getQueryObject());
+    }
+    
+    private StudyGroup group(String ownerId, String... memberIds) {
+        StudyGroup group = new StudyGroup();
+        group.setId("group1");
+        group.setOwnerId(ownerId);
+        group.getMemberIds().add(ownerId);
+        group.getMemberIds().addAll(Set.of(memberIds));
+        return group;
+    }
+}
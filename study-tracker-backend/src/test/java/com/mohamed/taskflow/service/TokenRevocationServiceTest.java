@@ -0,0 +1,74 @@
+package com.mohamed.taskflow.service;
+
+import com.mohamed.taskflow.model.TokenRevocation;
+import com.mohamed.taskflow.repository.TokenRevocationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for TokenRevocationService
+ */
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationServiceTest {
+    
+    @Mock
+    private TokenRevocationRepository revocationRepository;
+    
+    @InjectMocks
+    private TokenRevocationService revocationService;
+    
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(revocationService, "tokenLifetime", 60 * 60 * 1000L);
+    }
+    
+    @Test
+    void testRevoke_TokenAndUserRevocationsApplied() {
+        // Arrange
+        when(revocationRepository.save(any(TokenRevocation.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        Date issuedEarlier = new Date(System.currentTimeMillis() - 5000);
+        
+        // Act
+        revocationService.revokeToken("token1", "user1", new Date(System.currentTimeMillis() + 60_000));
+        revocationService.revokeAllForUser("user2");
+        
+        // Assert
+        assertTrue(revocationService.isRevoked("token1", "user1", issuedEarlier));
+        assertFalse(revocationService.isRevoked("token2", "user1", issuedEarlier));
+        assertTrue(revocationService.isRevoked("token3", "user2", issuedEarlier));
+        // Issued after the revoke-all (iat is in whole seconds)
+        assertFalse(revocationService.isRevoked("token4", "user2", new Date(System.currentTimeMillis() + 2000)));
+    }
+    
+    @Test
+    void testPoll_PicksUpOtherInstancesAndDropsExpiredEntries() {
+        // Arrange - written by another instance; the token expires right away
+        Instant now = Instant.now();
+        when(revocationRepository.findByRevokedAtAfter(any())).thenReturn(List.of(
+            new TokenRevocation("r1", "token1", "user1", now, now.plusMillis(60_000)),
+            new TokenRevocation("r2", "token2", "user1", now, now.plusMillis(50))
+        ));
+        
+        // Act
+        revocationService.poll();
+        revocationService.purgeExpired(now.plusMillis(100));
+        
+        // Assert
+        assertTrue(revocationService.isRevoked("token1", "user1", new Date()));
+        assertFalse(revocationService.isRevoked("token2", "user1", new Date()));
+        assertEquals(1, revocationService.size());
+    }
+}
@@ -0,0 +1,114 @@
+package com.mohamed.taskflow.service;
+
+import com.mohamed.taskflow.dto.BulkUserResponse;
+import com.mohamed.taskflow.dto.BulkUserResult;
+import com.mohamed.taskflow.dto.RegisterRequest;
+import com.mohamed.taskflow.model.User;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import jakarta.validation.Validation;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for UserProvisioningService
+ */
+class UserProvisioningServiceTest {
+    
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations bulkOperations = mock(BulkOperations.class);
+    private final PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+    
+    private UserProvisioningService provisioningService;
+    
+    @BeforeEach
+    void setUp() {
+        provisioningService = new UserProvisioningService(mongoTemplate, passwordEncoder,
+            Validation.buildDefaultValidatorFactory().getValidator(), 2);
+        when(passwordEncoder.encode(anyString())).thenAnswer(invocation -> "hash:" + invocation.getArgument(0));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class)).thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenReturn(bulkOperations);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        provisioningService.shutdown();
+    }
+    
+    @Test
+    void testCreateUsers_DuplicatesReportedPerRowFromBulkWriteErrors() {
+        // Arrange - the second valid row (insert index 1) hits the unique email index
+        List<RegisterRequest> rows = List.of(
+            new RegisterRequest("alice", "alice@school.edu", "secret1"),
+            new RegisterRequest("b", "not-an-email", "secret2"),
+            new RegisterRequest("carol", "alice@school.edu", "secret3"),
+            new RegisterRequest("dave", "dave@school.edu", "secret4")
+        );
+        BulkWriteError duplicate = new BulkWriteError(11000,
+            "E11000 duplicate key error collection: taskflow.users index: email dup key: { email: \"alice@school.edu\" }",
+            new BsonDocument(), 1);
+        when(bulkOperations.execute()).thenThrow(new BulkOperationException("duplicate", new MongoBulkWriteException(
+            BulkWriteResult.unacknowledged(), List.of(duplicate), null, new ServerAddress(), Set.of())));
+        
+        // Act
+        BulkUserResponse response = provisioningService.createUsers(rows);
+        
+        // Assert - one unordered insert of the three valid rows, no existence pre-checks
+        verify(bulkOperations).insert(argThat((List<?> users) -> users.size() == 3
+            && ((User) users.get(2)).getPassword().equals("hash:secret4")));
+        assertEquals(2, response.getCreated());
+        assertEquals(2, response.getFailed());
+        List<BulkUserResult> results = response.getResults();
+        assertEquals(BulkUserResult.CREATED, results.get(0).getStatus());
+        assertNotNull(results.get(0).getId());
+        assertEquals(BulkUserResult.INVALID, results.get(1).getStatus());
+        assertEquals(BulkUserResult.DUPLICATE, results.get(2).getStatus());
+        assertEquals("Email is already in use", results.get(2).getError());
+        assertEquals(3, results.get(2).getRow());
+        assertEquals(BulkUserResult.CREATED, results.get(3).getStatus());
+    }
+    
+    @Test
+    void testBulkHashingThreads_StayBelowProcessorCount() {
+        assertEquals(4, UserProvisioningService.bulkHashingThreads(0, 8));
+        assertEquals(7, UserProvisioningService.bulkHashingThreads(16, 8));
+        assertEquals(3, UserProvisioningService.bulkHashingThreads(3, 8));
+        assertEquals(1, UserProvisioningService.bulkHashingThreads(0, 1));
+        assertEquals(1, UserProvisioningService.bulkHashingThreads(0, 2));
+    }
+    
+    @Test
+    void testParseCsv_HeaderOrderAndQuotedFields() {
+        // Arrange
+        String csv = "\uFEFFEmail,Username,Password\r\n"
+            + "alice@school.edu,alice,\"pa,ss\"\"word\"\r\n"
+            + "\r\n"
+            + "bob@school.edu, bob ,secret2\n";
+        
+        // Act
+        List<RegisterRequest> rows = UserProvisioningService.parseCsv(csv);
+        
+        // Assert
+        assertEquals(2, rows.size());
+        assertEquals("alice", rows.get(0).getUsername());
+        assertEquals("pa,ss\"word", rows.get(0).getPassword());
+        assertEquals("bob", rows.get(1).getUsername());
+        assertEquals("bob@school.edu", rows.get(1).getEmail());
+        assertThrows(IllegalArgumentException.class, () -> UserProvisioningService.parseCsv("username,email\nalice,a@b.c"));
+    }
+}
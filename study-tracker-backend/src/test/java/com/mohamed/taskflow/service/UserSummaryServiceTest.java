@@ -0,0 +1,71 @@
+package com.mohamed.taskflow.service;
+
+import com.mohamed.taskflow.dto.UserSummary;
+import com.mohamed.taskflow.model.User;
+import com.mohamed.taskflow.repository.UserRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for UserSummaryService caching
+ */
+@ExtendWith(MockitoExtension.class)
+class UserSummaryServiceTest {
+    
+    @Mock
+    private UserRepository userRepository;
+    
+    @InjectMocks
+    private UserSummaryService userSummaryService;
+    
+    @Test
+    void testFindAll_QueriesOnlyUncachedIdsIncludingMissingUsers() {
+        // Arrange - "ghost" has no user document
+        when(userRepository.findSummariesByIdIn(anyCollection()))
+            .thenReturn(List.of(new UserSummary("user1", "alice")))
+            .thenReturn(List.of(new UserSummary("user2", "bob")));
+        
+        // Act
+        Map<String, UserSummary> first = userSummaryService.findAll(List.of("user1", "ghost"));
+        Map<String, UserSummary> second = userSummaryService.findAll(List.of("user1", "ghost", "user2"));
+        Map<String, UserSummary> third = userSummaryService.findAll(List.of("user2", "ghost"));
+        
+        // Assert - the second call only asked for user2, the third hit the cache
+        assertEquals(Map.of("user1", new UserSummary("user1", "alice")), first);
+        assertEquals(Set.of("user1", "user2"), second.keySet());
+        assertEquals(Set.of("user2"), third.keySet());
+        verify(userRepository).findSummariesByIdIn(argThat(ids -> ids.size() == 1 && ids.contains("user2")));
+        verify(userRepository, times(2)).findSummariesByIdIn(anyCollection());
+    }
+    
+    @Test
+    void testOnAfterSave_EvictsChangedUser() {
+        // Arrange
+        when(userRepository.findSummariesByIdIn(anyCollection()))
+            .thenReturn(List.of(new UserSummary("user1", "alice")))
+            .thenReturn(List.of(new UserSummary("user1", "alice2")));
+        userSummaryService.findAll(List.of("user1"));
+        User renamed = new User();
+        renamed.setId("user1");
+        renamed.setUsername("alice2");
+        
+        // Act
+        userSummaryService.onAfterSave(new AfterSaveEvent<>(renamed, new Document(), "users"));
+        
+        // Assert
+        assertEquals("alice2", userSummaryService.findAll(List.of("user1")).get("user1").getUsername());
+    }
+}
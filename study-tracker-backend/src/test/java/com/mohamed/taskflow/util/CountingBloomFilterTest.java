@@ -0,0 +1,57 @@
+package com.mohamed.taskflow.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CountingBloomFilter
+ */
+class CountingBloomFilterTest {
+    
+    @Test
+    void testAddRemove_NoFalseNegativesAndRemovedKeysCleared() {
+        // Arrange
+        CountingBloomFilter filter = new CountingBloomFilter(1 << 16, 4);
+        
+        // Act
+        for (int i = 0; i < 1000; i++) {
+            filter.add("key-" + i);
+        }
+        for (int i = 0; i < 500; i++) {
+            filter.remove("key-" + i);
+        }
+        
+        // Assert - keys still added are always found, removed ones almost never
+        for (int i = 500; i < 1000; i++) {
+            assertTrue(filter.mightContain("key-" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 500; i++) {
+            if (filter.mightContain("key-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 5, "false positives: " + falsePositives);
+    }
+    
+    @Test
+    void testMightContain_FalsePositiveRateLow() {
+        // Arrange - 1000 keys in 16k counters
+        CountingBloomFilter filter = new CountingBloomFilter(1 << 14, 4);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("revoked-" + i);
+        }
+        
+        // Act
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        
+        // Assert - ~0.2% expected
+        assertTrue(falsePositives < 1000, "false positives: " + falsePositives);
+    }
+}
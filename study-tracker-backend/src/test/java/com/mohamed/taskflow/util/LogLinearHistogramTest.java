@@ -0,0 +1,54 @@
+package com.mohamed.taskflow.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for LogLinearHistogram
+ */
+class LogLinearHistogramTest {
+    
+    @Test
+    void testBuckets_CoverEveryValueContiguously() {
+        // Act / Assert - each bucket starts where the previous one ends and holds its bounds
+        assertEquals(0, LogLinearHistogram.lowerBound(0));
+        for (int i = 1; i < LogLinearHistogram.BUCKETS; i++) {
+            assertEquals(LogLinearHistogram.upperBound(i - 1), LogLinearHistogram.lowerBound(i));
+            assertEquals(i, LogLinearHistogram.bucketOf(LogLinearHistogram.lowerBound(i)));
+            assertEquals(i, LogLinearHistogram.bucketOf(LogLinearHistogram.upperBound(i) - 1));
+        }
+        assertEquals(LogLinearHistogram.BUCKETS - 1, LogLinearHistogram.bucketOf(Long.MAX_VALUE));
+    }
+    
+    @Test
+    void testPercentiles_WithinBucketErrorOfExactValues() {
+        // Arrange - two halves merged, plus values added and removed again
+        Random random = new Random(42);
+        long[] values = new long[10_000];
+        LogLinearHistogram first = new LogLinearHistogram();
+        LogLinearHistogram second = new LogLinearHistogram();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 10);
+            (i % 2 == 0 ? first : second).add(values[i]);
+            first.add(i);
+            first.remove(i);
+        }
+        
+        // Act
+        first.merge(second);
+        
+        // Assert
+        Arrays.sort(values);
+        assertEquals(values.length, first.count());
+        for (double percentile : new double[] {1, 50, 90, 99}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            assertEquals(exact, first.valueAtPercentile(percentile), Math.max(1, exact / 16.0));
+        }
+        assertEquals(50.0, first.percentileOf(values[values.length / 2]), 1.0);
+        assertEquals(0, new LogLinearHistogram().valueAtPercentile(50));
+    }
+}
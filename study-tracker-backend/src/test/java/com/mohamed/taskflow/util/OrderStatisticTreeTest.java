@@ -0,0 +1,52 @@
+package com.mohamed.taskflow.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for OrderStatisticTree
+ */
+class OrderStatisticTreeTest {
+    
+    @Test
+    void testRandomOperations_MatchSortedSet() {
+        // Arrange - a TreeSet as reference for the same operations
+        Comparator<Integer> order = Comparator.reverseOrder();
+        OrderStatisticTree<Integer> tree = new OrderStatisticTree<>(order);
+        TreeSet<Integer> reference = new TreeSet<>(order);
+        Random random = new Random(42);
+        
+        // Act / Assert
+        for (int i = 0; i < 5000; i++) {
+            int value = random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(value), tree.remove(value));
+            } else {
+                assertEquals(reference.add(value), tree.add(value));
+            }
+            assertEquals(reference.size(), tree.size());
+            assertEquals(reference.headSet(value).size(), tree.indexOf(value));
+        }
+        
+        List<Integer> sorted = new ArrayList<>(reference);
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(sorted.get(i), tree.get(i));
+        }
+    }
+    
+    @Test
+    void testGet_OutOfBounds() {
+        OrderStatisticTree<String> tree = new OrderStatisticTree<>(Comparator.naturalOrder());
+        tree.add("a");
+        
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.get(-1));
+    }
+}
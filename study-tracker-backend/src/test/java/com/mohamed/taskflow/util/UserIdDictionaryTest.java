@@ -0,0 +1,57 @@
+package com.mohamed.taskflow.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for UserIdDictionary
+ */
+class UserIdDictionaryTest {
+    
+    private final UserIdDictionary dictionary = new UserIdDictionary();
+    
+    @Test
+    void testEncode_ConcurrentCallersAgreeOnOneIdPerUser() throws Exception {
+        // Arrange - ids encoded from several threads at once
+        String prefix = "dictionary-test-";
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Set<String> pairs = ConcurrentHashMap.newKeySet();
+        
+        // Act
+        List<Future<?>> futures = IntStream.range(0, 4)
+            .mapToObj(thread -> executor.submit(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    String userId = prefix + i;
+                    pairs.add(dictionary.encode(userId) + "=" + userId);
+                }
+            }))
+            .collect(Collectors.toList());
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        
+        // Assert - 2000 users, one id each, decoding back to the same string instance
+        assertEquals(2000, pairs.size());
+        for (int i = 0; i < 2000; i++) {
+            String userId = new String(prefix + i);
+            int id = dictionary.encode(userId);
+            assertTrue(id < dictionary.size());
+            assertEquals(userId, dictionary.decode(id));
+            assertSame(dictionary.decode(id), dictionary.canonical(userId));
+        }
+        assertEquals(UserIdDictionary.NONE, dictionary.encode(null));
+        assertNull(dictionary.decode(UserIdDictionary.NONE));
+    }
+}
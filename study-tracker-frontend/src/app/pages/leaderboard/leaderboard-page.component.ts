@@ -4,10 +4,10 @@ import { FormsModule } from '@angular/forms';
 import { MatIconModule } from '@angular/material/icon';
 import { MatProgressSpinnerModule } from '@angular/material/progress-spinner';
 import { MatSlideToggleModule } from '@angular/material/slide-toggle';
-import { Subject } from 'rxjs';
+import { Subject, Subscription } from 'rxjs';
 import { debounceTime, distinctUntilChanged } from 'rxjs/operators';
 import { SidebarComponent } from '../../components/sidebar/sidebar';
-import { LeaderboardService, LeaderboardEntry, LeaderboardResponse } from '../../services/leaderboard.service';
+import { LeaderboardService, LeaderboardEntry, LeaderboardResponse, LeaderboardDeltaBatch } from '../../services/leaderboard.service';
 import { UserSessionsModalComponent } from '../../components/user-sessions-modal/user-sessions-modal.component';
 
 /**
@@ -48,6 +48,10 @@ export class LeaderboardPageComponent implements OnInit, OnDestroy {
   // Debounce subjects
   private filterChange$ = new Subject<void>();
   
+  // Live rank updates for the current filters
+  private updates?: Subscription;
+  private updatesChannel = '';
+  
   // Filters
   selectedPeriod = 'all';
   selectedSubject = 'all';
@@ -88,6 +92,7 @@ export class LeaderboardPageComponent implements OnInit, OnDestroy {
 
   ngOnDestroy(): void {
     this.filterChange$.complete();
+    this.updates?.unsubscribe();
   }
 
   /**
@@ -118,6 +123,7 @@ export class LeaderboardPageComponent implements OnInit, OnDestroy {
         this.restOfLeaderboard = this.leaderboard.slice(3);
         
         this.loading = false;
+        this.followUpdates();
       },
       error: (err) => {
         this.error = err.message || 'Failed to load leaderboard';
@@ -126,6 +132,60 @@ export class LeaderboardPageComponent implements OnInit, OnDestroy {
     });
   }
 
+  /**
+   * (Re)open the live update stream when the filters point to another leaderboard
+   */
+  private followUpdates(): void {
+    const channel = `${this.selectedPeriod}|${this.selectedSubject}|${this.anonymize}`;
+    if (this.updates && channel === this.updatesChannel) {
+      return;
+    }
+    this.updates?.unsubscribe();
+    this.updatesChannel = channel;
+
+    const subject = this.selectedSubject === 'all' ? undefined : this.selectedSubject;
+    this.updates = this.leaderboardService.streamLeaderboard(
+      this.selectedPeriod,
+      subject,
+      this.anonymize
+    ).subscribe(batch => this.applyDeltas(batch));
+  }
+
+  /**
+   * Apply pushed rank changes to the visible page
+   * Changed users already on the page are updated, users that moved into the page's
+   * rank range are added, and the page is re-sorted, trimmed and renumbered
+   */
+  private applyDeltas(batch: LeaderboardDeltaBatch): void {
+    const firstRank = (this.currentPage - 1) * this.selectedLimit + 1;
+    const lastRank = firstRank + this.selectedLimit - 1;
+    let entries = [...this.leaderboard];
+
+    for (const delta of batch.deltas) {
+      entries = entries.filter(entry => entry.userId !== delta.userId);
+      if (delta.rank >= firstRank && delta.rank <= lastRank) {
+        entries.push({
+          userId: delta.userId,
+          username: delta.username,
+          totalMinutes: delta.totalMinutes,
+          sessionCount: delta.sessionCount,
+          avgMinutesPerSession: delta.sessionCount > 0 ? delta.totalMinutes / delta.sessionCount : 0,
+          rank: delta.rank
+        });
+      }
+    }
+
+    // Same order as the server: minutes desc, then userId; unchanged rows shift around movers
+    entries.sort((a, b) => b.totalMinutes - a.totalMinutes || a.userId.localeCompare(b.userId));
+    entries = entries.slice(0, this.selectedLimit)
+      .map((entry, index) => ({ ...entry, rank: firstRank + index }));
+    this.leaderboard = this.applyVisibilitySettings(entries);
+    this.totalUsers = batch.totalUsers;
+    this.totalPages = Math.ceil(this.totalUsers / this.selectedLimit);
+    this.topThree = this.leaderboard.slice(0, 3);
+    this.restOfLeaderboard = this.leaderboard.slice(3);
+  }
+
   /**
    * Handle period change (debounced)
    */
@@ -44,6 +44,11 @@ export class LoginComponent {
       },
       error: (error) => {
         this.isLoading.set(false);
+        if (error.status === 429) {
+          // Server is shedding a burst of logins
+          this.errorMessage.set('Too many people are signing in right now, please try again in a moment');
+          return;
+        }
         this.errorMessage.set(
           error.error?.message || 'Invalid username/email or password'
         );
@@ -40,9 +40,16 @@ export class AuthService {
   }
 
   /**
-   * Logout user
+   * Logout user, revoking the token on the server
    */
   logout(): void {
+    const token = this.getToken();
+    if (token) {
+      // Auth endpoints are skipped by the interceptor, so the token is sent here
+      this.http.post<void>(`${this.apiUrl}/logout`, {}, {
+        headers: { Authorization: `Bearer ${token}` }
+      }).subscribe({ error: () => {} });
+    }
     localStorage.removeItem(this.TOKEN_KEY);
     localStorage.removeItem(this.USER_KEY);
     this.currentUser.set(null);
@@ -1,7 +1,7 @@
 import { Injectable } from '@angular/core';
-import { HttpClient, HttpParams } from '@angular/common/http';
-import { Observable, throwError } from 'rxjs';
-import { catchError, map } from 'rxjs/operators';
+import { HttpClient, HttpDownloadProgressEvent, HttpEvent, HttpEventType, HttpParams } from '@angular/common/http';
+import { Observable, defer, throwError } from 'rxjs';
+import { catchError, filter, map, mergeMap, repeat, retry } from 'rxjs/operators';
 import { environment } from '../../environments/environment';
 
 /**
@@ -25,9 +25,91 @@ export interface LeaderboardResponse {
   page: number;
   limit: number;
   totalUsers: number;
+  nextCursor?: string;
   cached?: boolean;
 }
 
+/**
+ * One leaderboard of a batch request
+ */
+export interface LeaderboardQuery {
+  period: string;
+  subject?: string;
+  limit?: number;
+  page?: number;
+}
+
+/**
+ * Rank change of one user pushed by the leaderboard stream
+ * rank/previousRank are 0 when the user is not (or no longer) ranked
+ */
+export interface LeaderboardRankDelta {
+  userId: string;
+  username: string;
+  previousRank: number;
+  rank: number;
+  previousMinutes: number;
+  totalMinutes: number;
+  minutesDelta: number;
+  sessionCount: number;
+}
+
+/**
+ * Batch of rank changes pushed by the leaderboard stream
+ */
+export interface LeaderboardDeltaBatch {
+  period: string;
+  subject?: string;
+  deltas: LeaderboardRankDelta[];
+  totalUsers: number;
+}
+
+/**
+ * Number of ranked users whose total minutes fall in [fromMinutes, toMinutes)
+ */
+export interface LeaderboardHistogramBucket {
+  fromMinutes: number;
+  toMinutes: number;
+  users: number;
+}
+
+/**
+ * Distribution of total minutes on a leaderboard
+ * myMinutes/myPercentile are null when the current user has no study time in the period
+ */
+export interface LeaderboardStatsResponse {
+  period: string;
+  subject?: string;
+  totalUsers: number;
+  p50: number;
+  p90: number;
+  p99: number;
+  myMinutes: number | null;
+  myPercentile: number | null;
+  histogram: LeaderboardHistogramBucket[];
+}
+
+/**
+ * A user's archived all-time rank at the end of one day
+ */
+export interface LeaderboardHistoryPoint {
+  date: string;
+  rank: number;
+  totalMinutes: number;
+  totalUsers: number;
+}
+
+/**
+ * Rank trend of one user over a date range
+ */
+export interface LeaderboardHistoryResponse {
+  userId: string;
+  subject?: string;
+  from: string;
+  to: string;
+  points: LeaderboardHistoryPoint[];
+}
+
 /**
  * Study Log Interface
  */
@@ -60,6 +142,7 @@ export class LeaderboardService {
    * @param limit Number of results per page
    * @param page Page number
    * @param anonymize Whether to anonymize usernames
+   * @param cursor Optional nextCursor of the previous response (used instead of page)
    * @returns Observable of LeaderboardResponse
    */
   getLeaderboard(
@@ -67,19 +150,26 @@ export class LeaderboardService {
     subject?: string,
     limit: number = 10,
     page: number = 1,
-    anonymize: boolean = false
+    anonymize: boolean = false,
+    cursor?: string
   ): Observable<LeaderboardResponse> {
     
     let params = new HttpParams()
       .set('period', period)
       .set('limit', limit.toString())
       .set('page', page.toString())
-      .set('anonymize', anonymize.toString());
+      .set('anonymize', anonymize.toString())
+      // Align week/month windows to the user's local days
+      .set('zone', Intl.DateTimeFormat().resolvedOptions().timeZone);
     
     if (subject && subject !== 'all') {
       params = params.set('subject', subject);
     }
 
+    if (cursor) {
+      params = params.set('cursor', cursor);
+    }
+
     return this.http.get<LeaderboardResponse>(this.apiUrl, { params }).pipe(
       map(response => {
         // Ensure all entries have required fields
@@ -98,6 +188,195 @@ export class LeaderboardService {
     );
   }
 
+  /**
+   * Get several leaderboards (e.g. one per subject tab) in a single request
+   * 
+   * @param queries Leaderboards to load
+   * @param anonymize Whether to anonymize usernames
+   * @returns Observable of the responses, in query order (null for a query that failed to load)
+   */
+  getLeaderboards(queries: LeaderboardQuery[], anonymize: boolean = false): Observable<(LeaderboardResponse | null)[]> {
+    const body = {
+      queries: queries.map(query => ({
+        ...query,
+        subject: query.subject && query.subject !== 'all' ? query.subject : undefined
+      })),
+      anonymize,
+      zone: Intl.DateTimeFormat().resolvedOptions().timeZone
+    };
+
+    return this.http.post<{ results: (LeaderboardResponse | null)[]; errors?: (string | null)[] }>(`${this.apiUrl}/batch`, body).pipe(
+      map(response => response.results),
+      catchError(error => {
+        console.error('Error fetching leaderboards:', error);
+        return throwError(() => new Error('Failed to load leaderboards. Please try again.'));
+      })
+    );
+  }
+
+  /**
+   * Get the current user's entry and the users ranked around them
+   * 
+   * @param period Time period filter
+   * @param subject Optional subject filter
+   * @param radius Users to include above and below (0 for only the current user)
+   * @param anonymize Whether to anonymize other users' names
+   * @returns Observable of LeaderboardResponse (empty leaderboard if the user is unranked)
+   */
+  getAroundMe(
+    period: string = 'all',
+    subject?: string,
+    radius: number = 5,
+    anonymize: boolean = false
+  ): Observable<LeaderboardResponse> {
+    let params = new HttpParams()
+      .set('period', period)
+      .set('radius', radius.toString())
+      .set('anonymize', anonymize.toString())
+      .set('zone', Intl.DateTimeFormat().resolvedOptions().timeZone);
+
+    if (subject && subject !== 'all') {
+      params = params.set('subject', subject);
+    }
+
+    return this.http.get<LeaderboardResponse>(`${this.apiUrl}/around-me`, { params }).pipe(
+      catchError(error => {
+        console.error('Error fetching leaderboard position:', error);
+        return throwError(() => new Error('Failed to load your leaderboard position.'));
+      })
+    );
+  }
+
+  /**
+   * Get the study time percentiles and histogram of a leaderboard, with the current user's percentile
+   * 
+   * @param period Time period filter
+   * @param subject Optional subject filter
+   * @returns Observable of LeaderboardStatsResponse
+   */
+  getStats(period: string = 'all', subject?: string): Observable<LeaderboardStatsResponse> {
+    let params = new HttpParams()
+      .set('period', period)
+      .set('zone', Intl.DateTimeFormat().resolvedOptions().timeZone);
+
+    if (subject && subject !== 'all') {
+      params = params.set('subject', subject);
+    }
+
+    return this.http.get<LeaderboardStatsResponse>(`${this.apiUrl}/stats`, { params }).pipe(
+      catchError(error => {
+        console.error('Error fetching leaderboard stats:', error);
+        return throwError(() => new Error('Failed to load leaderboard statistics.'));
+      })
+    );
+  }
+
+  /**
+   * Get a user's daily rank trend from the leaderboard archive
+   * 
+   * @param userId User to get the trend of (omit for the current user; others require admin)
+   * @param subject Optional subject filter
+   * @param from First day, yyyy-MM-dd (default 29 days before to)
+   * @param to Last day, yyyy-MM-dd (default today)
+   * @returns Observable of LeaderboardHistoryResponse
+   */
+  getHistory(userId?: string, subject?: string, from?: string, to?: string): Observable<LeaderboardHistoryResponse> {
+    let params = new HttpParams();
+    if (userId) {
+      params = params.set('userId', userId);
+    }
+    if (subject && subject !== 'all') {
+      params = params.set('subject', subject);
+    }
+    if (from) {
+      params = params.set('from', from);
+    }
+    if (to) {
+      params = params.set('to', to);
+    }
+
+    return this.http.get<LeaderboardHistoryResponse>(`${this.apiUrl}/history`, { params }).pipe(
+      catchError(error => {
+        console.error('Error fetching leaderboard history:', error);
+        return throwError(() => new Error('Failed to load rank history.'));
+      })
+    );
+  }
+
+  /**
+   * Follow rank changes of a leaderboard over Server-Sent Events
+   * Uses HttpClient instead of EventSource so the auth interceptor can add the JWT header;
+   * the stream is reopened whenever the server closes it
+   * 
+   * @param period Time period filter
+   * @param subject Optional subject filter
+   * @param anonymize Whether to anonymize usernames
+   * @returns Observable emitting one LeaderboardDeltaBatch per pushed batch
+   */
+  streamLeaderboard(
+    period: string = 'all',
+    subject?: string,
+    anonymize: boolean = false
+  ): Observable<LeaderboardDeltaBatch> {
+    let params = new HttpParams()
+      .set('period', period)
+      .set('anonymize', anonymize.toString())
+      .set('zone', Intl.DateTimeFormat().resolvedOptions().timeZone);
+
+    if (subject && subject !== 'all') {
+      params = params.set('subject', subject);
+    }
+
+    return defer(() => {
+      // Characters of the response already parsed into events
+      let consumed = 0;
+      return this.http.get(`${this.apiUrl}/stream`, {
+        params,
+        observe: 'events',
+        responseType: 'text',
+        reportProgress: true
+      }).pipe(
+        filter((event: HttpEvent<string>): event is HttpDownloadProgressEvent =>
+          event.type === HttpEventType.DownloadProgress),
+        mergeMap(event => {
+          const text = event.partialText ?? '';
+          const end = text.lastIndexOf('\n\n');
+          if (end + 2 <= consumed) {
+            return [];
+          }
+          const frames = text.substring(consumed, end);
+          consumed = end + 2;
+          return this.parseDeltaFrames(frames);
+        })
+      );
+    }).pipe(
+      repeat({ delay: 1000 }),
+      retry({ delay: 5000 })
+    );
+  }
+
+  /**
+   * Parse complete SSE frames ("event:"/"data:" lines separated by blank lines)
+   */
+  private parseDeltaFrames(frames: string): LeaderboardDeltaBatch[] {
+    const batches: LeaderboardDeltaBatch[] = [];
+    for (const frame of frames.split('\n\n')) {
+      let eventName = 'message';
+      const data: string[] = [];
+      for (const line of frame.split('\n')) {
+        if (line.startsWith('event:')) {
+          eventName = line.substring(6).trim();
+        } else if (line.startsWith('data:')) {
+          data.push(line.substring(5));
+        }
+      }
+      if (eventName === 'rank-delta' && data.length > 0) {
+        batches.push(JSON.parse(data.join('\n')));
+      }
+    }
+    return batches;
+  }
+
   /**
    * Convert minutes to hours and minutes format
    * 